@@ -0,0 +1,78 @@
+package org.ameelio.pdfviewer;
+
+import android.os.SystemClock;
+import android.util.SparseLongArray;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Measures how long a list page takes from being bound to the first frame that draws its
+ * rendered pixels, whether they were cached at bind time or arrived later from the render
+ * worker. Pages recycled before their pixels were drawn are not recorded.
+ */
+class BindToPixelsTracker implements ViewTreeObserver.OnDrawListener {
+
+    private final LatencyHistogram histogram;
+    // Bind time of pages still waiting for their pixels, by page index
+    private final SparseLongArray boundAt = new SparseLongArray();
+    // Pages whose pixels are set and will be drawn with the next frame
+    private final SparseLongArray pixelsSet = new SparseLongArray();
+    private View view;
+
+    BindToPixelsTracker(LatencyHistogram histogram) {
+        this.histogram = histogram;
+    }
+
+    void attach(View target) {
+        view = target;
+        target.getViewTreeObserver().addOnDrawListener(this);
+    }
+
+    void detach() {
+        if (view != null) {
+            view.getViewTreeObserver().removeOnDrawListener(this);
+            view = null;
+        }
+        boundAt.clear();
+        pixelsSet.clear();
+    }
+
+    /**
+     * Starts timing a page. A page bound again before its pixels were drawn keeps its first
+     * bind time.
+     */
+    void onPageBound(int pageIndex) {
+        if (boundAt.indexOfKey(pageIndex) < 0 && pixelsSet.indexOfKey(pageIndex) < 0) {
+            boundAt.put(pageIndex, SystemClock.elapsedRealtimeNanos());
+        }
+    }
+
+    /**
+     * Marks the page's rendered bitmap as set on its view; the next frame draws it.
+     */
+    void onPixelsSet(int pageIndex) {
+        int index = boundAt.indexOfKey(pageIndex);
+        if (index < 0) {
+            return;
+        }
+        pixelsSet.put(pageIndex, boundAt.valueAt(index));
+        boundAt.removeAt(index);
+    }
+
+    void onPageRecycled(int pageIndex) {
+        boundAt.delete(pageIndex);
+        pixelsSet.delete(pageIndex);
+    }
+
+    @Override
+    public void onDraw() {
+        if (pixelsSet.size() == 0) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < pixelsSet.size(); i++) {
+            histogram.record(now - pixelsSet.valueAt(i));
+        }
+        pixelsSet.clear();
+    }
+}
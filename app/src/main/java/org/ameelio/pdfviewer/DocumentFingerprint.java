@@ -0,0 +1,92 @@
+package org.ameelio.pdfviewer;
+
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Identifies document content independently of the URI it arrived through: the file size plus a
+ * SHA-256 of its first and last blocks. Reading two blocks is cheap even for very large files,
+ * and the same attachment opened again through a different URI maps to the same fingerprint.
+ */
+final class DocumentFingerprint {
+
+    private static final String TAG = "DocumentFingerprint";
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    private final long size;
+    private final byte[] digest;
+    private final int hashCode;
+
+    DocumentFingerprint(long size, byte[] digest) {
+        this.size = size;
+        this.digest = digest;
+        this.hashCode = 31 * (int) (size ^ (size >>> 32)) + Arrays.hashCode(digest);
+    }
+
+    /**
+     * Fingerprints the descriptor with positional reads, leaving its file offset untouched.
+     * Returns null when the content cannot be read at arbitrary offsets, e.g. for a pipe.
+     */
+    static DocumentFingerprint of(ParcelFileDescriptor descriptor) {
+        long size = descriptor.getStatSize();
+        if (size <= 0) {
+            return null;
+        }
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            // Not closed: the stream does not own the descriptor
+            FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+            ByteBuffer block = ByteBuffer.allocate((int) Math.min(BLOCK_SIZE, size));
+            digestBlock(sha256, channel, block, 0);
+            if (size > BLOCK_SIZE) {
+                digestBlock(sha256, channel, block, size - block.capacity());
+            }
+            return new DocumentFingerprint(size, sha256.digest());
+        } catch (IOException e) {
+            Log.d(TAG, "Descriptor is not seekable, skipping fingerprint: " + e.getMessage());
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            Log.w(TAG, "SHA-256 unavailable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void digestBlock(MessageDigest digest, FileChannel channel, ByteBuffer block, long offset)
+            throws IOException {
+        block.clear();
+        while (block.hasRemaining()) {
+            if (channel.read(block, offset + block.position()) <= 0) {
+                break;
+            }
+        }
+        digest.update(block.array(), 0, block.position());
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof DocumentFingerprint)) {
+            return false;
+        }
+        DocumentFingerprint that = (DocumentFingerprint) other;
+        return size == that.size && Arrays.equals(digest, that.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
@@ -0,0 +1,247 @@
+package org.ameelio.pdfviewer;
+
+import android.content.Context;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import androidx.recyclerview.widget.RecyclerView;
+import org.ameelio.pdfviewer.core.ZoomMath;
+
+/**
+ * Document-level gesture handling attached once to the RecyclerView. Pinches and zoomed-in
+ * single-finger drags are claimed here and forwarded to the shared ZoomCoordinator; everything
+ * else is left to the RecyclerView so unzoomed scrolling stays native. Page items are plain
+ * image views and carry no gesture state of their own.
+ *
+ * <p>{@link DocumentSurfaceView} feeds its touches through the same handler with panning enabled
+ * at every scale, since it has no native scrolling to fall back on.</p>
+ */
+class DocumentGestureHandler implements
+        RecyclerView.OnItemTouchListener,
+        ScaleGestureDetector.OnScaleGestureListener {
+
+    private static final String TAG = "DocumentGestureHandler";
+    private final ViewerLog log = new ViewerLog(TAG);
+
+    private final ZoomCoordinator zoomCoordinator;
+    private final ScaleGestureDetector scaleDetector;
+    private final int touchSlop;
+    private final int minFlingVelocity;
+    private final int maxFlingVelocity;
+    private final int[] tmpScreenLocation = new int[2];
+
+    private View touchTarget;
+    private boolean panAtAnyScale = false;
+    private VelocityTracker velocityTracker;
+    private float downRawX;
+    private float downRawY;
+    private float lastTouchRawX;
+    private float lastTouchRawY;
+    private boolean multiTouchActive = false;
+    private boolean panning = false;
+    // Set when a pointer lifts mid-gesture so the next move re-anchors instead of jumping
+    private boolean reanchorPan = false;
+
+    DocumentGestureHandler(Context context, ZoomCoordinator zoomCoordinator) {
+        this.zoomCoordinator = zoomCoordinator;
+        this.scaleDetector = new ScaleGestureDetector(context, this);
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        this.touchSlop = configuration.getScaledTouchSlop();
+        this.minFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        this.maxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+    }
+
+    void attach(RecyclerView recyclerView) {
+        setTouchTarget(recyclerView);
+        recyclerView.addOnItemTouchListener(this);
+    }
+
+    /**
+     * Sets the view whose screen position converts gesture focus points to screen coordinates.
+     */
+    void setTouchTarget(View target) {
+        touchTarget = target;
+    }
+
+    /**
+     * When enabled, single-finger drags pan and fling the document even when it is not zoomed in.
+     */
+    void setPanAtAnyScale(boolean enabled) {
+        panAtAnyScale = enabled;
+    }
+
+    void detach(RecyclerView recyclerView) {
+        recyclerView.removeOnItemTouchListener(this);
+        touchTarget = null;
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(RecyclerView recyclerView, MotionEvent event) {
+        return handleTouch(event);
+    }
+
+    @Override
+    public void onTouchEvent(RecyclerView recyclerView, MotionEvent event) {
+        handleTouch(event);
+    }
+
+    @Override
+    public void onRequestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+        // Pages do not handle touch, so there is no child that could ask us to back off
+    }
+
+    /**
+     * Processes one event of the stream and returns whether the gesture is claimed, i.e. whether
+     * the RecyclerView should stop its own scrolling and route the rest of the stream here.
+     */
+    boolean handleTouch(MotionEvent event) {
+        scaleDetector.onTouchEvent(event);
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                multiTouchActive = false;
+                panning = false;
+                reanchorPan = false;
+                downRawX = event.getRawX();
+                downRawY = event.getRawY();
+                lastTouchRawX = downRawX;
+                lastTouchRawY = downRawY;
+                // A new touch catches any fling still in progress
+                zoomCoordinator.stopFling();
+                if (velocityTracker == null) {
+                    velocityTracker = VelocityTracker.obtain();
+                } else {
+                    velocityTracker.clear();
+                }
+                trackVelocity(event);
+                break;
+            case MotionEvent.ACTION_POINTER_DOWN:
+                multiTouchActive = event.getPointerCount() > 1;
+                panning = false;
+                if (velocityTracker != null) {
+                    velocityTracker.clear();
+                }
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (scaleDetector.isInProgress()
+                        || multiTouchActive
+                        || event.getPointerCount() != 1
+                        || reanchorPan) {
+                    reanchorPan = false;
+                    lastTouchRawX = event.getRawX();
+                    lastTouchRawY = event.getRawY();
+                    break;
+                }
+                trackVelocity(event);
+                if (!panning && (panAtAnyScale || zoomCoordinator.getCurrentScale() > 1f)
+                        && exceedsTouchSlop(event.getRawX() - downRawX, event.getRawY() - downRawY)) {
+                    panning = true;
+                }
+                if (panning) {
+                    float dx = event.getRawX() - lastTouchRawX;
+                    float dy = event.getRawY() - lastTouchRawY;
+                    if (dx != 0 || dy != 0) {
+                        zoomCoordinator.propagatePan(dx, dy);
+                    }
+                }
+                lastTouchRawX = event.getRawX();
+                lastTouchRawY = event.getRawY();
+                break;
+            case MotionEvent.ACTION_POINTER_UP:
+                int remainingPointers = event.getPointerCount() - 1;
+                multiTouchActive = remainingPointers > 1;
+                reanchorPan = true;
+                break;
+            case MotionEvent.ACTION_UP:
+                if (panning && !multiTouchActive && !scaleDetector.isInProgress()) {
+                    trackVelocity(event);
+                    dispatchFling();
+                }
+                boolean claimed = panning;
+                resetGesture();
+                return claimed;
+            case MotionEvent.ACTION_CANCEL:
+                resetGesture();
+                return false;
+        }
+
+        return scaleDetector.isInProgress() || multiTouchActive || panning;
+    }
+
+    @Override
+    public boolean onScale(ScaleGestureDetector detector) {
+        float currentScale = zoomCoordinator.getCurrentScale();
+        float newScale = ZoomMath.clampScale(currentScale * detector.getScaleFactor());
+
+        if (Math.abs(newScale - currentScale) < 0.0001f) {
+            return true;
+        }
+
+        log.d("onScale -> scale=%.3f span=%.1f focus=(%.1f,%.1f)",
+                newScale, detector.getCurrentSpan(), detector.getFocusX(), detector.getFocusY());
+
+        float focusX = detector.getFocusX();
+        float focusY = detector.getFocusY();
+        if (touchTarget != null) {
+            touchTarget.getLocationOnScreen(tmpScreenLocation);
+            focusX += tmpScreenLocation[0];
+            focusY += tmpScreenLocation[1];
+        }
+        zoomCoordinator.propagateScale(newScale, focusX, focusY);
+        return true;
+    }
+
+    @Override
+    public boolean onScaleBegin(ScaleGestureDetector detector) {
+        panning = false;
+        return true;
+    }
+
+    @Override
+    public void onScaleEnd(ScaleGestureDetector detector) {
+        reanchorPan = true;
+    }
+
+    private boolean exceedsTouchSlop(float dx, float dy) {
+        return dx * dx + dy * dy > (float) touchSlop * touchSlop;
+    }
+
+    /**
+     * Feeds the tracker screen coordinates, matching the raw deltas used for panning; the
+     * RecyclerView's own coordinates shift while the document is translated under the finger.
+     */
+    private void trackVelocity(MotionEvent event) {
+        if (velocityTracker == null) {
+            return;
+        }
+        float offsetX = event.getRawX() - event.getX();
+        float offsetY = event.getRawY() - event.getY();
+        event.offsetLocation(offsetX, offsetY);
+        velocityTracker.addMovement(event);
+        event.offsetLocation(-offsetX, -offsetY);
+    }
+
+    private void dispatchFling() {
+        if (velocityTracker == null || (!panAtAnyScale && zoomCoordinator.getCurrentScale() <= 1f)) {
+            return;
+        }
+        velocityTracker.computeCurrentVelocity(1000, maxFlingVelocity);
+        float velocityX = velocityTracker.getXVelocity();
+        float velocityY = velocityTracker.getYVelocity();
+        if (Math.abs(velocityX) >= minFlingVelocity || Math.abs(velocityY) >= minFlingVelocity) {
+            zoomCoordinator.propagateFling(velocityX, velocityY);
+        }
+    }
+
+    private void resetGesture() {
+        multiTouchActive = false;
+        panning = false;
+        reanchorPan = false;
+    }
+}
@@ -0,0 +1,165 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.pdf.PdfRenderer;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference-counted ownership of an open {@link PageSource}, usually a PdfRenderer, and the
+ * descriptor it reads from. The owner holds one reference and every render holds another for
+ * its duration, so {@link #close()} only means "no new renders": the renderer is torn down once
+ * the last in-flight render releases it, on a background thread so closing a large document
+ * never blocks the UI.
+ *
+ * <p>A source allows only one open page at a time, so every render must also synchronize on
+ * {@link #getRenderLock()}.</p>
+ */
+final class DocumentHandle {
+
+    private static final String TAG = "DocumentHandle";
+
+    private static final ExecutorService TEARDOWN_EXECUTOR =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "pdf-teardown");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    // Handles whose renderer has not been torn down yet, for leak checks
+    private static final AtomicInteger liveCount = new AtomicInteger();
+
+    private final PageSource source;
+    private final ParcelFileDescriptor descriptor;
+    private final Executor teardownExecutor;
+    private final int pageCount;
+    private final Object renderLock = new Object();
+    private int refCount = 1;
+    private boolean closed = false;
+    // Size of the in-memory copy the descriptor points at, or 0 when it reads from the provider
+    private long stagedBytes = 0;
+
+    DocumentHandle(PdfRenderer renderer, ParcelFileDescriptor descriptor) {
+        this(renderer, descriptor, TEARDOWN_EXECUTOR);
+    }
+
+    DocumentHandle(PdfRenderer renderer, ParcelFileDescriptor descriptor, Executor teardownExecutor) {
+        this(new PdfRendererPageSource(renderer), descriptor, teardownExecutor);
+    }
+
+    /**
+     * @param descriptor the descriptor the source reads from, closed after it; null if it has none
+     */
+    DocumentHandle(PageSource source, ParcelFileDescriptor descriptor, Executor teardownExecutor) {
+        this.source = source;
+        this.descriptor = descriptor;
+        this.teardownExecutor = teardownExecutor;
+        this.pageCount = source.getPageCount();
+        liveCount.incrementAndGet();
+    }
+
+    static int getLiveCount() {
+        return liveCount.get();
+    }
+
+    int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Records that the descriptor is a staged copy holding this many bytes of memory until the
+     * handle is torn down.
+     */
+    void setStagedBytes(long bytes) {
+        stagedBytes = bytes;
+    }
+
+    long getStagedBytes() {
+        return stagedBytes;
+    }
+
+    /**
+     * Returns the page source. Only valid between a successful {@link #acquire()} and the
+     * matching {@link #release()}, or while the caller is the owner and has not closed the handle.
+     */
+    PageSource getPageSource() {
+        return source;
+    }
+
+    Object getRenderLock() {
+        return renderLock;
+    }
+
+    /**
+     * Takes a reference for one render.
+     *
+     * @return false if the handle has been closed, in which case nothing may be rendered
+     */
+    synchronized boolean acquire() {
+        if (closed) {
+            return false;
+        }
+        refCount++;
+        return true;
+    }
+
+    void release() {
+        boolean lastReference;
+        synchronized (this) {
+            if (refCount == 0) {
+                throw new IllegalStateException("DocumentHandle released more often than acquired");
+            }
+            lastReference = --refCount == 0;
+        }
+        if (lastReference) {
+            teardownExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    teardown();
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops the owner's reference. Renders already in flight finish first.
+     */
+    void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        release();
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private void teardown() {
+        try {
+            source.close();
+        } catch (Exception e) {
+            Log.w(TAG, "Error closing page source: " + e.getMessage(), e);
+        }
+        if (descriptor != null) {
+            try {
+                descriptor.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing file descriptor: " + e.getMessage(), e);
+            }
+        }
+        liveCount.decrementAndGet();
+        Log.d(TAG, "Document closed");
+    }
+}
@@ -0,0 +1,314 @@
+package org.ameelio.pdfviewer;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.pdf.PdfRenderer;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Opens documents for the viewer: resolves the URI to a descriptor, fingerprints it, and stages
+ * it when the provider cannot serve random reads well.
+ *
+ * <p>The whole open, including the slow-source probe, staging, PdfRenderer construction and a
+ * preview-quality render of the first page, runs on a background thread via {@link #openAsync}.
+ * For a launch it overlaps with inflating and setting up the activity's views; for later opens
+ * it keeps the current document responsive until the new one is ready.</p>
+ */
+class DocumentOpener {
+
+    private static final String TAG = "DocumentOpener";
+    private static final LatencyHistogram OPEN_LATENCY =
+            MetricsRegistry.getDefault().histogram(MetricsRegistry.OPEN_LATENCY);
+
+    /**
+     * A fully opened document, owned by whoever receives it.
+     */
+    static final class OpenedDocument {
+        final DocumentHandle document;
+        final DocumentFingerprint fingerprint;
+        final long sizeBytes;
+        // Page 0 at preview quality, or null if it could not be rendered
+        final Bitmap firstPagePreview;
+        final long openNanos;
+        final long previewNanos;
+
+        OpenedDocument(DocumentHandle document, DocumentFingerprint fingerprint, long sizeBytes,
+                       Bitmap firstPagePreview, long openNanos, long previewNanos) {
+            this.document = document;
+            this.fingerprint = fingerprint;
+            this.sizeBytes = sizeBytes;
+            this.firstPagePreview = firstPagePreview;
+            this.openNanos = openNanos;
+            this.previewNanos = previewNanos;
+        }
+    }
+
+    interface Callback {
+        /**
+         * Called on the main thread. The receiver takes ownership of the document.
+         */
+        void onDocumentOpened(OpenedDocument opened);
+
+        /**
+         * Called on the main thread with the exception or error that stopped the open.
+         *
+         * @param sizeBytes the document size if it was known before the failure, otherwise -1
+         */
+        void onOpenFailed(Throwable error, long sizeBytes);
+
+        /**
+         * Called on the main thread instead of {@link #onDocumentOpened} when the content turned
+         * out to be one of the known documents passed to {@link #openAsync}. Nothing was opened.
+         */
+        void onKnownDocument(Uri uri, DocumentFingerprint fingerprint);
+    }
+
+    private final ContentResolver contentResolver;
+    private final DocumentStager stager;
+    private final DocumentStager.ProgressListener stagingListener;
+    private final Executor executor;
+    private final Handler mainHandler;
+    // Bumped by cancel(); an open finishing under an older generation is discarded
+    private int generation = 0;
+    private boolean opening = false;
+
+    DocumentOpener(ContentResolver contentResolver, DocumentStager stager,
+                   DocumentStager.ProgressListener stagingListener) {
+        this(contentResolver, stager, stagingListener, Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "pdf-open");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), new Handler(Looper.getMainLooper()));
+    }
+
+    DocumentOpener(ContentResolver contentResolver, DocumentStager stager,
+                   DocumentStager.ProgressListener stagingListener, Executor executor, Handler mainHandler) {
+        this.contentResolver = contentResolver;
+        this.stager = stager;
+        this.stagingListener = stagingListener;
+        this.executor = executor;
+        this.mainHandler = mainHandler;
+    }
+
+    /**
+     * Returns a readable descriptor for the document as the provider serves it.
+     */
+    ParcelFileDescriptor openDescriptor(Uri uri) throws IOException {
+        ParcelFileDescriptor descriptor = contentResolver.openFileDescriptor(uri, "r");
+        if (descriptor == null) {
+            throw new FileNotFoundException("Failed to open file descriptor for PDF");
+        }
+        return descriptor;
+    }
+
+    /**
+     * Copies pipe-backed or slow documents into shared memory before PdfRenderer sees them.
+     * Returns the descriptor to render from, closing the source if it was replaced.
+     */
+    private ParcelFileDescriptor stageIfNeeded(ParcelFileDescriptor source) throws IOException {
+        if (!DocumentStager.isSupported() || !stager.needsStaging(source)) {
+            return source;
+        }
+        try {
+            ParcelFileDescriptor staged = stager.stage(source, stagingListener);
+            closeQuietly(source);
+            return staged;
+        } catch (DocumentStager.StagingException e) {
+            if (!DocumentStager.isSeekable(source)) {
+                // A pipe can be read only once and PdfRenderer cannot use it directly
+                closeQuietly(source);
+                throw e;
+            }
+            Log.w(TAG, "Staging failed, reading from the provider directly: " + e.getMessage());
+            return source;
+        }
+    }
+
+    /**
+     * Opens the document on the background thread and, when {@code previewWidth} is positive,
+     * renders page 0 at that width before handing the document to the callback. Starting an
+     * open discards the one in flight, if any.
+     */
+    void openAsync(Uri uri, int previewWidth, Callback callback) {
+        openAsync(uri, previewWidth, Collections.<DocumentFingerprint>emptySet(), callback);
+    }
+
+    /**
+     * Like {@link #openAsync(Uri, int, Callback)}, but stops before creating a renderer when the
+     * content matches one of {@code knownDocuments}, which must not change while the open runs.
+     */
+    void openAsync(final Uri uri, final int previewWidth, final Set<DocumentFingerprint> knownDocuments,
+                   final Callback callback) {
+        final int openGeneration = ++generation;
+        opening = true;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = SystemClock.elapsedRealtimeNanos();
+                long sizeBytes = -1;
+                ParcelFileDescriptor descriptor = null;
+                PdfRenderer renderer = null;
+                OpenedDocument opened;
+                try {
+                    descriptor = openDescriptor(uri);
+                    // Checked before staging so a known document is never copied again. A pipe
+                    // cannot be fingerprinted until its one read has staged it.
+                    DocumentFingerprint fingerprint = DocumentFingerprint.of(descriptor);
+                    long stagedBytes = 0;
+                    if (fingerprint == null || !knownDocuments.contains(fingerprint)) {
+                        ParcelFileDescriptor source = descriptor;
+                        descriptor = stageIfNeeded(source);
+                        if (descriptor != source) {
+                            stagedBytes = descriptor.getStatSize();
+                        }
+                        if (fingerprint == null) {
+                            fingerprint = DocumentFingerprint.of(descriptor);
+                        }
+                    }
+                    if (fingerprint != null && knownDocuments.contains(fingerprint)) {
+                        closeQuietly(descriptor);
+                        postKnown(openGeneration, uri, fingerprint, callback);
+                        return;
+                    }
+                    sizeBytes = descriptor.getStatSize();
+                    TraceSections.begin(TraceSections.OPEN_RENDERER);
+                    try {
+                        renderer = new PdfRenderer(descriptor);
+                    } finally {
+                        TraceSections.end();
+                    }
+                    DocumentHandle document = new DocumentHandle(renderer, descriptor);
+                    document.setStagedBytes(stagedBytes);
+                    renderer = null;
+                    descriptor = null;
+                    long openedAt = SystemClock.elapsedRealtimeNanos();
+                    OPEN_LATENCY.record(openedAt - start);
+
+                    Bitmap preview = null;
+                    if (previewWidth > 0 && document.getPageCount() > 0) {
+                        preview = renderPreview(document, previewWidth);
+                    }
+                    long previewed = SystemClock.elapsedRealtimeNanos();
+                    if (Log.isLoggable(TAG, Log.DEBUG)) {
+                        Log.d(TAG, "Opened in " + (openedAt - start) / 1_000_000 + " ms, preview rendered in " +
+                                (previewed - openedAt) / 1_000_000 + " ms");
+                    }
+                    opened = new OpenedDocument(document, fingerprint, sizeBytes, preview,
+                            openedAt - start, previewed - openedAt);
+                } catch (Exception | OutOfMemoryError e) {
+                    closeQuietly(renderer);
+                    closeQuietly(descriptor);
+                    postFailure(openGeneration, e, sizeBytes, callback);
+                    return;
+                }
+                postResult(openGeneration, opened, callback);
+            }
+        });
+    }
+
+    private static Bitmap renderPreview(DocumentHandle document, int previewWidth) {
+        try {
+            return PageRasterizer.render(document, 0, previewWidth, null, null);
+        } catch (Exception | OutOfMemoryError e) {
+            // The full-quality render will try again; a missing preview only costs latency
+            Log.w(TAG, "First page preview failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void postResult(final int openGeneration, final OpenedDocument opened, final Callback callback) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (openGeneration != generation) {
+                    // Superseded while opening; nothing has shown this document
+                    opened.document.close();
+                    if (opened.firstPagePreview != null) {
+                        opened.firstPagePreview.recycle();
+                    }
+                    return;
+                }
+                opening = false;
+                callback.onDocumentOpened(opened);
+            }
+        });
+    }
+
+    private void postKnown(final int openGeneration, final Uri uri, final DocumentFingerprint fingerprint,
+                           final Callback callback) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (openGeneration != generation) {
+                    return;
+                }
+                opening = false;
+                callback.onKnownDocument(uri, fingerprint);
+            }
+        });
+    }
+
+    private void postFailure(final int openGeneration, final Throwable error, final long sizeBytes,
+                             final Callback callback) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (openGeneration != generation) {
+                    return;
+                }
+                opening = false;
+                callback.onOpenFailed(error, sizeBytes);
+            }
+        });
+    }
+
+    /**
+     * Returns whether a background open is still on its way to the callback.
+     */
+    boolean isOpening() {
+        return opening;
+    }
+
+    /**
+     * Discards the background open in flight, if any. Its document is closed when it arrives.
+     */
+    void cancel() {
+        generation++;
+        opening = false;
+    }
+
+    private static void closeQuietly(PdfRenderer renderer) {
+        if (renderer != null) {
+            try {
+                renderer.close();
+            } catch (Exception e) {
+                Log.w(TAG, "Error closing PdfRenderer: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static void closeQuietly(ParcelFileDescriptor descriptor) {
+        if (descriptor != null) {
+            try {
+                descriptor.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing ParcelFileDescriptor: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.SparseArray;
+import java.util.ArrayList;
+import java.util.Collection;
+import org.ameelio.pdfviewer.core.PageGeometry;
+
+/**
+ * Recently viewed documents that are no longer on screen, kept open so switching back to one is
+ * instant. Memory only and strictly bounded: at most {@code maxEntries} documents, and their
+ * rendered pages plus the in-memory copies of staged documents together stay under
+ * {@code maxBytes}. Pages of the least recently used documents are dropped first; documents past
+ * the count limit, or whose staged copy still does not fit, are closed.
+ */
+class DocumentPool {
+
+    private static final String TAG = "DocumentPool";
+
+    /**
+     * A parked document: its open renderer plus what had been rendered and where the reader was.
+     */
+    static final class Entry {
+        final DocumentFingerprint fingerprint;
+        final DocumentHandle document;
+        final SparseArray<Bitmap> pages = new SparseArray<>();
+        PageGeometry geometry;
+        boolean hasPosition;
+        int page;
+        float pageOffset;
+        float scale = 1f;
+
+        Entry(DocumentFingerprint fingerprint, DocumentHandle document) {
+            this.fingerprint = fingerprint;
+            this.document = document;
+        }
+
+        long getPageBytes() {
+            long bytes = 0;
+            for (int i = 0; i < pages.size(); i++) {
+                bytes += PageBitmaps.byteCount(pages.valueAt(i));
+            }
+            return bytes;
+        }
+
+        /**
+         * Returns the pages' bytes plus the staged copy the open document keeps alive.
+         */
+        long getBytes() {
+            return getPageBytes() + document.getStagedBytes();
+        }
+
+        void close() {
+            pages.clear();
+            geometry = null;
+            document.close();
+        }
+    }
+
+    private final int maxEntries;
+    private long maxBytes;
+    // Least recently parked first
+    private final ArrayList<Entry> entries = new ArrayList<>();
+
+    DocumentPool(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Changes the byte budget, e.g. once the real memory budget is known, dropping pages and
+     * documents that no longer fit.
+     */
+    void setMaxBytes(long newMaxBytes) {
+        maxBytes = newMaxBytes;
+        trimToLimits();
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Parks a document, taking ownership of its renderer, then trims the pool to its limits.
+     */
+    void park(Entry entry) {
+        if (entry.fingerprint == null || maxEntries <= 0) {
+            entry.close();
+            return;
+        }
+        Entry existing = take(entry.fingerprint);
+        if (existing != null) {
+            existing.close();
+        }
+        entries.add(entry);
+        trimToLimits();
+    }
+
+    /**
+     * Removes and returns the parked document with this fingerprint, or null. The caller owns
+     * the returned entry's renderer.
+     */
+    Entry take(DocumentFingerprint fingerprint) {
+        if (fingerprint == null) {
+            return null;
+        }
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (fingerprint.equals(entries.get(i).fingerprint)) {
+                return entries.remove(i);
+            }
+        }
+        return null;
+    }
+
+    void addFingerprintsTo(Collection<DocumentFingerprint> fingerprints) {
+        for (int i = 0; i < entries.size(); i++) {
+            fingerprints.add(entries.get(i).fingerprint);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getPageBytes() {
+        long bytes = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            bytes += entries.get(i).getPageBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the memory parked documents keep alive: their pages and staged copies.
+     */
+    long getBytes() {
+        long bytes = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            bytes += entries.get(i).getBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Closes every parked document and drops its pages.
+     */
+    void clear() {
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).close();
+        }
+        entries.clear();
+    }
+
+    private void trimToLimits() {
+        while (entries.size() > maxEntries) {
+            Entry evicted = entries.remove(0);
+            Log.d(TAG, "Closing pooled document (pool full)");
+            evicted.close();
+        }
+        // Oldest pages go first; renderers stay open so switching back only costs re-rendering
+        long bytes = getBytes();
+        for (int i = 0; i < entries.size() && bytes > maxBytes; i++) {
+            Entry entry = entries.get(i);
+            bytes -= entry.getPageBytes();
+            entry.pages.clear();
+        }
+        // A staged copy is only freed by closing its document
+        while (bytes > maxBytes && !entries.isEmpty()) {
+            Entry evicted = entries.remove(0);
+            Log.d(TAG, "Closing pooled document (staged copy over budget)");
+            bytes -= evicted.getBytes();
+            evicted.close();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.SparseArray;
+import androidx.lifecycle.ViewModel;
+import java.util.HashSet;
+import java.util.Set;
+import org.ameelio.pdfviewer.core.PageGeometry;
+
+/**
+ * The open document and everything derived from it, retained in memory across configuration
+ * changes so rotating does not reopen and re-render the file. Nothing here is ever written to a
+ * Bundle or to disk; when the activity finishes for good the session closes the renderer and
+ * drops its pages.
+ *
+ * <p>Documents replaced by a new one are parked in a small {@link DocumentPool} rather than
+ * closed, so reopening the same content or switching back to the previous attachment reuses the
+ * open renderer, its rendered pages and the reading position.</p>
+ */
+public class DocumentSession extends ViewModel {
+
+    private static final String TAG = "DocumentSession";
+    private static final int MAX_POOLED_DOCUMENTS = 2;
+
+    // Keyed by page index; SparseArray avoids boxing the index on every bind
+    private final SparseArray<Bitmap> bitmapCache = new SparseArray<>();
+    private final PageBitmapRing pageRing = new PageBitmapRing();
+    private DocumentHandle document;
+    private PageGeometry geometry;
+    private DocumentFingerprint fingerprint;
+    // Parked pages and staged copies may use at most this share of the heap on top of the visible
+    // document, until the activity sets a budget from its MemoryAccountant
+    private final DocumentPool pool =
+            new DocumentPool(MAX_POOLED_DOCUMENTS, Runtime.getRuntime().maxMemory() / 8);
+
+    // Reading position captured before a configuration change or a switch to another document
+    private boolean hasSavedPosition = false;
+    private int savedPage = 0;
+    private float savedPageOffset = 0f;
+    private float savedScale = 1f;
+
+    public DocumentSession() {
+    }
+
+    SparseArray<Bitmap> getBitmapCache() {
+        return bitmapCache;
+    }
+
+    PageBitmapRing getPageRing() {
+        return pageRing;
+    }
+
+    DocumentHandle getDocument() {
+        return document;
+    }
+
+    boolean hasDocument() {
+        return document != null;
+    }
+
+    /**
+     * Returns whether the given content is the document already being shown.
+     */
+    boolean isCurrentDocument(DocumentFingerprint candidate) {
+        return document != null && candidate != null && candidate.equals(fingerprint);
+    }
+
+    /**
+     * Returns the fingerprints of the current and all parked documents, as a snapshot that a
+     * background open may check against.
+     */
+    Set<DocumentFingerprint> getOpenFingerprints() {
+        Set<DocumentFingerprint> fingerprints = new HashSet<>();
+        if (document != null && fingerprint != null) {
+            fingerprints.add(fingerprint);
+        }
+        pool.addFingerprintsTo(fingerprints);
+        return fingerprints;
+    }
+
+    DocumentPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Layout for the document surface, kept so page sizes learned while rendering survive
+     * recreation. Created on first use for the current document.
+     */
+    PageGeometry getGeometry(int horizontalMargin, int pageGap) {
+        if (geometry == null && document != null) {
+            geometry = new PageGeometry(document.getPageCount(), horizontalMargin, pageGap);
+        }
+        return geometry;
+    }
+
+    /**
+     * Takes ownership of a newly opened document. The previous one is parked in the pool with its
+     * pages and saved position, or closed when it has no fingerprint.
+     */
+    void replaceDocument(DocumentHandle newDocument, DocumentFingerprint newFingerprint) {
+        parkCurrentDocument();
+        document = newDocument;
+        fingerprint = newFingerprint;
+    }
+
+    /**
+     * Makes a parked document current again, restoring its pages, geometry and position.
+     *
+     * @return false if no document with this fingerprint is parked
+     */
+    boolean resumePooledDocument(DocumentFingerprint pooledFingerprint) {
+        DocumentPool.Entry entry = pool.take(pooledFingerprint);
+        if (entry == null) {
+            return false;
+        }
+        parkCurrentDocument();
+        document = entry.document;
+        fingerprint = entry.fingerprint;
+        geometry = entry.geometry;
+        for (int i = 0; i < entry.pages.size(); i++) {
+            bitmapCache.put(entry.pages.keyAt(i), entry.pages.valueAt(i));
+        }
+        if (entry.hasPosition) {
+            savePosition(entry.page, entry.pageOffset, entry.scale);
+        }
+        Log.d(TAG, "Resumed pooled document with " + bitmapCache.size() + " cached pages");
+        return true;
+    }
+
+    /**
+     * Closes all parked documents, e.g. when the system is low on memory.
+     */
+    void clearPool() {
+        pool.clear();
+    }
+
+    private void parkCurrentDocument() {
+        if (document == null) {
+            closeDocument();
+            return;
+        }
+        DocumentPool.Entry entry = new DocumentPool.Entry(fingerprint, document);
+        for (int i = 0; i < bitmapCache.size(); i++) {
+            entry.pages.put(bitmapCache.keyAt(i), bitmapCache.valueAt(i));
+        }
+        entry.geometry = geometry;
+        entry.hasPosition = hasSavedPosition;
+        entry.page = savedPage;
+        entry.pageOffset = savedPageOffset;
+        entry.scale = savedScale;
+
+        // Ownership moves to the pool; reset without closing
+        document = null;
+        fingerprint = null;
+        closeDocument();
+        pool.park(entry);
+    }
+
+    void closeDocument() {
+        // Cached pages are not recycled since a page view may still be drawing them. The ring
+        // recycles its buffers, which page drawables skip drawing once recycled
+        bitmapCache.clear();
+        pageRing.clear();
+        geometry = null;
+        fingerprint = null;
+        clearSavedPosition();
+
+        if (document != null) {
+            // Torn down off the main thread once in-flight renders let go of it
+            document.close();
+            document = null;
+        }
+    }
+
+    /**
+     * Records where the reader is, as a page plus a mode-specific offset within it, and the
+     * zoom scale.
+     */
+    void savePosition(int page, float pageOffset, float scale) {
+        hasSavedPosition = true;
+        savedPage = page;
+        savedPageOffset = pageOffset;
+        savedScale = scale;
+    }
+
+    boolean hasSavedPosition() {
+        return hasSavedPosition;
+    }
+
+    int getSavedPage() {
+        return savedPage;
+    }
+
+    float getSavedPageOffset() {
+        return savedPageOffset;
+    }
+
+    float getSavedScale() {
+        return savedScale;
+    }
+
+    void clearSavedPosition() {
+        hasSavedPosition = false;
+        savedPage = 0;
+        savedPageOffset = 0f;
+        savedScale = 1f;
+    }
+
+    @Override
+    protected void onCleared() {
+        closeDocument();
+        pool.clear();
+    }
+}
@@ -0,0 +1,247 @@
+package org.ameelio.pdfviewer;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Parcel;
+import android.os.ParcelFileDescriptor;
+import android.os.SharedMemory;
+import android.os.SystemClock;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Copies a document from a descriptor that PdfRenderer cannot use well into anonymous shared
+ * memory, once, so every later random read happens at RAM speed. This covers pipe-backed
+ * providers, which PdfRenderer rejects outright, and slow providers, where each of PDFium's
+ * many small reads would otherwise go back through the provider. The copy never touches the
+ * file system: the region has no path and disappears when its last descriptor closes.
+ *
+ * <p>SharedMemory needs API 27. On older releases documents are rendered straight from the
+ * provider's descriptor as before.</p>
+ */
+class DocumentStager {
+
+    private static final String TAG = "DocumentStager";
+
+    /** Largest document that will be copied into memory. */
+    static final long DEFAULT_MAX_STAGED_BYTES = 256L * 1024 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // Probe read of the first chunk; slower than this means the provider is not local storage
+    private static final long SLOW_PROBE_NANOS = 20_000_000L;
+    private static final int INITIAL_UNKNOWN_SIZE_CAPACITY = 4 * 1024 * 1024;
+    private static final long PROGRESS_INTERVAL_BYTES = 1024 * 1024;
+
+    interface ProgressListener {
+        /**
+         * Reports bytes copied so far.
+         *
+         * @param totalBytes the document size, or -1 when the source does not know it
+         */
+        void onStagingProgress(long bytesCopied, long totalBytes, long elapsedNanos);
+    }
+
+    /**
+     * Thrown when a document cannot be staged, e.g. because it exceeds the size cap.
+     */
+    static class StagingException extends IOException {
+        StagingException(String message) {
+            super(message);
+        }
+    }
+
+    private final long maxStagedBytes;
+
+    DocumentStager() {
+        this(DEFAULT_MAX_STAGED_BYTES);
+    }
+
+    DocumentStager(long maxStagedBytes) {
+        this.maxStagedBytes = maxStagedBytes;
+    }
+
+    static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1;
+    }
+
+    /**
+     * Returns whether the descriptor should be staged: it cannot seek, or reading from it is too
+     * slow to serve PDFium's random access directly.
+     */
+    boolean needsStaging(ParcelFileDescriptor source) {
+        if (!isSeekable(source)) {
+            return true;
+        }
+        long size = source.getStatSize();
+        if (size <= 0) {
+            return true;
+        }
+        ByteBuffer probe = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, size));
+        long start = SystemClock.elapsedRealtimeNanos();
+        try {
+            // Positional read, so the descriptor offset is left where it was
+            channelOf(source).read(probe, 0);
+        } catch (IOException e) {
+            return true;
+        }
+        return SystemClock.elapsedRealtimeNanos() - start > SLOW_PROBE_NANOS;
+    }
+
+    static boolean isSeekable(ParcelFileDescriptor source) {
+        try {
+            channelOf(source).position();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static FileChannel channelOf(ParcelFileDescriptor descriptor) {
+        // Not closed: the stream does not own the descriptor
+        return new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+    }
+
+    /**
+     * Reads the source from its current position to the end into a read-only shared memory
+     * region and returns a descriptor for it. The source is left open for the caller to close.
+     */
+    @TargetApi(Build.VERSION_CODES.O_MR1)
+    ParcelFileDescriptor stage(ParcelFileDescriptor source, ProgressListener listener) throws IOException {
+        if (!isSupported()) {
+            throw new StagingException("Staging needs API 27");
+        }
+        long knownSize = isSeekable(source) ? source.getStatSize() : -1;
+        if (knownSize > maxStagedBytes) {
+            throw new StagingException("Document is larger than the " +
+                    (maxStagedBytes / 1024 / 1024) + " MB in-memory limit");
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        SharedMemory region = null;
+        ByteBuffer mapping = null;
+        try {
+            int capacity = knownSize > 0 ? (int) knownSize : INITIAL_UNKNOWN_SIZE_CAPACITY;
+            region = SharedMemory.create("pdf-staging", capacity);
+            mapping = region.mapReadWrite();
+            FileInputStream input = new FileInputStream(source.getFileDescriptor());
+            byte[] chunk = new byte[CHUNK_SIZE];
+            long copied = 0;
+            long nextReport = PROGRESS_INTERVAL_BYTES;
+            int read;
+            while ((read = input.read(chunk)) > 0) {
+                if (copied + read > maxStagedBytes) {
+                    throw new StagingException("Document is larger than the " +
+                            (maxStagedBytes / 1024 / 1024) + " MB in-memory limit");
+                }
+                if (mapping.remaining() < read) {
+                    // Size was unknown or wrong: move to a region twice as large
+                    int grown = (int) Math.min(maxStagedBytes, Math.max((long) capacity * 2, copied + read));
+                    SharedMemory larger = SharedMemory.create("pdf-staging", grown);
+                    ByteBuffer largerMapping = mapOrClose(larger);
+                    mapping.flip();
+                    largerMapping.put(mapping);
+                    release(region, mapping);
+                    region = larger;
+                    mapping = largerMapping;
+                    capacity = grown;
+                }
+                mapping.put(chunk, 0, read);
+                copied += read;
+                if (listener != null && copied >= nextReport) {
+                    listener.onStagingProgress(copied, knownSize, SystemClock.elapsedRealtimeNanos() - start);
+                    nextReport = copied + PROGRESS_INTERVAL_BYTES;
+                }
+            }
+            if (copied == 0) {
+                throw new StagingException("Document is empty");
+            }
+
+            if (copied != capacity) {
+                // PdfRenderer takes the document length from the region size, so trim to fit
+                SharedMemory exact = SharedMemory.create("pdf-staging", (int) copied);
+                ByteBuffer exactMapping = mapOrClose(exact);
+                mapping.flip();
+                exactMapping.put(mapping);
+                release(region, mapping);
+                region = exact;
+                mapping = exactMapping;
+            }
+            SharedMemory.unmap(mapping);
+            mapping = null;
+            // Nothing may change the staged bytes from here on
+            region.setProtect(OsConstants.PROT_READ);
+
+            ParcelFileDescriptor staged = toParcelFileDescriptor(region);
+            if (Os.fstat(staged.getFileDescriptor()).st_size != copied) {
+                // Older ashmem drivers report no size, which PdfRenderer would read as empty
+                staged.close();
+                throw new StagingException("Shared memory size is not visible on this device");
+            }
+
+            long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+            if (listener != null) {
+                listener.onStagingProgress(copied, copied, elapsed);
+            }
+            Log.i(TAG, "Staged " + copied + " bytes in " + (elapsed / 1_000_000) + " ms (" +
+                    throughputKiBPerSecond(copied, elapsed) + " KiB/s)");
+            return staged;
+        } catch (ErrnoException e) {
+            throw new StagingException("Could not create shared memory: " + e.getMessage());
+        } finally {
+            // The returned descriptor holds its own reference to the region
+            release(region, mapping);
+        }
+    }
+
+    /**
+     * Maps a region that is not yet tracked by {@code stage}, closing it if mapping fails so the
+     * region does not leak.
+     */
+    @TargetApi(Build.VERSION_CODES.O_MR1)
+    private static ByteBuffer mapOrClose(SharedMemory region) throws ErrnoException {
+        try {
+            return region.mapReadWrite();
+        } catch (ErrnoException | RuntimeException e) {
+            region.close();
+            throw e;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.O_MR1)
+    private static void release(SharedMemory region, ByteBuffer mapping) {
+        if (mapping != null) {
+            SharedMemory.unmap(mapping);
+        }
+        if (region != null) {
+            region.close();
+        }
+    }
+
+    static long throughputKiBPerSecond(long bytes, long elapsedNanos) {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return bytes * 1_000_000_000L / elapsedNanos / 1024;
+    }
+
+    /**
+     * SharedMemory only hands out its descriptor through a Parcel; reading it back from one
+     * yields a ParcelFileDescriptor with its own duplicate of the region's fd.
+     */
+    @TargetApi(Build.VERSION_CODES.O_MR1)
+    private static ParcelFileDescriptor toParcelFileDescriptor(SharedMemory region) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            region.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return parcel.readFileDescriptor();
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package org.ameelio.pdfviewer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import org.ameelio.pdfviewer.core.PageGeometry;
+import org.ameelio.pdfviewer.core.ZoomMath;
+
+/**
+ * Continuous document surface that lays pages out from {@link PageGeometry} and draws only the
+ * visible part of each visible page onto its own canvas. Scrolling and zooming are a single
+ * viewport transform, so there are no child views per page. Zoom and pan arrive through the
+ * shared ZoomCoordinator, which keeps the zoom buttons and gestures identical to the
+ * RecyclerView mode.
+ */
+public class DocumentSurfaceView extends View implements
+        ZoomCoordinator.ZoomListener,
+        ZoomCoordinator.PanListener,
+        PanFlinger.Target {
+
+    /**
+     * Supplies page bitmaps to the surface.
+     */
+    interface PageBitmapProvider {
+        /**
+         * Returns the page bitmap if it is ready, or null. Called while drawing, so it must not
+         * start any work.
+         */
+        Bitmap getPageBitmap(int pageIndex);
+
+        /**
+         * Called, posted after the viewport moved, with the pages now intersecting it. Missing
+         * pages are rendered from here, calling {@link #onPageRendered} when they are.
+         */
+        void onVisiblePagesChanged(int firstVisible, int lastVisible);
+    }
+
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+    private final Paint placeholderPaint = new Paint();
+    private final Rect pageSrc = new Rect();
+    private final RectF pageDst = new RectF();
+    private final int[] tmpScreenLocation = new int[2];
+    private final PanFlinger flinger;
+
+    private ZoomCoordinator zoomCoordinator;
+    private DocumentGestureHandler gestureHandler;
+    private PageGeometry geometry;
+    private PageBitmapProvider pageProvider;
+    private float scale = 1f;
+    // Top-left corner of the visible region, in unscaled document coordinates
+    private float viewportLeft = 0f;
+    private float viewportTop = 0f;
+    private int firstVisiblePage = -1;
+    private int lastVisiblePage = -1;
+    // Range last delivered to the provider
+    private int reportedFirstPage = -1;
+    private int reportedLastPage = -1;
+    // Position requested before the view had a size, applied once it does
+    private int pendingCenterPage = -1;
+    private float pendingCenterOffset = 0f;
+
+    public DocumentSurfaceView(Context context) {
+        super(context);
+        flinger = new PanFlinger(this, this);
+        init();
+    }
+
+    public DocumentSurfaceView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        flinger = new PanFlinger(this, this);
+        init();
+    }
+
+    public DocumentSurfaceView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        flinger = new PanFlinger(this, this);
+        init();
+    }
+
+    private void init() {
+        placeholderPaint.setColor(Color.WHITE);
+    }
+
+    void setZoomCoordinator(ZoomCoordinator coordinator) {
+        if (zoomCoordinator == coordinator) {
+            return;
+        }
+        if (zoomCoordinator != null) {
+            unregisterFromCoordinator();
+        }
+        zoomCoordinator = coordinator;
+        gestureHandler = coordinator != null ? new DocumentGestureHandler(getContext(), coordinator) : null;
+        if (gestureHandler != null) {
+            gestureHandler.setPanAtAnyScale(true);
+            gestureHandler.setTouchTarget(this);
+        }
+        if (zoomCoordinator != null && isAttachedToWindow()) {
+            registerWithCoordinator();
+        }
+    }
+
+    void setDocument(PageGeometry geometry, PageBitmapProvider provider) {
+        flinger.stop();
+        this.geometry = geometry;
+        this.pageProvider = provider;
+        viewportTop = 0f;
+        firstVisiblePage = -1;
+        lastVisiblePage = -1;
+        reportedFirstPage = -1;
+        reportedLastPage = -1;
+        pendingCenterPage = -1;
+        if (geometry != null) {
+            geometry.setContentWidth(getWidth());
+        }
+        clampViewport();
+        updateVisiblePages();
+        invalidate();
+    }
+
+    /**
+     * Records a rendered page's real size, keeping the page at the top of the viewport in place
+     * when pages above it change height.
+     */
+    void onPageRendered(int pageIndex, int width, int height) {
+        if (geometry == null) {
+            return;
+        }
+        int anchorPage = geometry.findPageAt(viewportTop);
+        float anchorOffset = anchorPage >= 0 ? viewportTop - geometry.getPageTop(anchorPage) : 0f;
+        if (geometry.setPageSize(pageIndex, width, height) && anchorPage >= 0) {
+            viewportTop = geometry.getPageTop(anchorPage) + anchorOffset;
+            clampViewport();
+            updateVisiblePages();
+        }
+        invalidate();
+    }
+
+    /**
+     * Returns the page under the middle of the viewport, or -1 without a document.
+     */
+    int getCenterPage() {
+        if (geometry == null || getHeight() == 0) {
+            return pendingCenterPage;
+        }
+        return geometry.findPageAt(viewportTop + getHeight() / (2f * scale));
+    }
+
+    /**
+     * Returns how far down {@link #getCenterPage()} the middle of the viewport is, as a fraction
+     * of the page height.
+     */
+    float getCenterPageOffset() {
+        int page = getCenterPage();
+        if (geometry == null || getHeight() == 0 || page < 0) {
+            return pendingCenterOffset;
+        }
+        float centerY = viewportTop + getHeight() / (2f * scale);
+        return (centerY - geometry.getPageTop(page)) / geometry.getPageHeight(page);
+    }
+
+    /**
+     * Scrolls so the point {@code pageOffset} of the way down the page sits in the middle of the
+     * viewport. Deferred until the view is laid out.
+     */
+    void centerOnPage(int pageIndex, float pageOffset) {
+        if (geometry == null || getWidth() == 0 || getHeight() == 0) {
+            pendingCenterPage = pageIndex;
+            pendingCenterOffset = pageOffset;
+            return;
+        }
+        pendingCenterPage = -1;
+        if (pageIndex < 0 || pageIndex >= geometry.getPageCount()) {
+            return;
+        }
+        float centerY = geometry.getPageTop(pageIndex) + geometry.getPageHeight(pageIndex) * pageOffset;
+        viewportTop = centerY - getHeight() / (2f * scale);
+        clampViewport();
+        updateVisiblePages();
+        invalidate();
+    }
+
+    float getScale() {
+        return scale;
+    }
+
+    float getViewportLeft() {
+        return viewportLeft;
+    }
+
+    float getViewportTop() {
+        return viewportTop;
+    }
+
+    int getFirstVisiblePage() {
+        return firstVisiblePage;
+    }
+
+    int getLastVisiblePage() {
+        return lastVisiblePage;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (zoomCoordinator != null) {
+            registerWithCoordinator();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        flinger.stop();
+        removeCallbacks(reportVisiblePages);
+        if (zoomCoordinator != null) {
+            unregisterFromCoordinator();
+        }
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        if (geometry != null) {
+            geometry.setContentWidth(width);
+        }
+        clampViewport();
+        if (pendingCenterPage >= 0) {
+            centerOnPage(pendingCenterPage, pendingCenterOffset);
+        }
+        updateVisiblePages();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (gestureHandler == null) {
+            return super.onTouchEvent(event);
+        }
+        gestureHandler.handleTouch(event);
+        return true;
+    }
+
+    @Override
+    public void onGlobalScaleChanged(float newScale, float focusX, float focusY) {
+        float localX;
+        float localY;
+        if (Float.isNaN(focusX) || Float.isNaN(focusY)) {
+            localX = getWidth() / 2f;
+            localY = getHeight() / 2f;
+        } else {
+            getLocationOnScreen(tmpScreenLocation);
+            localX = focusX - tmpScreenLocation[0];
+            localY = focusY - tmpScreenLocation[1];
+        }
+        // Keep the document point under the focus fixed on screen
+        float documentX = viewportLeft + localX / scale;
+        float documentY = viewportTop + localY / scale;
+        scale = newScale;
+        viewportLeft = documentX - localX / scale;
+        viewportTop = documentY - localY / scale;
+        clampViewport();
+        updateVisiblePages();
+        invalidate();
+    }
+
+    @Override
+    public void onGlobalPanChanged(float dx, float dy) {
+        panBy(dx, dy);
+    }
+
+    @Override
+    public void onGlobalFling(float velocityX, float velocityY) {
+        flinger.start(velocityX, velocityY);
+    }
+
+    @Override
+    public void onGlobalFlingStopped() {
+        flinger.stop();
+    }
+
+    @Override
+    public boolean onFlingStep(float dx, float dy) {
+        return panBy(dx, dy);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (geometry == null || pageProvider == null || geometry.getPageCount() == 0 || getWidth() == 0) {
+            return;
+        }
+
+        float visibleWidth = getWidth() / scale;
+        float viewportRight = viewportLeft + visibleWidth;
+        float viewportBottom = viewportTop + getHeight() / scale;
+        float pageLeft = geometry.getPageLeft();
+        float pageWidth = geometry.getPageWidth();
+        float pageRight = pageLeft + pageWidth;
+        int pageCount = geometry.getPageCount();
+
+        canvas.save();
+        canvas.scale(scale, scale);
+        canvas.translate(-viewportLeft, -viewportTop);
+        for (int i = geometry.findPageAt(viewportTop); i < pageCount; i++) {
+            float pageTop = geometry.getPageTop(i);
+            if (pageTop >= viewportBottom) {
+                break;
+            }
+            float pageHeight = geometry.getPageHeight(i);
+            float pageBottom = pageTop + pageHeight;
+            if (pageBottom <= viewportTop) {
+                continue;
+            }
+
+            // Only the part of the page inside the viewport is drawn
+            float visibleLeft = Math.max(pageLeft, viewportLeft);
+            float visibleRight = Math.min(pageRight, viewportRight);
+            float visibleTop = Math.max(pageTop, viewportTop);
+            float visibleBottom = Math.min(pageBottom, viewportBottom);
+            if (visibleRight <= visibleLeft || visibleBottom <= visibleTop) {
+                continue;
+            }
+            pageDst.set(visibleLeft, visibleTop, visibleRight, visibleBottom);
+
+            Bitmap bitmap = pageProvider.getPageBitmap(i);
+            if (bitmap == null || bitmap.isRecycled()) {
+                canvas.drawRect(pageDst, placeholderPaint);
+                continue;
+            }
+            float scaleX = bitmap.getWidth() / pageWidth;
+            float scaleY = bitmap.getHeight() / pageHeight;
+            pageSrc.set(
+                    Math.round((visibleLeft - pageLeft) * scaleX),
+                    Math.round((visibleTop - pageTop) * scaleY),
+                    Math.round((visibleRight - pageLeft) * scaleX),
+                    Math.round((visibleBottom - pageTop) * scaleY));
+            canvas.drawBitmap(bitmap, pageSrc, pageDst, bitmapPaint);
+        }
+        canvas.restore();
+    }
+
+    private boolean panBy(float dx, float dy) {
+        float oldLeft = viewportLeft;
+        float oldTop = viewportTop;
+        viewportLeft -= dx / scale;
+        viewportTop -= dy / scale;
+        clampViewport();
+        boolean moved = viewportLeft != oldLeft || viewportTop != oldTop;
+        if (moved) {
+            updateVisiblePages();
+            invalidate();
+        }
+        return moved;
+    }
+
+    private void clampViewport() {
+        if (geometry == null || getWidth() == 0 || getHeight() == 0) {
+            return;
+        }
+        // Zoomed out, the pages stay centered horizontally and at the top
+        viewportLeft = ZoomMath.clampViewportOrigin(viewportLeft, getWidth() / scale,
+                geometry.getContentWidth(), true);
+        viewportTop = ZoomMath.clampViewportOrigin(viewportTop, getHeight() / scale,
+                geometry.getTotalHeight(), false);
+    }
+
+    /**
+     * Recomputes the pages intersecting the viewport after it moved, resized or the layout
+     * changed, and posts them to the provider so renders and cache trims happen outside onDraw.
+     * Several moves before the post runs are reported once.
+     */
+    private void updateVisiblePages() {
+        if (geometry == null || geometry.getPageCount() == 0 || getHeight() == 0) {
+            return;
+        }
+        float viewportBottom = viewportTop + getHeight() / scale;
+        int first = geometry.findPageAt(viewportTop);
+        int last = first;
+        for (int i = first + 1; i < geometry.getPageCount() && geometry.getPageTop(i) < viewportBottom; i++) {
+            last = i;
+        }
+        firstVisiblePage = first;
+        lastVisiblePage = last;
+        if (first != reportedFirstPage || last != reportedLastPage) {
+            removeCallbacks(reportVisiblePages);
+            post(reportVisiblePages);
+        }
+    }
+
+    private final Runnable reportVisiblePages = new Runnable() {
+        @Override
+        public void run() {
+            if (pageProvider == null || firstVisiblePage < 0
+                    || (firstVisiblePage == reportedFirstPage && lastVisiblePage == reportedLastPage)) {
+                return;
+            }
+            reportedFirstPage = firstVisiblePage;
+            reportedLastPage = lastVisiblePage;
+            pageProvider.onVisiblePagesChanged(firstVisiblePage, lastVisiblePage);
+        }
+    };
+
+    private void registerWithCoordinator() {
+        zoomCoordinator.register(this);
+        zoomCoordinator.registerPanListener(this);
+    }
+
+    private void unregisterFromCoordinator() {
+        zoomCoordinator.unregister(this);
+        zoomCoordinator.unregisterPanListener(this);
+    }
+}
@@ -1,101 +1,155 @@
 package org.ameelio.pdfviewer;
 
 import android.view.View;
+import org.ameelio.pdfviewer.core.ZoomMath;
 
 /**
  * Applies document-level scaling by transforming the RecyclerView (or any target view)
  * so every PDF page scrolls and zooms as a single continuous surface.
  */
-class DocumentZoomController implements ZoomCoordinator.ZoomListener, ZoomCoordinator.PanListener {
+class DocumentZoomController implements
+        ZoomCoordinator.ZoomListener,
+        ZoomCoordinator.PanListener,
+        PanFlinger.Target {
 
     private final View target;
     private final ZoomCoordinator coordinator;
+    private final PanFlinger flinger;
+    private final Runnable applyTransformsRunnable = this::applyTransforms;
     private float currentScale = 1f;
     private float translationX = 0f;
     private float translationY = 0f;
+    // Sub-pixel vertical overflow not yet handed to target.scrollBy (which only takes ints)
+    private float pendingScrollY = 0f;
 
     DocumentZoomController(View target, ZoomCoordinator coordinator) {
         this.target = target;
         this.coordinator = coordinator;
+        this.flinger = new PanFlinger(target, this);
         coordinator.register(this);
         coordinator.registerPanListener(this);
     }
 
     @Override
-    public void onGlobalScaleChanged(ZoomableImageView source, float scale, float focusX, float focusY) {
+    public void onGlobalScaleChanged(float scale, float focusX, float focusY) {
         currentScale = scale;
         if (currentScale <= 1f) {
             translationX = 0f;
             translationY = 0f;
+            pendingScrollY = 0f;
+            flinger.stop();
         }
         applyTransforms();
     }
 
     @Override
     public void onGlobalPanChanged(float dx, float dy) {
+        panBy(dx, dy);
+    }
+
+    @Override
+    public void onGlobalFling(float velocityX, float velocityY) {
+        if (currentScale <= 1f) {
+            flinger.stop();
+            return;
+        }
+        flinger.start(velocityX, velocityY);
+    }
+
+    @Override
+    public void onGlobalFlingStopped() {
+        flinger.stop();
+    }
+
+    /**
+     * Each fling frame is fed through the same pan path as finger movement, so the fling moves
+     * the translation first and spills into RecyclerView scrolling once the translation hits its
+     * clamp. It ends when neither can move.
+     */
+    @Override
+    public boolean onFlingStep(float dx, float dy) {
+        return panBy(dx, dy);
+    }
+
+    boolean isFlinging() {
+        return flinger.isFlinging();
+    }
+
+    void detach() {
+        flinger.stop();
+        coordinator.unregister(this);
+        coordinator.unregisterPanListener(this);
+    }
+
+    /**
+     * Moves the document by the given delta, returning whether any of it was consumed by
+     * translation or by scrolling the target.
+     */
+    private boolean panBy(float dx, float dy) {
         if (currentScale <= 1f) {
             translationX = 0f;
             translationY = 0f;
             applyTransforms();
-            return;
+            return false;
         }
         float desiredX = translationX + dx;
         float desiredY = translationY + dy;
 
-        float extraWidth = (target.getWidth() * (currentScale - 1f)) / 2f;
-        float extraHeight = (target.getHeight() * (currentScale - 1f)) / 2f;
-
-        float clampedX = clamp(desiredX, extraWidth);
-        float clampedY = clamp(desiredY, extraHeight);
+        float clampedX = ZoomMath.clampTranslation(desiredX, target.getWidth(), currentScale);
+        float clampedY = ZoomMath.clampTranslation(desiredY, target.getHeight(), currentScale);
 
         float overflowY = desiredY - clampedY;
 
+        boolean moved = clampedX != translationX || clampedY != translationY;
         translationX = clampedX;
         translationY = clampedY;
         applyTransforms();
 
-        if (Math.abs(overflowY) > 0.5f) {
-            target.scrollBy(0, (int) -overflowY);
-        }
+        return scrollOverflow(overflowY) || moved;
     }
 
-    void detach() {
-        coordinator.unregister(this);
-        coordinator.unregisterPanListener(this);
+    private boolean scrollOverflow(float overflowY) {
+        if (overflowY == 0f) {
+            return false;
+        }
+        // Finger moving down (positive overflow) scrolls the list towards the top
+        pendingScrollY -= overflowY;
+        int scrollY = (int) pendingScrollY;
+        if (scrollY == 0) {
+            return true;
+        }
+        if (!target.canScrollVertically(scrollY)) {
+            pendingScrollY = 0f;
+            return false;
+        }
+        target.scrollBy(0, scrollY);
+        pendingScrollY -= scrollY;
+        return true;
     }
 
     private void applyTransforms() {
         if (target.getWidth() == 0 || target.getHeight() == 0) {
-            target.post(this::applyTransforms);
+            target.removeCallbacks(applyTransformsRunnable);
+            target.post(applyTransformsRunnable);
             return;
         }
-        clampTranslations();
-        target.setPivotX(target.getWidth() / 2f);
-        target.setPivotY(target.getHeight() / 2f);
-        target.setScaleX(currentScale);
-        target.setScaleY(currentScale);
-        target.setTranslationX(translationX);
-        target.setTranslationY(translationY);
-    }
-
-    private void clampTranslations() {
-        if (currentScale <= 1f) {
-            translationX = 0f;
-            translationY = 0f;
-            return;
+        TraceSections.begin(TraceSections.APPLY_TRANSFORMS);
+        try {
+            clampTranslations();
+            target.setPivotX(target.getWidth() / 2f);
+            target.setPivotY(target.getHeight() / 2f);
+            target.setScaleX(currentScale);
+            target.setScaleY(currentScale);
+            target.setTranslationX(translationX);
+            target.setTranslationY(translationY);
+        } finally {
+            TraceSections.end();
         }
-        float extraWidth = (target.getWidth() * (currentScale - 1f)) / 2f;
-        float extraHeight = (target.getHeight() * (currentScale - 1f)) / 2f;
-        translationX = clamp(translationX, extraWidth);
-        translationY = clamp(translationY, extraHeight);
     }
 
-    private float clamp(float value, float limit) {
-        if (limit <= 0f) {
-            return 0f;
-        }
-        if (value > limit) return limit;
-        if (value < -limit) return -limit;
-        return value;
+    private void clampTranslations() {
+        // Clamps to zero when not zoomed in
+        translationX = ZoomMath.clampTranslation(translationX, target.getWidth(), currentScale);
+        translationY = ZoomMath.clampTranslation(translationY, target.getHeight(), currentScale);
     }
 }
@@ -0,0 +1,87 @@
+package org.ameelio.pdfviewer;
+
+import android.os.SystemClock;
+import android.util.Log;
+import java.util.Locale;
+
+/**
+ * Measures time-to-first-page for each document open: from the moment the URI is known until
+ * the first visible page, preview or full quality, is handed to its view. The result is logged
+ * once per open and kept in memory only.
+ */
+class FirstPageTimer {
+
+    private static final String TAG = "FirstPageTimer";
+
+    private long startNanos = -1;
+    private long openedNanos = -1;
+    private long lastTimeToFirstPageNanos = -1;
+    private boolean lastWasPreview = false;
+    private int completedCount = 0;
+
+    /**
+     * Starts timing an open, replacing any open that never showed a page.
+     */
+    void start() {
+        startNanos = SystemClock.elapsedRealtimeNanos();
+        openedNanos = -1;
+    }
+
+    boolean isRunning() {
+        return startNanos >= 0;
+    }
+
+    /**
+     * Marks the point where the renderer was ready, to split open cost from render cost.
+     */
+    void markOpened() {
+        if (isRunning()) {
+            openedNanos = SystemClock.elapsedRealtimeNanos();
+        }
+    }
+
+    /**
+     * Stops the timer when the first page reaches the screen. Later calls for the same open are
+     * ignored.
+     *
+     * @param preview whether what was shown is the preview-quality render
+     */
+    void onFirstPageShown(boolean preview) {
+        if (!isRunning()) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtimeNanos();
+        lastTimeToFirstPageNanos = now - startNanos;
+        lastWasPreview = preview;
+        completedCount++;
+        Log.i(TAG, String.format(Locale.US, "Time to first page: %.1f ms (open %.1f ms, %s)",
+                lastTimeToFirstPageNanos / 1e6,
+                openedNanos >= 0 ? (openedNanos - startNanos) / 1e6 : -1.0,
+                preview ? "preview" : "full quality"));
+        startNanos = -1;
+        openedNanos = -1;
+    }
+
+    /**
+     * Abandons the running measurement, e.g. when the open failed.
+     */
+    void cancel() {
+        startNanos = -1;
+        openedNanos = -1;
+    }
+
+    /**
+     * Returns the last measured time-to-first-page, or -1 before the first completed open.
+     */
+    long getLastTimeToFirstPageNanos() {
+        return lastTimeToFirstPageNanos;
+    }
+
+    boolean wasLastPreview() {
+        return lastWasPreview;
+    }
+
+    int getCompletedCount() {
+        return completedCount;
+    }
+}
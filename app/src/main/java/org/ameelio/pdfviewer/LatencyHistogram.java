@@ -0,0 +1,136 @@
+package org.ameelio.pdfviewer;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Fixed-size log-linear histogram of latencies in nanoseconds, in the spirit of HdrHistogram:
+ * values below 32 ns get one bucket each, above that every power of two is split into 16
+ * buckets, so any recorded value is reported within about 6% at every scale from nanoseconds to
+ * minutes. Recording never allocates and the whole histogram is one array of counts.
+ *
+ * <p>Safe to record into from any thread.</p>
+ */
+final class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 32;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Smallest exponent with log-linear buckets: 2^5 == LINEAR_BUCKETS
+    private static final int FIRST_EXPONENT = 5;
+    static final int BUCKET_COUNT = LINEAR_BUCKETS + (63 - FIRST_EXPONENT) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+    private long last = 0;
+
+    synchronized void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[bucketIndex(nanos)]++;
+        totalCount++;
+        sum += nanos;
+        last = nanos;
+        if (nanos < min) {
+            min = nanos;
+        }
+        if (nanos > max) {
+            max = nanos;
+        }
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest value that falls into the given bucket.
+     */
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + FIRST_EXPONENT;
+        long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    synchronized long getCount() {
+        return totalCount;
+    }
+
+    synchronized long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the most recently recorded value, or 0 before the first.
+     */
+    synchronized long getLastValue() {
+        return last;
+    }
+
+    synchronized long getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * Returns the value at the given percentile (0-100): the upper bound of the bucket holding
+     * it, capped at the largest recorded value.
+     */
+    synchronized long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * totalCount);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    synchronized void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+        last = 0;
+    }
+
+    synchronized void dump(PrintWriter writer, String prefix, String name) {
+        if (totalCount == 0) {
+            writer.println(prefix + name + ": no samples");
+            return;
+        }
+        writer.println(String.format(Locale.US,
+                "%s%s: count=%d min=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms mean=%.2fms",
+                prefix, name, totalCount, millis(getMin()), millis(getValueAtPercentile(50)),
+                millis(getValueAtPercentile(90)), millis(getValueAtPercentile(99)), millis(max),
+                millis(getMean())));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,83 @@
+package org.ameelio.pdfviewer;
+
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Counts layout passes of a view's window and attributes them to render batches, so a change
+ * that makes delivering pages re-measure again shows up in the logs and in tests.
+ */
+class LayoutPassCounter implements ViewTreeObserver.OnGlobalLayoutListener {
+
+    private static final String TAG = "LayoutPassCounter";
+    private final ViewerLog log = new ViewerLog(TAG);
+
+    private View view;
+    private int layoutPasses = 0;
+    private int passesAtBatchStart = 0;
+    private boolean batchOpen = false;
+    private int lastBatchLayoutPasses = 0;
+    private int maxBatchLayoutPasses = 0;
+
+    void attach(View target) {
+        view = target;
+        target.getViewTreeObserver().addOnGlobalLayoutListener(this);
+    }
+
+    void detach() {
+        if (view != null) {
+            view.getViewTreeObserver().removeOnGlobalLayoutListener(this);
+            view = null;
+        }
+    }
+
+    @Override
+    public void onGlobalLayout() {
+        layoutPasses++;
+    }
+
+    /**
+     * Marks the delivery of a render batch. Layout passes until the next batch are counted
+     * against this one.
+     */
+    void onBatchDelivered() {
+        closeBatch();
+        batchOpen = true;
+        passesAtBatchStart = layoutPasses;
+    }
+
+    private void closeBatch() {
+        if (!batchOpen) {
+            return;
+        }
+        lastBatchLayoutPasses = layoutPasses - passesAtBatchStart;
+        if (lastBatchLayoutPasses > maxBatchLayoutPasses) {
+            maxBatchLayoutPasses = lastBatchLayoutPasses;
+        }
+        if (lastBatchLayoutPasses > 1) {
+            log.d("Render batch was followed by %d layout passes", lastBatchLayoutPasses);
+        }
+    }
+
+    int getLayoutPasses() {
+        return layoutPasses;
+    }
+
+    /**
+     * Returns the layout passes since the most recent batch was delivered.
+     */
+    int getLayoutPassesSinceBatch() {
+        return batchOpen ? layoutPasses - passesAtBatchStart : 0;
+    }
+
+    /**
+     * Returns the layout passes attributed to the previous complete batch.
+     */
+    int getLastBatchLayoutPasses() {
+        return lastBatchLayoutPasses;
+    }
+
+    int getMaxBatchLayoutPasses() {
+        return Math.max(maxBatchLayoutPasses, getLayoutPassesSinceBatch());
+    }
+}
@@ -0,0 +1,271 @@
+package org.ameelio.pdfviewer;
+
+import android.os.Looper;
+import android.util.Log;
+import android.util.Printer;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Times every message the main looper dispatches and records those that hold the main thread
+ * longer than a threshold, together with the stage responsible: the outermost
+ * {@link TraceSections} section that took the most time during the message, such as opening a
+ * document, binding or rendering a page, or cache cleanup.
+ *
+ * <p>Message timing uses {@link Looper#setMessageLogging}, which builds a string for every
+ * message, so the detector is only installed in debuggable builds. Stalls are logged as they
+ * happen and listed in {@code dumpsys activity}; slice durations also go to the
+ * {@link MetricsRegistry#MAIN_THREAD_SLICE} histogram.</p>
+ */
+final class MainThreadStallDetector implements Printer {
+
+    private static final String TAG = "MainThreadStall";
+
+    static final long DEFAULT_THRESHOLD_NANOS = 100_000_000L;
+    /** Stage reported for a slice that ran outside any trace section. */
+    static final String UNKNOWN_STAGE = "other";
+
+    private static final int MAX_RECORDED_STALLS = 16;
+    private static final int MAX_STAGES = 16;
+    private static final int MAX_DEPTH = 8;
+
+    interface Clock {
+        long nanoTime();
+    }
+
+    static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    static final class Stall {
+        final String stage;
+        final long durationNanos;
+        /** The looper's description of the message, naming its handler and callback. */
+        final String message;
+
+        Stall(String stage, long durationNanos, String message) {
+            this.stage = stage;
+            this.durationNanos = durationNanos;
+            this.message = message;
+        }
+    }
+
+    private static volatile MainThreadStallDetector installed;
+
+    private final long thresholdNanos;
+    private final Clock clock;
+    private final LatencyHistogram slices;
+    private final MetricsRegistry.Counter stallCounter;
+
+    // State of the message being dispatched
+    private long messageStart = -1L;
+    private String message;
+    private String culprit;
+    private long culpritNanos;
+    private final String[] openSections = new String[MAX_DEPTH];
+    private final long[] openSectionStarts = new long[MAX_DEPTH];
+    private int depth = 0;
+
+    // Longest main-thread time seen per outermost section, keyed by the section constant
+    private final String[] stageNames = new String[MAX_STAGES];
+    private final long[] stageMaxNanos = new long[MAX_STAGES];
+    private int stageCount = 0;
+
+    private long longestSliceNanos = 0L;
+    private String longestSliceStage;
+    private final Stall[] stalls = new Stall[MAX_RECORDED_STALLS];
+    private int stallCount = 0;
+
+    MainThreadStallDetector(long thresholdNanos, Clock clock, MetricsRegistry metrics) {
+        this.thresholdNanos = thresholdNanos;
+        this.clock = clock;
+        this.slices = metrics.histogram(MetricsRegistry.MAIN_THREAD_SLICE);
+        this.stallCounter = metrics.counter(MetricsRegistry.MAIN_THREAD_STALLS);
+    }
+
+    /**
+     * Starts timing the main looper for the rest of the process, once. Later calls return the
+     * detector already installed.
+     */
+    static synchronized MainThreadStallDetector install() {
+        if (installed == null) {
+            install(new MainThreadStallDetector(DEFAULT_THRESHOLD_NANOS, SYSTEM_CLOCK, MetricsRegistry.getDefault()));
+        }
+        return installed;
+    }
+
+    /**
+     * Makes this detector the one timing the main looper and trace sections, replacing any
+     * other.
+     */
+    static synchronized void install(MainThreadStallDetector detector) {
+        Looper.getMainLooper().setMessageLogging(detector);
+        installed = detector;
+    }
+
+    static synchronized void uninstall() {
+        Looper.getMainLooper().setMessageLogging(null);
+        installed = null;
+    }
+
+    /**
+     * Returns the detector timing the main looper, or null in builds that do not install one.
+     */
+    static MainThreadStallDetector getInstalled() {
+        return installed;
+    }
+
+    /**
+     * Called by {@link TraceSections} for every section; only main-thread sections count.
+     */
+    static void onSectionBegin(String section) {
+        MainThreadStallDetector detector = installed;
+        if (detector != null && isMainThread()) {
+            detector.sectionBegan(section);
+        }
+    }
+
+    static void onSectionEnd() {
+        MainThreadStallDetector detector = installed;
+        if (detector != null && isMainThread()) {
+            detector.sectionEnded();
+        }
+    }
+
+    private static boolean isMainThread() {
+        return Looper.getMainLooper().getThread() == Thread.currentThread();
+    }
+
+    @Override
+    public void println(String line) {
+        // Looper brackets each message with ">>>>> Dispatching to ..." and "<<<<< Finished to ..."
+        if (line.startsWith(">>>>>")) {
+            messageStarted(line);
+        } else if (line.startsWith("<<<<<")) {
+            messageFinished();
+        }
+    }
+
+    synchronized void messageStarted(String description) {
+        messageStart = clock.nanoTime();
+        message = description;
+        culprit = null;
+        culpritNanos = 0L;
+    }
+
+    synchronized void messageFinished() {
+        if (messageStart < 0) {
+            return;
+        }
+        long duration = clock.nanoTime() - messageStart;
+        messageStart = -1L;
+        String stage = culprit != null ? culprit : UNKNOWN_STAGE;
+        slices.record(duration);
+        if (duration > longestSliceNanos) {
+            longestSliceNanos = duration;
+            longestSliceStage = stage;
+        }
+        if (duration >= thresholdNanos) {
+            stalls[stallCount % MAX_RECORDED_STALLS] = new Stall(stage, duration, message);
+            stallCount++;
+            stallCounter.increment();
+            Log.w(TAG, "Main thread blocked for " + (duration / 1_000_000L) + " ms in " + stage + ": " + message);
+        }
+        message = null;
+    }
+
+    synchronized void sectionBegan(String section) {
+        if (depth < MAX_DEPTH) {
+            openSections[depth] = section;
+            openSectionStarts[depth] = clock.nanoTime();
+        }
+        depth++;
+    }
+
+    synchronized void sectionEnded() {
+        if (depth == 0) {
+            return;
+        }
+        depth--;
+        if (depth != 0) {
+            // Nested sections are already counted in their outermost one
+            return;
+        }
+        String section = openSections[0];
+        long elapsed = clock.nanoTime() - openSectionStarts[0];
+        openSections[0] = null;
+        recordStage(section, elapsed);
+        if (messageStart >= 0 && elapsed > culpritNanos) {
+            culprit = section;
+            culpritNanos = elapsed;
+        }
+    }
+
+    private void recordStage(String section, long elapsed) {
+        for (int i = 0; i < stageCount; i++) {
+            if (stageNames[i] == section) {
+                stageMaxNanos[i] = Math.max(stageMaxNanos[i], elapsed);
+                return;
+            }
+        }
+        if (stageCount < MAX_STAGES) {
+            stageNames[stageCount] = section;
+            stageMaxNanos[stageCount] = elapsed;
+            stageCount++;
+        }
+    }
+
+    /** Longest single message dispatched on the main thread so far. */
+    synchronized long getLongestSliceNanos() {
+        return longestSliceNanos;
+    }
+
+    /** Stage of the longest slice, or null before any message was timed. */
+    synchronized String getLongestSliceStage() {
+        return longestSliceStage;
+    }
+
+    /**
+     * Returns the longest time one run of a section took on the main thread, or 0 if it never
+     * ran there.
+     */
+    synchronized long getLongestStageNanos(String section) {
+        for (int i = 0; i < stageCount; i++) {
+            if (stageNames[i].equals(section)) {
+                return stageMaxNanos[i];
+            }
+        }
+        return 0L;
+    }
+
+    synchronized int getStallCount() {
+        return stallCount;
+    }
+
+    /** Returns the most recent stall, or null if there was none. */
+    synchronized Stall getLastStall() {
+        return stallCount == 0 ? null : stalls[(stallCount - 1) % MAX_RECORDED_STALLS];
+    }
+
+    synchronized void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println(String.format(Locale.US, "Main thread: longest slice %.1f ms (%s), %d stalls over %d ms",
+                longestSliceNanos / 1e6, longestSliceStage != null ? longestSliceStage : "none",
+                stallCount, thresholdNanos / 1_000_000L));
+        for (int i = 0; i < stageCount; i++) {
+            writer.print(prefix);
+            writer.println(String.format(Locale.US, "  %s: longest %.1f ms",
+                    stageNames[i], stageMaxNanos[i] / 1e6));
+        }
+        int recorded = Math.min(stallCount, MAX_RECORDED_STALLS);
+        for (int i = 0; i < recorded; i++) {
+            Stall stall = stalls[(stallCount - 1 - i) % MAX_RECORDED_STALLS];
+            writer.print(prefix);
+            writer.println(String.format(Locale.US, "  stall %.1f ms in %s: %s",
+                    stall.durationNanos / 1e6, stall.stage, stall.message));
+        }
+    }
+}
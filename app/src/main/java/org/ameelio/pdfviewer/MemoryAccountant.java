@@ -0,0 +1,139 @@
+package org.ameelio.pdfviewer;
+
+import android.annotation.TargetApi;
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.Debug;
+import android.os.SystemClock;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Works out how much memory page bitmaps may still take, from the memory that actually holds
+ * their pixels. Up to API 25 that is the Java heap. From API 26 bitmap pixels live in native
+ * memory, or graphics memory for hardware bitmaps, so the Java heap numbers say nothing about
+ * them; there the budget follows the app's memory class and the system's free memory instead.
+ *
+ * <p>{@link #bytesAvailableForPages} is the one figure caches budget against. The log line and
+ * the dumpsys section show the inputs it was computed from.</p>
+ */
+class MemoryAccountant {
+
+    // Pages may take this share of the app's memory class
+    private static final int PAGE_BUDGET_DIVISOR = 4;
+    // Java heap left free for everything else when pixels share the heap
+    private static final long HEAP_HEADROOM_BYTES = 8L * 1024 * 1024;
+    // System memory is a binder call; asking more often than this returns the last answer
+    private static final long SYSTEM_MEMORY_REFRESH_NANOS = 1_000_000_000L;
+    private static final long MB = 1024 * 1024;
+
+    private final ActivityManager activityManager;
+    private final long memoryClassBytes;
+    private final boolean pixelsOnJavaHeap;
+    private final Runtime runtime = Runtime.getRuntime();
+    private final ActivityManager.MemoryInfo systemMemory = new ActivityManager.MemoryInfo();
+    private long systemMemoryReadAt = Long.MIN_VALUE;
+
+    MemoryAccountant(Context context) {
+        this((ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE),
+                Build.VERSION.SDK_INT < Build.VERSION_CODES.O);
+    }
+
+    MemoryAccountant(ActivityManager activityManager, boolean pixelsOnJavaHeap) {
+        this.activityManager = activityManager;
+        this.memoryClassBytes = (activityManager != null ? activityManager.getMemoryClass() : 0) * MB;
+        this.pixelsOnJavaHeap = pixelsOnJavaHeap;
+    }
+
+    /**
+     * Returns the most page bitmaps may take in total, whatever else is going on.
+     */
+    long getPageBudgetBytes() {
+        long appMemory = memoryClassBytes > 0 ? memoryClassBytes : runtime.maxMemory();
+        if (pixelsOnJavaHeap) {
+            appMemory = Math.min(appMemory, runtime.maxMemory());
+        }
+        return appMemory / PAGE_BUDGET_DIVISOR;
+    }
+
+    /**
+     * Returns how many more bytes of page bitmaps fit, given the bytes pages already hold. Never
+     * negative; zero means the caches should give pages back before keeping new ones.
+     */
+    long bytesAvailableForPages(long pageBytes) {
+        long available = getPageBudgetBytes() - pageBytes;
+        if (pixelsOnJavaHeap) {
+            long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+            available = Math.min(available, freeHeap - HEAP_HEADROOM_BYTES);
+        } else if (refreshSystemMemory()) {
+            if (systemMemory.lowMemory) {
+                return 0;
+            }
+            available = Math.min(available, systemMemory.availMem - systemMemory.threshold);
+        }
+        return Math.max(0, available);
+    }
+
+    /**
+     * Re-reads system memory if the last reading is stale.
+     *
+     * @return false if the system reported nothing usable
+     */
+    private boolean refreshSystemMemory() {
+        if (activityManager == null) {
+            return false;
+        }
+        long now = SystemClock.elapsedRealtimeNanos();
+        if (systemMemoryReadAt == Long.MIN_VALUE || now - systemMemoryReadAt >= SYSTEM_MEMORY_REFRESH_NANOS) {
+            activityManager.getMemoryInfo(systemMemory);
+            systemMemoryReadAt = now;
+        }
+        return systemMemory.totalMem > 0;
+    }
+
+    /**
+     * One-line summary for the log.
+     */
+    String describe(long pageBytes) {
+        long javaUsed = runtime.totalMemory() - runtime.freeMemory();
+        return String.format(Locale.US,
+                "Java heap %d/%d MB, native heap %d MB, pages %d KB, budget %d MB, available for pages %d KB%s",
+                javaUsed / MB, runtime.maxMemory() / MB, Debug.getNativeHeapAllocatedSize() / MB,
+                pageBytes / 1024, getPageBudgetBytes() / MB, bytesAvailableForPages(pageBytes) / 1024,
+                pixelsOnJavaHeap ? " (pixels on Java heap)" : "");
+    }
+
+    /**
+     * Prints the accounting for dumpsys, including the process totals from
+     * {@link Debug.MemoryInfo}, which are too slow to read anywhere else.
+     */
+    void dump(String prefix, PrintWriter writer, long pageBytes) {
+        writer.println(prefix + "Memory:");
+        String inner = prefix + "  ";
+        writer.println(inner + describe(pageBytes));
+        if (refreshSystemMemory()) {
+            writer.println(String.format(Locale.US, "%ssystem available %d MB, low-memory threshold %d MB%s",
+                    inner, systemMemory.availMem / MB, systemMemory.threshold / MB,
+                    systemMemory.lowMemory ? ", LOW" : ""));
+        }
+        Debug.MemoryInfo processMemory = new Debug.MemoryInfo();
+        Debug.getMemoryInfo(processMemory);
+        writer.println(String.format(Locale.US, "%sPSS total %d KB, native %d KB, Java %d KB%s",
+                inner, processMemory.getTotalPss(), processMemory.nativePss, processMemory.dalvikPss,
+                graphicsPss(processMemory)));
+    }
+
+    private static String graphicsPss(Debug.MemoryInfo processMemory) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return "";
+        }
+        return ", graphics " + memoryStat(processMemory, "summary.graphics") + " KB";
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private static String memoryStat(Debug.MemoryInfo processMemory, String name) {
+        String value = processMemory.getMemoryStat(name);
+        return value != null ? value : "?";
+    }
+}
@@ -0,0 +1,41 @@
+package org.ameelio.pdfviewer;
+
+/**
+ * Decides which calls on a hot path take a memory snapshot: one in every {@code interval}
+ * calls, or none when the interval is zero or less. Snapshots query the runtime several times
+ * and format a line, which is too much to do on every bind.
+ */
+class MemorySnapshotSampler {
+
+    static final int DEFAULT_INTERVAL = 32;
+
+    private int interval;
+    private int callsSinceSample = 0;
+
+    MemorySnapshotSampler(int interval) {
+        this.interval = interval;
+    }
+
+    void setInterval(int newInterval) {
+        interval = newInterval;
+        callsSinceSample = 0;
+    }
+
+    int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Counts one call and returns whether it should take a snapshot.
+     */
+    boolean shouldSample() {
+        if (interval <= 0) {
+            return false;
+        }
+        if (++callsSinceSample < interval) {
+            return false;
+        }
+        callsSinceSample = 0;
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+package org.ameelio.pdfviewer;
+
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide performance metrics: latency histograms, counters and gauges, looked up by name
+ * and printed by {@link PdfViewerActivity#dump} for {@code adb shell dumpsys activity}. Values
+ * live only in memory and are never written to disk or sent anywhere.
+ *
+ * <p>Callers look a metric up once and keep it; recording into it afterwards never allocates.</p>
+ */
+final class MetricsRegistry {
+
+    /** Time from opening the descriptor to having a renderer, in nanoseconds. */
+    static final String OPEN_LATENCY = "document.open";
+    /** Time to open, render and close one page, in nanoseconds. */
+    static final String RENDER_LATENCY = "page.render";
+    /** Time from binding a list page to the first frame that draws its rendered pixels. */
+    static final String BIND_TO_PIXELS_LATENCY = "page.bind_to_pixels";
+    static final String CACHE_HITS = "page_cache.hits";
+    static final String CACHE_MISSES = "page_cache.misses";
+    static final String CACHE_EVICTIONS = "page_cache.evictions";
+    /** Bytes held by page bitmaps the viewer currently references. */
+    static final String RESIDENT_BITMAP_BYTES = "bitmaps.resident_bytes";
+    /** Further page bitmap bytes the memory budget allows, see {@link MemoryAccountant}. */
+    static final String PAGE_BYTES_AVAILABLE = "bitmaps.available_bytes";
+    /** Page renders requested and not yet delivered. */
+    static final String RENDER_QUEUE_DEPTH = "render.queue_depth";
+    /** Time the main thread spent on each looper message, see {@link MainThreadStallDetector}. */
+    static final String MAIN_THREAD_SLICE = "main_thread.slice";
+    /** Main-thread messages that ran past the stall threshold. */
+    static final String MAIN_THREAD_STALLS = "main_thread.stalls";
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    static final class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        void increment() {
+            value.incrementAndGet();
+        }
+
+        void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * A value that is set rather than accumulated, e.g. a size sampled at a point in time.
+     */
+    static final class Gauge {
+        private volatile long value;
+
+        void set(long newValue) {
+            value = newValue;
+        }
+
+        long get() {
+            return value;
+        }
+    }
+
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private final Map<String, Counter> counters = new LinkedHashMap<>();
+    private final Map<String, Gauge> gauges = new LinkedHashMap<>();
+
+    static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    synchronized LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            histograms.put(name, histogram);
+        }
+        return histogram;
+    }
+
+    synchronized Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counter = new Counter();
+            counters.put(name, counter);
+        }
+        return counter;
+    }
+
+    synchronized Gauge gauge(String name) {
+        Gauge gauge = gauges.get(name);
+        if (gauge == null) {
+            gauge = new Gauge();
+            gauges.put(name, gauge);
+        }
+        return gauge;
+    }
+
+    /**
+     * Clears every histogram and counter and zeroes the gauges. Metrics already looked up stay
+     * valid.
+     */
+    synchronized void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        for (Counter counter : counters.values()) {
+            counter.value.set(0);
+        }
+        for (Gauge gauge : gauges.values()) {
+            gauge.set(0);
+        }
+    }
+
+    synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "Performance metrics:");
+        String inner = prefix + "  ";
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            entry.getValue().dump(writer, inner, entry.getKey());
+        }
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            writer.println(inner + entry.getKey() + ": " + entry.getValue().get());
+        }
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            writer.println(inner + entry.getKey() + ": " + entry.getValue().get());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Drawable owned by a page ViewHolder for its whole lifetime. Rebinding swaps the bitmap in
+ * place instead of allocating a new BitmapDrawable, and the last page size is kept after the
+ * bitmap is released so a recycled holder rebinding a same-sized page needs no new layout pass.
+ */
+class PageBitmapDrawable extends Drawable {
+
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+    private Bitmap bitmap;
+    private int intrinsicWidth = -1;
+    private int intrinsicHeight = -1;
+
+    /**
+     * Shows the given bitmap, or nothing when null.
+     *
+     * @return true when the intrinsic size changed and the hosting view must be re-measured
+     */
+    boolean setBitmap(Bitmap newBitmap) {
+        if (newBitmap == null) {
+            return setBitmap(null, intrinsicWidth, intrinsicHeight);
+        }
+        return setBitmap(newBitmap, newBitmap.getWidth(), newBitmap.getHeight());
+    }
+
+    /**
+     * Shows the given bitmap stretched to report the given size, e.g. a low-resolution preview
+     * standing in for the full render of the same page. With a null bitmap this reserves the
+     * size for a page that has not rendered yet.
+     *
+     * @return true when the intrinsic size changed and the hosting view must be re-measured
+     */
+    boolean setBitmap(Bitmap newBitmap, int width, int height) {
+        if (newBitmap == bitmap && width == intrinsicWidth && height == intrinsicHeight) {
+            return false;
+        }
+        bitmap = newBitmap;
+        boolean sizeChanged = false;
+        if (width > 0 && height > 0 && (width != intrinsicWidth || height != intrinsicHeight)) {
+            intrinsicWidth = width;
+            intrinsicHeight = height;
+            sizeChanged = true;
+        }
+        invalidateSelf();
+        return sizeChanged;
+    }
+
+    Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        Bitmap current = bitmap;
+        if (current == null || current.isRecycled()) {
+            return;
+        }
+        canvas.drawBitmap(current, null, getBounds(), paint);
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return intrinsicWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return intrinsicHeight;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        paint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        paint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
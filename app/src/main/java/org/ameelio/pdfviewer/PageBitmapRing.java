@@ -0,0 +1,225 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+
+import java.util.Arrays;
+
+/**
+ * Fixed set of three viewport-sized page bitmaps for the paged reading mode: previous, current
+ * and next. Page {@code n} always lives in slot {@code n % 3}, so moving one page forward or
+ * back reuses the buffer of the page that just dropped out of the window and no other bitmap is
+ * ever allocated for pages.
+ *
+ * <p>Pages are rendered into their slot on a background thread. A slot handed out by
+ * {@link #beginRender} is in flight until {@link #finishRender} takes it back on the main
+ * thread. A page wanting a slot that is in flight waits for it rather than getting a buffer of
+ * its own, so even fast paging never has more than three buffers alive. A buffer the ring has
+ * let go of while in flight, after a clear, is recycled when it comes back rather than while the
+ * worker is still drawing into it.</p>
+ */
+class PageBitmapRing {
+
+    static final int SLOT_COUNT = 3;
+
+    private final Bitmap[] slots = new Bitmap[SLOT_COUNT];
+    // Page currently rendered into each slot, or -1 when the slot holds nothing valid
+    private final int[] slotPages = new int[SLOT_COUNT];
+    // Buffer and page of the render in flight for each slot, if any
+    private final Bitmap[] inFlight = new Bitmap[SLOT_COUNT];
+    private final int[] inFlightPages = new int[SLOT_COUNT];
+    // Page to render into each slot once its render in flight is back, or -1
+    private final int[] waitingPages = new int[SLOT_COUNT];
+    private int width = 0;
+    private int height = 0;
+
+    PageBitmapRing() {
+        Arrays.fill(slotPages, -1);
+        Arrays.fill(inFlightPages, -1);
+        Arrays.fill(waitingPages, -1);
+    }
+
+    /**
+     * Sets the bitmap size. A new size invalidates every slot; buffers are reconfigured in place
+     * when they are large enough, and replaced otherwise, as each slot is next rendered into.
+     * Pages in flight wait to be rendered again at the new size.
+     *
+     * @return true if the size changed
+     */
+    boolean setSize(int newWidth, int newHeight) {
+        if (newWidth == width && newHeight == height) {
+            return false;
+        }
+        width = newWidth;
+        height = newHeight;
+        Arrays.fill(slotPages, -1);
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            // Renders in flight are at the old size: render the page again once it is back
+            if (inFlight[i] != null && waitingPages[i] < 0) {
+                waitingPages[i] = inFlightPages[i];
+            }
+        }
+        return true;
+    }
+
+    boolean hasSize() {
+        return width > 0 && height > 0;
+    }
+
+    /**
+     * Returns whether the given page is currently rendered in its slot.
+     */
+    boolean holds(int pageIndex) {
+        return pageIndex >= 0 && slotPages[pageIndex % SLOT_COUNT] == pageIndex;
+    }
+
+    /**
+     * Returns whether the given page is being rendered into its slot or waiting to be.
+     */
+    boolean isRendering(int pageIndex) {
+        if (pageIndex < 0) {
+            return false;
+        }
+        int slot = pageIndex % SLOT_COUNT;
+        return inFlightPages[slot] == pageIndex || waitingPages[slot] == pageIndex;
+    }
+
+    /**
+     * Returns how many renders handed out by {@link #beginRender} have not finished yet.
+     */
+    int getRenderingCount() {
+        int count = 0;
+        for (Bitmap bitmap : inFlight) {
+            if (bitmap != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the bitmap the given page is shown from. Its content is only valid while
+     * {@link #holds} is true for the page. A slot in flight is returned as it is, or null once
+     * the ring has let go of its buffer; nothing is allocated for it until the render is back.
+     */
+    Bitmap getSlot(int pageIndex) {
+        int slot = pageIndex % SLOT_COUNT;
+        Bitmap bitmap = slots[slot];
+        if (inFlight[slot] != null) {
+            return bitmap;
+        }
+        if (bitmap != null && (bitmap.getWidth() != width || bitmap.getHeight() != height)) {
+            bitmap = resize(slot, bitmap);
+        }
+        if (bitmap == null && hasSize()) {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            slots[slot] = bitmap;
+        }
+        return bitmap;
+    }
+
+    private Bitmap resize(int slot, Bitmap bitmap) {
+        if (bitmap.getAllocationByteCount() >= width * height * 4) {
+            bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+            return bitmap;
+        }
+        slots[slot] = null;
+        bitmap.recycle();
+        return null;
+    }
+
+    /**
+     * Hands the page's slot over for rendering. The slot no longer counts as holding any page
+     * until {@link #finishRender} is called with the returned bitmap. While another render is in
+     * flight for the slot the page waits instead, and {@link #takeWaitingRender} hands it out
+     * once that render is back.
+     *
+     * @return the buffer to render into, or null before the ring has a size or while the page
+     *         waits for its slot
+     */
+    Bitmap beginRender(int pageIndex) {
+        int slot = pageIndex % SLOT_COUNT;
+        slotPages[slot] = -1;
+        if (inFlight[slot] != null) {
+            if (inFlightPages[slot] != pageIndex) {
+                waitingPages[slot] = pageIndex;
+            }
+            return null;
+        }
+        Bitmap bitmap = getSlot(pageIndex);
+        if (bitmap != null) {
+            inFlight[slot] = bitmap;
+            inFlightPages[slot] = pageIndex;
+        }
+        return bitmap;
+    }
+
+    /**
+     * Takes back a buffer from {@link #beginRender}. Buffers the ring let go of while they were
+     * in flight are recycled here. A render that another page has been waiting for is not shown,
+     * since its buffer is about to be rendered into again.
+     *
+     * @param rendered whether the page was rendered in full and should be shown
+     * @return true if the slot now holds the page
+     */
+    boolean finishRender(int pageIndex, Bitmap bitmap, boolean rendered) {
+        int slot = pageIndex % SLOT_COUNT;
+        if (inFlight[slot] == bitmap) {
+            inFlight[slot] = null;
+            inFlightPages[slot] = -1;
+        }
+        if (slots[slot] != bitmap) {
+            bitmap.recycle();
+            return false;
+        }
+        if (!rendered || waitingPages[slot] >= 0) {
+            return false;
+        }
+        slotPages[slot] = pageIndex;
+        return true;
+    }
+
+    /**
+     * Returns the page that has been waiting for the slot of {@code pageIndex}, whose render just
+     * finished, and forgets it; the caller should render it now. Returns -1 if none is waiting.
+     */
+    int takeWaitingRender(int pageIndex) {
+        int slot = pageIndex % SLOT_COUNT;
+        if (inFlight[slot] != null) {
+            return -1;
+        }
+        int waiting = waitingPages[slot];
+        waitingPages[slot] = -1;
+        return waiting;
+    }
+
+    /**
+     * Drops all buffers, recycling those that are not being rendered into, and forgets waiting
+     * pages. Page views must no longer show them.
+     */
+    void clear() {
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            if (slots[i] != null && slots[i] != inFlight[i]) {
+                slots[i].recycle();
+            }
+        }
+        Arrays.fill(slots, null);
+        Arrays.fill(slotPages, -1);
+        Arrays.fill(waitingPages, -1);
+    }
+
+    /**
+     * Returns the bytes of every buffer alive, including ones let go of that are still in flight.
+     */
+    long getAllocatedBytes() {
+        long bytes = 0;
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            if (slots[i] != null) {
+                bytes += slots[i].getAllocationByteCount();
+            }
+            if (inFlight[i] != null && inFlight[i] != slots[i]) {
+                bytes += inFlight[i].getAllocationByteCount();
+            }
+        }
+        return bytes;
+    }
+}
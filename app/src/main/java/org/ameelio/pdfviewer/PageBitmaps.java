@@ -0,0 +1,56 @@
+package org.ameelio.pdfviewer;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+/**
+ * Helpers for page bitmaps that may be stored either as software ARGB_8888 bitmaps or, on API 26
+ * and later, as {@link Bitmap.Config#HARDWARE} bitmaps whose pixels live in graphics memory.
+ */
+final class PageBitmaps {
+
+    private PageBitmaps() {
+    }
+
+    /**
+     * Returns whether this device can store pages as hardware bitmaps.
+     */
+    static boolean supportsHardware() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O;
+    }
+
+    static boolean isHardware(Bitmap bitmap) {
+        return supportsHardware() && isHardwareConfig(bitmap);
+    }
+
+    @TargetApi(Build.VERSION_CODES.O)
+    private static boolean isHardwareConfig(Bitmap bitmap) {
+        return bitmap.getConfig() == Bitmap.Config.HARDWARE;
+    }
+
+    /**
+     * Returns the memory a page bitmap holds, wherever it lives. Hardware pages are off the Java
+     * heap but still cost the same four bytes per pixel of graphics memory, so they count fully
+     * against page budgets.
+     */
+    static long byteCount(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return 0;
+        }
+        if (isHardware(bitmap)) {
+            return (long) bitmap.getWidth() * bitmap.getHeight() * 4;
+        }
+        return bitmap.getAllocationByteCount();
+    }
+
+    /**
+     * Copies a rendered software page into a hardware bitmap.
+     *
+     * @return the hardware copy, or null if the device could not create one
+     */
+    @TargetApi(Build.VERSION_CODES.O)
+    static Bitmap copyToHardware(Bitmap software) {
+        return software.copy(Bitmap.Config.HARDWARE, false);
+    }
+}
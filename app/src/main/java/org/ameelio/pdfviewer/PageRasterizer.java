@@ -0,0 +1,150 @@
+package org.ameelio.pdfviewer;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+import java.util.Locale;
+
+/**
+ * The single page render path shared by the UI thread and the background render worker. Each
+ * render holds a reference on the document and its render lock, so a document closed meanwhile
+ * is only torn down after the page is finished.
+ */
+final class PageRasterizer {
+
+    private static final String TAG = "PageRasterizer";
+    static final int MAX_RENDER_DIMENSION = 2048; // Prevent huge bitmaps
+
+    private static final LatencyHistogram RENDER_LATENCY =
+            MetricsRegistry.getDefault().histogram(MetricsRegistry.RENDER_LATENCY);
+
+    private PageRasterizer() {
+    }
+
+    /**
+     * Renders a page into a new bitmap {@code targetWidth} pixels wide, or, when {@code target}
+     * is given, fitted and centered into that reused bitmap using {@code matrix} as scratch.
+     *
+     * @return the bitmap, or null if the document was closed before the render could start
+     */
+    static Bitmap render(DocumentHandle document, int pageIndex, int targetWidth, Bitmap target, Matrix matrix) {
+        return render(document, pageIndex, targetWidth, target, matrix, null);
+    }
+
+    /**
+     * Renders a page {@code targetWidth} pixels wide into the scratch bitmap and returns a
+     * {@link Bitmap.Config#HARDWARE} copy of it, or a software copy if the device refuses to
+     * create one. Only the copy is kept, so the page's pixels end up in graphics memory.
+     *
+     * @return the page, or null if the document was closed before the render could start
+     */
+    @TargetApi(Build.VERSION_CODES.O)
+    static Bitmap renderToHardware(DocumentHandle document, int pageIndex, int targetWidth, ScratchBitmap scratch) {
+        Bitmap software = render(document, pageIndex, targetWidth, null, null, scratch);
+        if (software == null) {
+            return null;
+        }
+        Bitmap hardware = PageBitmaps.copyToHardware(software);
+        if (hardware != null) {
+            return hardware;
+        }
+        Log.w(TAG, "Hardware bitmap unavailable for page " + pageIndex + ", keeping a software copy");
+        return software.copy(Bitmap.Config.ARGB_8888, false);
+    }
+
+    private static Bitmap render(DocumentHandle document, int pageIndex, int targetWidth, Bitmap target,
+                                 Matrix matrix, ScratchBitmap scratch) {
+        if (!document.acquire()) {
+            return null;
+        }
+        try {
+            synchronized (document.getRenderLock()) {
+                // Timed inside the lock so waiting for another render does not count
+                long start = SystemClock.elapsedRealtimeNanos();
+                PageSource.Page page;
+                TraceSections.begin(TraceSections.OPEN_PAGE);
+                try {
+                    page = document.getPageSource().openPage(pageIndex);
+                } finally {
+                    TraceSections.end();
+                }
+                Bitmap rendered;
+                TraceSections.begin(TraceSections.RENDER_PAGE);
+                try {
+                    rendered = renderOpenPage(page, pageIndex, targetWidth, target, matrix, scratch);
+                } finally {
+                    page.close();
+                    TraceSections.end();
+                }
+                RENDER_LATENCY.record(SystemClock.elapsedRealtimeNanos() - start);
+                return rendered;
+            }
+        } finally {
+            document.release();
+        }
+    }
+
+    private static Bitmap renderOpenPage(PageSource.Page page, int pageIndex, int targetWidth,
+                                         Bitmap target, Matrix matrix, ScratchBitmap scratch) {
+        int width = page.getWidth();
+        int height = page.getHeight();
+        boolean debug = Log.isLoggable(TAG, Log.DEBUG);
+        if (debug) {
+            Log.d(TAG, String.format(Locale.US, "Page %d native size: %dx%d (%.1f MP)",
+                    pageIndex, width, height, (width * height) / 1000000.0));
+        }
+
+        if (target != null) {
+            float fit = Math.min((float) target.getWidth() / width, (float) target.getHeight() / height);
+            matrix.setScale(fit, fit);
+            matrix.postTranslate(
+                    (target.getWidth() - width * fit) / 2f,
+                    (target.getHeight() - height * fit) / 2f);
+            // The buffer still holds whatever was last rendered into it
+            target.eraseColor(Color.TRANSPARENT);
+            page.render(target, matrix);
+            return target;
+        }
+
+        // Calculate target dimensions with aggressive downsampling for large pages
+        float scale = (float) targetWidth / width;
+        int targetHeight = (int) (height * scale);
+
+        // Apply maximum dimension limit to prevent OOM
+        if (targetWidth > MAX_RENDER_DIMENSION || targetHeight > MAX_RENDER_DIMENSION) {
+            float maxScale = Math.min(
+                    (float) MAX_RENDER_DIMENSION / targetWidth,
+                    (float) MAX_RENDER_DIMENSION / targetHeight
+            );
+            targetWidth = (int) (targetWidth * maxScale);
+            targetHeight = (int) (targetHeight * maxScale);
+            Log.w(TAG, "Page " + pageIndex + " downsampled to fit max dimension limit");
+        }
+
+        if (debug) {
+            long bitmapBytes = (long) targetWidth * targetHeight * 4;
+            Log.d(TAG, String.format(Locale.US, "Page %d rendering at %dx%d = %.1f MB (scale: %.2f)",
+                    pageIndex, targetWidth, targetHeight, bitmapBytes / 1024.0 / 1024.0,
+                    (float) targetWidth / width));
+        }
+
+        Bitmap bitmap = scratch != null
+                ? scratch.obtain(targetWidth, targetHeight)
+                : Bitmap.createBitmap(targetWidth, targetHeight, Bitmap.Config.ARGB_8888);
+        try {
+            page.render(bitmap, null);
+        } catch (RuntimeException | Error e) {
+            if (scratch == null) {
+                // Nothing else will ever see this bitmap; free its pixels before the error
+                // travels up, which after an OOM is when memory matters most
+                bitmap.recycle();
+            }
+            throw e;
+        }
+        return bitmap;
+    }
+}
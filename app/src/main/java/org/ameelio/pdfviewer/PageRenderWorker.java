@@ -0,0 +1,249 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders pages on a background thread and hands the bitmaps back on the main thread. Results
+ * for a document that was closed or replaced while the page was rendering are dropped here, so
+ * callers only ever see pages of the document they asked about while it is still open.
+ */
+class PageRenderWorker {
+
+    private static final String TAG = "PageRenderWorker";
+
+    interface Callback {
+        /**
+         * Called on the main thread with a finished page of a still-open document.
+         *
+         * @param targetWidth the width the page was requested at
+         */
+        void onPageRendered(DocumentHandle document, int pageIndex, int targetWidth, Bitmap bitmap);
+
+        /**
+         * Called on the main thread when a page of a still-open document could not be rendered,
+         * e.g. for lack of memory, so the request can be forgotten and made again later.
+         */
+        void onPageFailed(DocumentHandle document, int pageIndex);
+
+        /**
+         * Returns whether results for this document are still wanted, e.g. it is still shown.
+         */
+        boolean isCurrentDocument(DocumentHandle document);
+    }
+
+    interface TargetCallback {
+        /**
+         * Called on the main thread once a render into a caller's bitmap has finished, failed,
+         * or been dropped from the queue, so the caller always gets the bitmap back. The
+         * document may have been closed or replaced in the meantime.
+         *
+         * @param rendered whether the page was rendered into the bitmap in full
+         */
+        void onRenderedInto(DocumentHandle document, int pageIndex, Bitmap target, boolean rendered);
+    }
+
+    private final Executor executor;
+    private final Handler mainHandler;
+    private final ExecutorService ownedExecutor;
+    private final boolean hardwareBitmaps;
+    // Only touched on the worker thread
+    private final ScratchBitmap scratch = new ScratchBitmap();
+    private final Matrix targetMatrix = new Matrix();
+
+    PageRenderWorker() {
+        this(false);
+    }
+
+    /**
+     * @param hardwareBitmaps whether finished pages are stored as hardware bitmaps; ignored
+     *                        where {@link PageBitmaps#supportsHardware()} is false
+     */
+    PageRenderWorker(boolean hardwareBitmaps) {
+        // A plain single-thread pool, so queued renders can be dropped when they go stale
+        this(new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "pdf-render");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }), new Handler(Looper.getMainLooper()), hardwareBitmaps);
+    }
+
+    PageRenderWorker(Executor executor, Handler mainHandler) {
+        this(executor, mainHandler, false);
+    }
+
+    PageRenderWorker(Executor executor, Handler mainHandler, boolean hardwareBitmaps) {
+        this.executor = executor;
+        this.mainHandler = mainHandler;
+        this.ownedExecutor = executor instanceof ExecutorService ? (ExecutorService) executor : null;
+        this.hardwareBitmaps = hardwareBitmaps && PageBitmaps.supportsHardware();
+    }
+
+    boolean usesHardwareBitmaps() {
+        return hardwareBitmaps;
+    }
+
+    void submit(final DocumentHandle document, final int pageIndex, final int targetWidth,
+                final Callback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (document.isClosed()) {
+                    return;
+                }
+                Bitmap rendered;
+                try {
+                    rendered = hardwareBitmaps
+                            ? PageRasterizer.renderToHardware(document, pageIndex, targetWidth, scratch)
+                            : PageRasterizer.render(document, pageIndex, targetWidth, null, null);
+                } catch (OutOfMemoryError e) {
+                    Log.e(TAG, "Out of memory rendering page " + pageIndex + " in background", e);
+                    rendered = null;
+                } catch (Exception e) {
+                    Log.e(TAG, "Error rendering page " + pageIndex + " in background: " + e.getMessage(), e);
+                    rendered = null;
+                }
+                if (rendered == null) {
+                    if (!document.isClosed()) {
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                fail(document, pageIndex, callback);
+                            }
+                        });
+                    }
+                    return;
+                }
+                final Bitmap bitmap = rendered;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(document, pageIndex, targetWidth, bitmap, callback);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Renders a page fitted and centered into the given bitmap, e.g. a slot of the paged
+     * mode's ring. The bitmap must not be drawn into elsewhere until the callback returns it.
+     */
+    void submitInto(DocumentHandle document, int pageIndex, Bitmap target, TargetCallback callback) {
+        executor.execute(new TargetRender(document, pageIndex, target, callback));
+    }
+
+    private final class TargetRender implements Runnable {
+        private final DocumentHandle document;
+        private final int pageIndex;
+        private final Bitmap target;
+        private final TargetCallback callback;
+
+        TargetRender(DocumentHandle document, int pageIndex, Bitmap target, TargetCallback callback) {
+            this.document = document;
+            this.pageIndex = pageIndex;
+            this.target = target;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            boolean rendered = false;
+            if (!document.isClosed()) {
+                try {
+                    rendered = PageRasterizer.render(document, pageIndex, target.getWidth(), target, targetMatrix) != null;
+                } catch (OutOfMemoryError e) {
+                    Log.e(TAG, "Out of memory rendering page " + pageIndex + " in background", e);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error rendering page " + pageIndex + " in background: " + e.getMessage(), e);
+                }
+            }
+            post(rendered);
+        }
+
+        void post(final boolean rendered) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onRenderedInto(document, pageIndex, target, rendered);
+                }
+            });
+        }
+    }
+
+    private static void deliver(DocumentHandle document, int pageIndex, int targetWidth, Bitmap bitmap,
+                                Callback callback) {
+        if (document.isClosed() || !callback.isCurrentDocument(document)) {
+            // Late result of an old document: nothing has drawn it, so it can go right away
+            bitmap.recycle();
+            return;
+        }
+        callback.onPageRendered(document, pageIndex, targetWidth, bitmap);
+    }
+
+    private static void fail(DocumentHandle document, int pageIndex, Callback callback) {
+        if (document.isClosed() || !callback.isCurrentDocument(document)) {
+            return;
+        }
+        callback.onPageFailed(document, pageIndex);
+    }
+
+    /**
+     * Drops renders that have not started yet, e.g. because they were requested at a width that
+     * no longer applies. The render in progress, if any, still completes. Dropped renders into a
+     * caller's bitmap are reported as not rendered, so the caller gets the bitmap back.
+     */
+    void cancelQueued() {
+        if (executor instanceof ThreadPoolExecutor) {
+            List<Runnable> dropped = new ArrayList<>();
+            ((ThreadPoolExecutor) executor).getQueue().drainTo(dropped);
+            for (Runnable task : dropped) {
+                if (task instanceof TargetRender) {
+                    ((TargetRender) task).post(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns how many renders are waiting for the worker thread, not counting the one running.
+     */
+    int getQueueDepth() {
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getQueue().size();
+        }
+        return 0;
+    }
+
+    /**
+     * Drops queued renders. A render already running finishes and releases its document, then
+     * the scratch bitmap is freed on the worker thread.
+     */
+    void shutdown() {
+        cancelQueued();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                scratch.release();
+            }
+        });
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+}
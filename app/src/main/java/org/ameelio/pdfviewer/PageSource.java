@@ -0,0 +1,40 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+
+/**
+ * Where rendered pages come from. Production documents are backed by PdfRenderer through
+ * {@link PdfRendererPageSource}; tests can plug in a source with made-up page sizes and render
+ * costs to measure the caching and scheduling around it without a real PDF.
+ *
+ * <p>Like PdfRenderer, a source only has to support one open page at a time; callers hold the
+ * document's render lock from {@link #openPage} until the page is closed.</p>
+ */
+interface PageSource {
+
+    int getPageCount();
+
+    Page openPage(int pageIndex);
+
+    /**
+     * Releases the source. Called once, after the last page has been closed.
+     */
+    void close();
+
+    interface Page {
+        /** Page width in points. */
+        int getWidth();
+
+        /** Page height in points. */
+        int getHeight();
+
+        /**
+         * Renders the page for display into the bitmap, scaled to fill it when
+         * {@code transform} is null.
+         */
+        void render(Bitmap destination, Matrix transform);
+
+        void close();
+    }
+}
@@ -0,0 +1,81 @@
+package org.ameelio.pdfviewer;
+
+import android.view.View;
+import android.widget.OverScroller;
+
+/**
+ * Drives an OverScroller fling one display frame at a time on a host view and hands each
+ * frame's movement to a target. Movement is reported in the same sign convention as finger
+ * deltas, so targets can reuse their drag path for it.
+ */
+class PanFlinger implements Runnable {
+
+    interface Target {
+        /**
+         * Applies one frame of fling movement.
+         *
+         * @return false when nothing could move any more and the fling should end
+         */
+        boolean onFlingStep(float dx, float dy);
+    }
+
+    private final View host;
+    private final Target target;
+    private final OverScroller scroller;
+    private int lastX;
+    private int lastY;
+    private boolean flinging = false;
+
+    PanFlinger(View host, Target target) {
+        this.host = host;
+        this.target = target;
+        this.scroller = new OverScroller(host.getContext());
+    }
+
+    void start(float velocityX, float velocityY) {
+        stop();
+        lastX = 0;
+        lastY = 0;
+        scroller.fling(0, 0, Math.round(velocityX), Math.round(velocityY),
+                Integer.MIN_VALUE / 2, Integer.MAX_VALUE / 2,
+                Integer.MIN_VALUE / 2, Integer.MAX_VALUE / 2);
+        flinging = true;
+        host.postOnAnimation(this);
+    }
+
+    void stop() {
+        if (!flinging) {
+            return;
+        }
+        flinging = false;
+        scroller.forceFinished(true);
+        host.removeCallbacks(this);
+    }
+
+    boolean isFlinging() {
+        return flinging;
+    }
+
+    @Override
+    public void run() {
+        if (!flinging) {
+            return;
+        }
+        if (!scroller.computeScrollOffset()) {
+            flinging = false;
+            return;
+        }
+        int currX = scroller.getCurrX();
+        int currY = scroller.getCurrY();
+        int dx = currX - lastX;
+        int dy = currY - lastY;
+        lastX = currX;
+        lastY = currY;
+
+        if ((dx != 0 || dy != 0) && !target.onFlingStep(dx, dy)) {
+            stop();
+            return;
+        }
+        host.postOnAnimation(this);
+    }
+}
@@ -0,0 +1,62 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.pdf.PdfRenderer;
+
+/**
+ * {@link PageSource} backed by the platform PdfRenderer. PdfRenderer allows only one open page
+ * at a time, so one page wrapper is reused for every render instead of allocating per page.
+ */
+final class PdfRendererPageSource implements PageSource {
+
+    private final PdfRenderer renderer;
+    private final OpenPage openPage = new OpenPage();
+
+    PdfRendererPageSource(PdfRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    @Override
+    public int getPageCount() {
+        return renderer.getPageCount();
+    }
+
+    @Override
+    public PageSource.Page openPage(int pageIndex) {
+        openPage.page = renderer.openPage(pageIndex);
+        return openPage;
+    }
+
+    @Override
+    public void close() {
+        renderer.close();
+    }
+
+    private static final class OpenPage implements PageSource.Page {
+
+        PdfRenderer.Page page;
+
+        @Override
+        public int getWidth() {
+            return page.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return page.getHeight();
+        }
+
+        @Override
+        public void render(Bitmap destination, Matrix transform) {
+            page.render(destination, null, transform, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+        }
+
+        @Override
+        public void close() {
+            PdfRenderer.Page closing = page;
+            page = null;
+            closing.close();
+        }
+    }
+}
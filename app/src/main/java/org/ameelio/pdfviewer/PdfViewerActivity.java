@@ -1,12 +1,15 @@
 package org.ameelio.pdfviewer;
 
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.graphics.Bitmap;
-import android.graphics.pdf.PdfRenderer;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.ParcelFileDescriptor;
+import android.os.StrictMode;
 import android.util.Log;
+import android.util.SparseArray;
+import android.util.DisplayMetrics;
+import android.util.SparseBooleanArray;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -21,63 +24,204 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.AppCompatImageView;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.PagerSnapHelper;
 import androidx.recyclerview.widget.RecyclerView;
+import java.io.FileDescriptor;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+import org.ameelio.pdfviewer.core.PageCachePolicy;
+import org.ameelio.pdfviewer.core.PageGeometry;
+import org.ameelio.pdfviewer.core.RenderOrder;
+import org.ameelio.pdfviewer.core.ZoomMath;
 
 public class PdfViewerActivity extends AppCompatActivity {
 
     private static final String TAG = "PdfViewerActivity";
 
+    /**
+     * Optional launch extra selecting how pages are presented. Defaults to
+     * {@link #VIEW_MODE_CONTINUOUS}.
+     */
+    public static final String EXTRA_VIEW_MODE = "org.ameelio.pdfviewer.extra.VIEW_MODE";
+    /** Continuous vertical list of page views (RecyclerView). */
+    public static final String VIEW_MODE_CONTINUOUS = "continuous";
+    /** Continuous document drawn by a single {@link DocumentSurfaceView}. */
+    public static final String VIEW_MODE_SURFACE = "surface";
+    /** One page at a time, paged horizontally, with at most three page bitmaps in memory. */
+    public static final String VIEW_MODE_PAGED = "paged";
+    /**
+     * Optional boolean launch extra. When set on API 26 and later, pages rendered in the
+     * background are kept as hardware bitmaps, moving their pixels off the Java heap into
+     * graphics memory. Falls back to software bitmaps where unsupported.
+     */
+    public static final String EXTRA_HARDWARE_BITMAPS = "org.ameelio.pdfviewer.extra.HARDWARE_BITMAPS";
+    /**
+     * Optional int launch extra: while debug logging is enabled for the PdfViewerActivity tag,
+     * how many page binds and cache trims pass between memory snapshots in the log. 0 turns
+     * snapshots off on those paths. Defaults to {@link MemorySnapshotSampler#DEFAULT_INTERVAL}.
+     */
+    public static final String EXTRA_MEMORY_SAMPLE_INTERVAL = "org.ameelio.pdfviewer.extra.MEMORY_SAMPLE_INTERVAL";
+    /**
+     * Optional boolean launch extra that shows a performance HUD over the document. Ignored
+     * unless the app is debuggable.
+     */
+    public static final String EXTRA_PERF_HUD = "org.ameelio.pdfviewer.extra.PERF_HUD";
+
     private Button selectFileButton;
     private ImageButton resetZoomButton;
     private ImageButton zoomInButton;
     private ImageButton zoomOutButton;
     private RecyclerView recyclerView;
+    private RecyclerView pagedRecyclerView;
+    private DocumentSurfaceView documentSurfaceView;
     private TextView errorText;
-    private PdfRenderer pdfRenderer;
-    private ParcelFileDescriptor parcelFileDescriptor;
+    // Owns the document and caches across configuration changes; the fields below alias it
+    private DocumentSession session;
+    private DocumentHandle document;
     private ActivityResultLauncher<Intent> filePickerLauncher;
     private PdfPageAdapter adapter;
+    private final DocumentStager documentStager = new DocumentStager();
+    private DocumentOpener documentOpener;
+    private final FirstPageTimer firstPageTimer = new FirstPageTimer();
+    // Page 0 at preview quality from a background open, shown until its full render replaces it
+    private Bitmap firstPagePreview;
     private final ZoomCoordinator zoomCoordinator = new ZoomCoordinator();
     private DocumentZoomController documentZoomController;
+    private DocumentGestureHandler documentGestureHandler;
+    private String viewMode = VIEW_MODE_CONTINUOUS;
+    private boolean hardwareBitmaps = false;
+    // Pages queued or rendering on the worker, until their batch is delivered
+    private final SparseBooleanArray pendingPageRenders = new SparseBooleanArray();
+    private PageRenderWorker pageRenderWorker;
+    private RenderBatcher renderBatcher;
+    private final LayoutPassCounter layoutPassCounter = new LayoutPassCounter();
+    // Level checks are read when the activity is created
+    private final ViewerLog log = new ViewerLog(TAG);
+    private MemoryAccountant memoryAccountant;
+    private PerfHud perfHud;
+    private final MemorySnapshotSampler memorySampler =
+            new MemorySnapshotSampler(MemorySnapshotSampler.DEFAULT_INTERVAL);
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final LatencyHistogram renderLatency = metrics.histogram(MetricsRegistry.RENDER_LATENCY);
+    private final MetricsRegistry.Counter cacheHits = metrics.counter(MetricsRegistry.CACHE_HITS);
+    private final MetricsRegistry.Counter cacheMisses = metrics.counter(MetricsRegistry.CACHE_MISSES);
+    private final MetricsRegistry.Counter cacheEvictions = metrics.counter(MetricsRegistry.CACHE_EVICTIONS);
+    private final BindToPixelsTracker bindToPixelsTracker =
+            new BindToPixelsTracker(metrics.histogram(MetricsRegistry.BIND_TO_PIXELS_LATENCY));
+    // Width pages are rendered at, following the document view; -1 until it has been measured
+    private int pageRenderWidth = -1;
+    private int surfaceFirstVisiblePage = -1;
+    private int surfaceLastVisiblePage = -1;
+    // Scratch for the order visible pages are requested in
+    private int[] renderOrder = new int[16];
+    // Size given to list pages that have not rendered yet, so the list does not collapse
+    private int placeholderPageWidth = -1;
+    private int placeholderPageHeight = -1;
+    // Paged mode keeps its pages here instead of in bitmapCache
+    private PageBitmapRing pageRing;
+    private PagerSnapHelper pagerSnapHelper;
+    private int currentPagedPage = 0;
 
     // Performance optimization variables
-    private Map<Integer, Bitmap> bitmapCache = new HashMap<>();
+    private SparseArray<Bitmap> bitmapCache;
     private static final int MAX_CACHED_PAGES = 3;
-    private static final int MAX_RENDER_DIMENSION = 2048; // Prevent huge bitmaps
-    private static final float MIN_SCALE = 0.5f;
-    private static final float MAX_SCALE = 5.0f;
+    // Scratch for the cache policy, reused so trimming on scroll does not allocate
+    private int[] cachedPageKeys = new int[MAX_CACHED_PAGES * 4];
+    private int[] pageEvictions = new int[MAX_CACHED_PAGES * 4];
     private static final float ZOOM_STEP = 0.25f;
+    private static final int PAGE_MARGIN = 16;
+    private static final int PAGE_GAP = 16;
+    private static final float FIRST_PAGE_PREVIEW_SCALE = 0.5f;
+    // Re-rendering waits until the width has held still this long, so window drags stay cheap
+    private static final long RESIZE_SETTLE_MS = 250;
     private View zoomControlsContainer;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if (isDebuggableBuild()) {
+            enableDebugChecks();
+        }
+
+        session = new ViewModelProvider(this).get(DocumentSession.class);
+        viewMode = resolveViewMode(getIntent());
+        memoryAccountant = new MemoryAccountant(this);
+        // Parked documents, pages and staged copies together, may use half of what pages may take
+        session.getPool().setMaxBytes(memoryAccountant.getPageBudgetBytes() / 2);
+        hardwareBitmaps = getIntent() != null
+                && getIntent().getBooleanExtra(EXTRA_HARDWARE_BITMAPS, false)
+                && PageBitmaps.supportsHardware();
+        if (getIntent() != null && getIntent().hasExtra(EXTRA_MEMORY_SAMPLE_INTERVAL)) {
+            memorySampler.setInterval(getIntent().getIntExtra(EXTRA_MEMORY_SAMPLE_INTERVAL,
+                    MemorySnapshotSampler.DEFAULT_INTERVAL));
+        }
+        documentOpener = new DocumentOpener(getContentResolver(), documentStager, stagingProgressListener);
+        boolean restoring = session.hasDocument();
+        if (!restoring) {
+            // Start before any view work so opening the file overlaps with inflating the layout
+            startOpeningIncomingDocument(getIntent());
+        }
+
         setContentView(R.layout.activity_pdf_viewer);
 
         setupActionBar();
 
+        bitmapCache = session.getBitmapCache();
+        pageRing = session.getPageRing();
+        renderBatcher = new RenderBatcher(renderBatchTarget);
+        document = session.getDocument();
+
         selectFileButton = findViewById(R.id.selectFileButton);
         resetZoomButton = findViewById(R.id.resetZoomButton);
         zoomInButton = findViewById(R.id.zoomInButton);
         zoomOutButton = findViewById(R.id.zoomOutButton);
         zoomControlsContainer = findViewById(R.id.zoomControlsContainer);
         recyclerView = findViewById(R.id.pdfRecyclerView);
+        pagedRecyclerView = findViewById(R.id.pagedRecyclerView);
+        documentSurfaceView = findViewById(R.id.documentSurfaceView);
         errorText = findViewById(R.id.errorText);
-        documentZoomController = new DocumentZoomController(recyclerView, zoomCoordinator);
-        // Keep multi-touch streams unified so pinch gestures spanning multiple pages are detected
+        if (isSurfaceMode()) {
+            // The surface applies zoom and pan itself and handles its own gestures
+            documentSurfaceView.setZoomCoordinator(zoomCoordinator);
+        } else {
+            RecyclerView documentView = isPagedMode() ? pagedRecyclerView : recyclerView;
+            documentZoomController = new DocumentZoomController(documentView, zoomCoordinator);
+            // One gesture handler for the whole document; page items carry no touch handling
+            documentGestureHandler = new DocumentGestureHandler(this, zoomCoordinator);
+            documentGestureHandler.attach(documentView);
+        }
+        layoutPassCounter.attach(recyclerView);
+        bindToPixelsTracker.attach(recyclerView);
+        recyclerView.addOnLayoutChangeListener(documentWidthListener);
+        documentSurfaceView.addOnLayoutChangeListener(documentWidthListener);
+        if (getIntent() != null && getIntent().getBooleanExtra(EXTRA_PERF_HUD, false) && isDebuggableBuild()) {
+            perfHud = new PerfHud(findViewById(R.id.perfHud), (TextView) findViewById(R.id.perfHudText),
+                    perfHudSource);
+        }
+        // Pages never consume touches, so keep pointer streams whole rather than split per child
         recyclerView.setMotionEventSplittingEnabled(false);
+        pagedRecyclerView.setMotionEventSplittingEnabled(false);
 
         // Setup RecyclerView
         LinearLayoutManager layoutManager = new LinearLayoutManager(this);
         recyclerView.setLayoutManager(layoutManager);
         recyclerView.setHasFixedSize(false);
 
+        LinearLayoutManager pagedLayoutManager =
+                new LinearLayoutManager(this, LinearLayoutManager.HORIZONTAL, false);
+        // Neighbors are pre-rendered into the page ring explicitly; prefetching or caching more
+        // pages would make them compete for its three slots
+        pagedLayoutManager.setItemPrefetchEnabled(false);
+        pagedRecyclerView.setLayoutManager(pagedLayoutManager);
+        pagedRecyclerView.setItemViewCacheSize(0);
+        pagedRecyclerView.setHasFixedSize(true);
+
         // Initialize file picker launcher (no persistence)
         filePickerLauncher = registerForActivityResult(
                 new ActivityResultContracts.StartActivityForResult(),
@@ -126,9 +270,109 @@ public class PdfViewerActivity extends AppCompatActivity {
             });
         }
 
-        handleIncomingIntent(getIntent());
+        if (restoring) {
+            // Recreated after a configuration change: the document is still open
+            restoreDocument();
+        }
+    }
+
+    private boolean isDebuggableBuild() {
+        return (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    /**
+     * Flags main-thread disk access and known slow calls through StrictMode, logging only, and
+     * starts timing main-thread messages so stalls are reported with the stage that caused them.
+     */
+    private void enableDebugChecks() {
+        StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .detectCustomSlowCalls()
+                .penaltyLog()
+                .build());
+        StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                .detectLeakedClosableObjects()
+                .detectActivityLeaks()
+                .penaltyLog()
+                .build());
+        MainThreadStallDetector.install();
+    }
+
+    /**
+     * Opens the launch intent's document in the background, first page included, so the first
+     * page can be shown as soon as the views are ready.
+     */
+    private void startOpeningIncomingDocument(Intent intent) {
+        Uri pdfUri = intent != null ? intent.getData() : null;
+        if (pdfUri == null) {
+            return;
+        }
+        log.i("Opening PDF in the background: %s", pdfUri);
+        firstPageTimer.start();
+        documentOpener.openAsync(pdfUri, getFirstPagePreviewWidth(), backgroundOpenCallback);
+    }
+
+    /**
+     * Returns the width background opens render page 0 at before handing the document over, or
+     * 0 for no preview.
+     */
+    private int getFirstPagePreviewWidth() {
+        // The paged ring renders viewport-sized pages directly, so it gets no separate preview
+        return isPagedMode() ? 0 : (int) (getPageRenderWidth() * FIRST_PAGE_PREVIEW_SCALE);
     }
 
+    private final DocumentOpener.Callback backgroundOpenCallback = new DocumentOpener.Callback() {
+        @Override
+        public void onDocumentOpened(DocumentOpener.OpenedDocument opened) {
+            log.i("PDF opened successfully. Pages: %d, size: %d bytes",
+                    opened.document.getPageCount(), opened.sizeBytes);
+            // Parking the current document keeps its reading position for switching back
+            saveDocumentPosition();
+            replaceDocument(opened.document, opened.fingerprint);
+            firstPageTimer.markOpened();
+            Bitmap preview = opened.firstPagePreview;
+            if (preview != null && isSurfaceMode()) {
+                // The surface scales pages to their slot, so the preview can sit in the cache
+                bitmapCache.put(0, preview);
+            } else {
+                firstPagePreview = preview;
+            }
+            logMemoryInfo("After opening PDF");
+            showDocument();
+            if (preview != null && isSurfaceMode()) {
+                documentSurfaceView.onPageRendered(0, preview.getWidth(), preview.getHeight());
+                requestPageRender(0);
+            }
+        }
+
+        @Override
+        public void onOpenFailed(Throwable error, long sizeBytes) {
+            firstPageTimer.cancel();
+            reportOpenFailure(error, sizeBytes);
+        }
+
+        @Override
+        public void onKnownDocument(Uri uri, DocumentFingerprint fingerprint) {
+            if (session.isCurrentDocument(fingerprint)) {
+                log.i("Same document is already open, keeping it");
+                firstPageTimer.cancel();
+                return;
+            }
+            saveDocumentPosition();
+            if (session.resumePooledDocument(fingerprint)) {
+                log.i("Reusing pooled renderer for this document");
+                document = session.getDocument();
+                firstPagePreview = null;
+                firstPageTimer.markOpened();
+                restoreDocument();
+                return;
+            }
+            // Evicted from the pool while the open was under way
+            documentOpener.openAsync(uri, getFirstPagePreviewWidth(), this);
+        }
+    };
+
     private void setupActionBar() {
         ActionBar actionBar = getSupportActionBar();
         if (actionBar == null) {
@@ -153,6 +397,25 @@ public class PdfViewerActivity extends AppCompatActivity {
         actionBar.setCustomView(customView, params);
     }
 
+    private static String resolveViewMode(Intent intent) {
+        String mode = intent != null ? intent.getStringExtra(EXTRA_VIEW_MODE) : null;
+        if (VIEW_MODE_SURFACE.equals(mode)) {
+            return VIEW_MODE_SURFACE;
+        }
+        if (VIEW_MODE_PAGED.equals(mode)) {
+            return VIEW_MODE_PAGED;
+        }
+        return VIEW_MODE_CONTINUOUS;
+    }
+
+    private boolean isSurfaceMode() {
+        return VIEW_MODE_SURFACE.equals(viewMode);
+    }
+
+    private boolean isPagedMode() {
+        return VIEW_MODE_PAGED.equals(viewMode);
+    }
+
     private void openFilePicker() {
         Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
         intent.addCategory(Intent.CATEGORY_OPENABLE);
@@ -181,73 +444,145 @@ public class PdfViewerActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Opens a picked or newly sent document. Everything up to a ready renderer happens in the
+     * background while the current document stays on screen; content that is already open or
+     * parked in the pool is switched to without being opened again.
+     */
     private void openPdf(Uri uri) {
-        Log.i(TAG, "Attempting to open PDF: " + uri);
-        logMemoryInfo("Before opening PDF");
-
-        ParcelFileDescriptor newParcelFileDescriptor = null;
-        PdfRenderer newPdfRenderer = null;
-        long openedFileSizeBytes = -1;
-
+        TraceSections.begin(TraceSections.OPEN_PDF);
         try {
-            newParcelFileDescriptor = getContentResolver().openFileDescriptor(uri, "r");
-            if (newParcelFileDescriptor == null) {
-                String errorMsg = "Failed to open file descriptor for PDF";
-                Log.e(TAG, errorMsg);
-                showError(errorMsg);
-                return;
-            }
-
-            openedFileSizeBytes = newParcelFileDescriptor.getStatSize();
-            Log.i(TAG, "PDF file size: " + openedFileSizeBytes + " bytes (" +
-                    (openedFileSizeBytes / 1024 / 1024) + " MB)");
-
-            newPdfRenderer = new PdfRenderer(newParcelFileDescriptor);
-            int pageCount = newPdfRenderer.getPageCount();
-            Log.i(TAG, "PDF opened successfully. Pages: " + pageCount);
-
-            replaceRenderer(newPdfRenderer, newParcelFileDescriptor);
-            newPdfRenderer = null;
-            newParcelFileDescriptor = null;
+            log.i("Attempting to open PDF: %s", uri);
+            logMemoryInfo("Before opening PDF");
+            firstPageTimer.start();
+            // Supersedes any open still running in the background
+            documentOpener.openAsync(uri, getFirstPagePreviewWidth(), session.getOpenFingerprints(),
+                    backgroundOpenCallback);
+        } finally {
+            TraceSections.end();
+        }
+    }
 
-            logMemoryInfo("After opening PDF");
-            hideFileSelector();
-            setupRecyclerView();
-        } catch (FileNotFoundException e) {
-            String errorMsg = "PDF file not found: " + e.getMessage();
-            Log.e(TAG, errorMsg, e);
-            showError(errorMsg);
-        } catch (SecurityException e) {
-            String errorMsg = "Permission denied to access PDF: " + e.getMessage();
-            Log.e(TAG, errorMsg, e);
-            showError(errorMsg);
-        } catch (IOException e) {
-            String errorMsg = "Error reading PDF file: " + e.getMessage();
-            Log.e(TAG, errorMsg, e);
-            showError(errorMsg);
-        } catch (OutOfMemoryError e) {
-            String errorMsg = "Out of memory loading PDF. File may be too large.\nSize: " +
+    private void reportOpenFailure(Throwable error, long openedFileSizeBytes) {
+        String errorMsg;
+        if (error instanceof FileNotFoundException) {
+            errorMsg = "PDF file not found: " + error.getMessage();
+        } else if (error instanceof SecurityException) {
+            errorMsg = "Permission denied to access PDF: " + error.getMessage();
+        } else if (error instanceof IOException) {
+            errorMsg = "Error reading PDF file: " + error.getMessage();
+        } else if (error instanceof OutOfMemoryError) {
+            errorMsg = "Out of memory loading PDF. File may be too large.\nSize: " +
                     (openedFileSizeBytes > 0 ? (openedFileSizeBytes / 1024 / 1024) + " MB" : "unknown");
-            Log.e(TAG, errorMsg, e);
+        } else {
+            errorMsg = "Unexpected error opening PDF: " + error.getClass().getSimpleName() + ": " + error.getMessage();
+        }
+        Log.e(TAG, errorMsg, error);
+        if (error instanceof OutOfMemoryError) {
             logMemoryInfo("After OOM");
-            showError(errorMsg);
+        }
+        showError(errorMsg);
 
+        if (error instanceof OutOfMemoryError) {
             // Clean up on OOM
             clearBitmapCache();
             System.gc();
-        } catch (Exception e) {
-            String errorMsg = "Unexpected error opening PDF: " + e.getClass().getSimpleName() + ": " + e.getMessage();
-            Log.e(TAG, errorMsg, e);
-            showError(errorMsg);
-        } finally {
-            closeQuietly(newPdfRenderer);
-            closeQuietly(newParcelFileDescriptor);
         }
     }
 
+    private final DocumentStager.ProgressListener stagingProgressListener =
+            new DocumentStager.ProgressListener() {
+                @Override
+                public void onStagingProgress(long bytesCopied, long totalBytes, long elapsedNanos) {
+                    long throughput = DocumentStager.throughputKiBPerSecond(bytesCopied, elapsedNanos);
+                    if (totalBytes >= 0) {
+                        log.d("Staged %d of %d bytes, %d KiB/s", bytesCopied, totalBytes, throughput);
+                    } else {
+                        log.d("Staged %d of unknown bytes, %d KiB/s", bytesCopied, throughput);
+                    }
+                }
+            };
+
+    private void showDocument() {
+        // Renders still on their way for a previous document are dropped when they come back
+        clearPendingPageRenders();
+        renderBatcher.clear();
+        hideFileSelector();
+        if (isSurfaceMode()) {
+            setupDocumentSurface();
+        } else if (isPagedMode()) {
+            setupPagedView();
+        } else {
+            setupRecyclerView();
+        }
+    }
+
+    /**
+     * Shows the session's current document, returning to the position and zoom saved for it
+     * before a configuration change or before it was parked in the pool.
+     */
+    private void restoreDocument() {
+        log.i("Restoring open document with %d pages", document.getPageCount());
+        boolean hasPosition = session.hasSavedPosition();
+        int page = Math.min(session.getSavedPage(), document.getPageCount() - 1);
+        float pageOffset = session.getSavedPageOffset();
+        float scale = session.getSavedScale();
+        session.clearSavedPosition();
+
+        showDocument();
+        if (!hasPosition) {
+            return;
+        }
+        if (isSurfaceMode()) {
+            documentSurfaceView.centerOnPage(page, pageOffset);
+        } else if (isPagedMode()) {
+            currentPagedPage = page;
+            pagedRecyclerView.scrollToPosition(page);
+        } else {
+            // Cached pages keep their rendered height, which is close enough to place the offset
+            Bitmap cached = bitmapCache.get(page);
+            int offset = cached != null ? Math.round(-pageOffset * cached.getHeight()) : 0;
+            ((LinearLayoutManager) recyclerView.getLayoutManager()).scrollToPositionWithOffset(page, offset);
+        }
+        if (scale != 1f) {
+            zoomCoordinator.propagateScale(scale, Float.NaN, Float.NaN);
+        }
+    }
+
+    /**
+     * Records the reading position in the session before a configuration change recreates the
+     * activity. Kept in memory only, like the rest of the session.
+     */
+    private void saveDocumentPosition() {
+        if (document == null) {
+            return;
+        }
+        int page = 0;
+        float pageOffset = 0f;
+        if (isSurfaceMode()) {
+            page = Math.max(0, documentSurfaceView.getCenterPage());
+            pageOffset = documentSurfaceView.getCenterPageOffset();
+        } else if (isPagedMode()) {
+            page = currentPagedPage;
+        } else {
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+            int firstVisible = layoutManager != null ? layoutManager.findFirstVisibleItemPosition() : RecyclerView.NO_POSITION;
+            if (firstVisible != RecyclerView.NO_POSITION) {
+                page = firstVisible;
+                View firstView = layoutManager.findViewByPosition(firstVisible);
+                if (firstView != null && firstView.getHeight() > 0) {
+                    pageOffset = (float) -firstView.getTop() / firstView.getHeight();
+                }
+            }
+        }
+        session.savePosition(page, pageOffset, zoomCoordinator.getCurrentScale());
+    }
+
     private void hideFileSelector() {
         selectFileButton.setVisibility(View.GONE);
-        recyclerView.setVisibility(View.VISIBLE);
+        recyclerView.setVisibility(isSurfaceMode() || isPagedMode() ? View.GONE : View.VISIBLE);
+        pagedRecyclerView.setVisibility(isPagedMode() ? View.VISIBLE : View.GONE);
+        documentSurfaceView.setVisibility(isSurfaceMode() ? View.VISIBLE : View.GONE);
         errorText.setVisibility(View.GONE);
         resetZoomButton.setVisibility(View.VISIBLE);
         if (zoomControlsContainer != null) {
@@ -257,13 +592,13 @@ public class PdfViewerActivity extends AppCompatActivity {
 
     private void setupRecyclerView() {
         try {
-            int pageCount = pdfRenderer.getPageCount();
-            Log.i(TAG, "Setting up RecyclerView for " + pageCount + " pages");
+            int pageCount = document.getPageCount();
+            log.i("Setting up RecyclerView for %d pages", pageCount);
 
-            adapter = new PdfPageAdapter(zoomCoordinator);
+            adapter = new PdfPageAdapter();
             recyclerView.setAdapter(adapter);
             recyclerView.scrollToPosition(0);
-            zoomCoordinator.propagateScale(null, 1f, Float.NaN, Float.NaN);
+            zoomCoordinator.propagateScale(1f, Float.NaN, Float.NaN);
 
             recyclerView.clearOnScrollListeners();
             // Add scroll listener for cache management
@@ -275,7 +610,7 @@ public class PdfViewerActivity extends AppCompatActivity {
                 }
             });
 
-            Log.i(TAG, "RecyclerView setup complete");
+            log.i("RecyclerView setup complete");
         } catch (Exception e) {
             String errorMsg = "Error setting up PDF viewer: " + e.getMessage();
             Log.e(TAG, errorMsg, e);
@@ -283,9 +618,312 @@ public class PdfViewerActivity extends AppCompatActivity {
         }
     }
 
+    private void setupDocumentSurface() {
+        int pageCount = document.getPageCount();
+        log.i("Setting up document surface for %d pages", pageCount);
+        PageGeometry geometry = session.getGeometry(PAGE_MARGIN, PAGE_GAP);
+        documentSurfaceView.setDocument(geometry, surfacePageProvider);
+        zoomCoordinator.propagateScale(1f, Float.NaN, Float.NaN);
+    }
+
+    /**
+     * Feeds the document surface from the shared page cache. Drawing only looks pages up; missing
+     * pages are requested when the visible range changes and drawn once they arrive.
+     */
+    private final DocumentSurfaceView.PageBitmapProvider surfacePageProvider =
+            new DocumentSurfaceView.PageBitmapProvider() {
+                @Override
+                public Bitmap getPageBitmap(int pageIndex) {
+                    Bitmap bitmap = bitmapCache.get(pageIndex);
+                    if (bitmap != null && !bitmap.isRecycled()) {
+                        // Only the first page drawn after an open stops the timer
+                        firstPageTimer.onFirstPageShown(pendingPageRenders.get(pageIndex));
+                        return bitmap;
+                    }
+                    return null;
+                }
+
+                @Override
+                public void onVisiblePagesChanged(int firstVisible, int lastVisible) {
+                    surfaceFirstVisiblePage = firstVisible;
+                    surfaceLastVisiblePage = lastVisible;
+                    trimCacheOutside(firstVisible, lastVisible);
+                    int count = orderCenterOut(firstVisible, lastVisible);
+                    for (int i = 0; i < count; i++) {
+                        if (bitmapCache.get(renderOrder[i]) == null) {
+                            requestPageRender(renderOrder[i]);
+                        }
+                    }
+                }
+            };
+
+    /**
+     * Forgets renders on their way, e.g. because the document or the page width changed. Their
+     * results are dropped when they come back.
+     */
+    private void clearPendingPageRenders() {
+        for (int i = 0; i < pendingPageRenders.size(); i++) {
+            TraceSections.endAsync(TraceSections.PAGE_REQUEST, pendingPageRenders.keyAt(i));
+        }
+        pendingPageRenders.clear();
+    }
+
+    /**
+     * Renders a page on the background worker unless it is already on its way. The result
+     * arrives with the next render batch.
+     */
+    private void requestPageRender(int pageIndex) {
+        if (document == null || pendingPageRenders.get(pageIndex)) {
+            return;
+        }
+        pendingPageRenders.put(pageIndex, true);
+        TraceSections.beginAsync(TraceSections.PAGE_REQUEST, pageIndex);
+        getPageRenderWorker().submit(document, pageIndex, getPageRenderWidth(), pageRenderCallback);
+    }
+
+    private PageRenderWorker getPageRenderWorker() {
+        if (pageRenderWorker == null) {
+            // Hardware bitmaps can only be drawn by a hardware-accelerated window
+            pageRenderWorker = new PageRenderWorker(hardwareBitmaps && recyclerView.isHardwareAccelerated());
+        }
+        return pageRenderWorker;
+    }
+
+    private final PageRenderWorker.Callback pageRenderCallback = new PageRenderWorker.Callback() {
+        @Override
+        public void onPageRendered(DocumentHandle renderedDocument, int pageIndex, int targetWidth, Bitmap bitmap) {
+            if (targetWidth != getPageRenderWidth()) {
+                // Requested before a resize; the page has been asked for again at the new width
+                bitmap.recycle();
+                return;
+            }
+            renderBatcher.add(pageIndex, bitmap);
+        }
+
+        @Override
+        public void onPageFailed(DocumentHandle failedDocument, int pageIndex) {
+            if (failedDocument != document) {
+                // A closed document's request, already forgotten by clearPendingPageRenders
+                return;
+            }
+            // Already logged by the worker; the next bind of the page asks for it again
+            if (pendingPageRenders.get(pageIndex)) {
+                pendingPageRenders.delete(pageIndex);
+                TraceSections.endAsync(TraceSections.PAGE_REQUEST, pageIndex);
+            }
+        }
+
+        @Override
+        public boolean isCurrentDocument(DocumentHandle renderedDocument) {
+            return renderedDocument == document && !isDestroyed();
+        }
+    };
+
+    /**
+     * Applies every page finished since the last frame in one pass. List pages are swapped in
+     * through payload rebinds, which only re-measure when a page's size changed.
+     */
+    private final RenderBatcher.Target renderBatchTarget = new RenderBatcher.Target() {
+        @Override
+        public void onRenderBatch(SparseArray<Bitmap> pages) {
+            layoutPassCounter.onBatchDelivered();
+            updateMetricGauges();
+            boolean surface = isSurfaceMode();
+            for (int i = 0; i < pages.size(); i++) {
+                int pageIndex = pages.keyAt(i);
+                Bitmap bitmap = pages.valueAt(i);
+                // False for a late result after its request was dropped, whose slice already ended
+                boolean requested = pendingPageRenders.get(pageIndex);
+                pendingPageRenders.delete(pageIndex);
+                Bitmap previous = bitmapCache.get(pageIndex);
+                bitmapCache.put(pageIndex, bitmap);
+                // A stale-width render or the preview being replaced; the surface only ever
+                // draws from the cache, list pages until their payload rebind swaps it
+                if (previous != null && previous != bitmap
+                        && (surface || !isShownInList(pageIndex, previous))) {
+                    previous.recycle();
+                }
+                if (surface) {
+                    documentSurfaceView.onPageRendered(pageIndex, bitmap.getWidth(), bitmap.getHeight());
+                    if (requested) {
+                        TraceSections.endAsync(TraceSections.PAGE_REQUEST, pageIndex);
+                    }
+                    // The surface trims by visible range, so only the memory budget applies
+                    trimCacheToLimits(true);
+                    continue;
+                }
+                if (pageIndex == 0) {
+                    firstPagePreview = null;
+                }
+                placeholderPageWidth = bitmap.getWidth();
+                placeholderPageHeight = bitmap.getHeight();
+                if (adapter != null) {
+                    adapter.notifyItemChanged(pageIndex, bitmap);
+                }
+                if (requested) {
+                    TraceSections.endAsync(TraceSections.PAGE_REQUEST, pageIndex);
+                }
+                // Limit cache size, by count and by what the memory budget allows
+                trimCacheToLimits(false);
+            }
+        }
+    };
+
+    private void setupPagedView() {
+        int pageCount = document.getPageCount();
+        log.i("Setting up paged view for %d pages", pageCount);
+        pagedRecyclerView.removeCallbacks(prerenderPagedNeighbors);
+        currentPagedPage = 0;
+        sizePageRing();
+
+        adapter = new PdfPageAdapter(true);
+        pagedRecyclerView.setAdapter(adapter);
+        pagedRecyclerView.scrollToPosition(0);
+        zoomCoordinator.propagateScale(1f, Float.NaN, Float.NaN);
+
+        if (pagerSnapHelper == null) {
+            pagerSnapHelper = new PagerSnapHelper();
+            pagerSnapHelper.attachToRecyclerView(pagedRecyclerView);
+            pagedRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                    if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                        onPagedPageSettled();
+                    }
+                }
+            });
+            pagedRecyclerView.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+                @Override
+                public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                           int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                    if (right - left != oldRight - oldLeft || bottom - top != oldBottom - oldTop) {
+                        onPagedViewportResized();
+                    }
+                }
+            });
+        }
+        // Let the first page bind and draw before spending time on its neighbors
+        pagedRecyclerView.post(prerenderPagedNeighbors);
+    }
+
+    private void onPagedPageSettled() {
+        if (pagerSnapHelper == null || document == null) {
+            return;
+        }
+        RecyclerView.LayoutManager layoutManager = pagedRecyclerView.getLayoutManager();
+        View snapView = layoutManager != null ? pagerSnapHelper.findSnapView(layoutManager) : null;
+        if (snapView == null) {
+            return;
+        }
+        currentPagedPage = layoutManager.getPosition(snapView);
+        pagedRecyclerView.removeCallbacks(prerenderPagedNeighbors);
+        pagedRecyclerView.post(prerenderPagedNeighbors);
+    }
+
+    private void onPagedViewportResized() {
+        if (document == null || !sizePageRing()) {
+            return;
+        }
+        // The ring no longer holds any page; rebind after this layout pass so pages render at the new size
+        pagedRecyclerView.post(new Runnable() {
+            @Override
+            public void run() {
+                if (adapter != null) {
+                    adapter.notifyDataSetChanged();
+                }
+                pagedRecyclerView.removeCallbacks(prerenderPagedNeighbors);
+                pagedRecyclerView.post(prerenderPagedNeighbors);
+            }
+        });
+    }
+
+    /**
+     * Sizes the page ring to the paged viewport, capped like continuous-mode renders.
+     *
+     * @return true if the ring size changed
+     */
+    private boolean sizePageRing() {
+        int width = pagedRecyclerView.getWidth();
+        int height = pagedRecyclerView.getHeight();
+        if (width <= 0 || height <= 0) {
+            // Not laid out yet: the paged view fills the window
+            DisplayMetrics metrics = getResources().getDisplayMetrics();
+            width = metrics.widthPixels;
+            height = metrics.heightPixels;
+        }
+        float cap = Math.min(1f, Math.min(
+                (float) PageRasterizer.MAX_RENDER_DIMENSION / width,
+                (float) PageRasterizer.MAX_RENDER_DIMENSION / height));
+        return pageRing.setSize((int) (width * cap), (int) (height * cap));
+    }
+
+    /**
+     * Renders a page into its ring slot on the background worker unless it is already there or
+     * on its way. A slot still rendering another page is reused once that render is back. The
+     * page is rebound once it arrives.
+     */
+    private void requestPagedRender(int pageIndex) {
+        if (document == null || pageRing.isRendering(pageIndex)) {
+            return;
+        }
+        if (!pageRing.hasSize()) {
+            sizePageRing();
+        }
+        Bitmap target = pageRing.beginRender(pageIndex);
+        if (target == null) {
+            return;
+        }
+        getPageRenderWorker().submitInto(document, pageIndex, target, pagedRenderCallback);
+    }
+
+    private final PageRenderWorker.TargetCallback pagedRenderCallback = new PageRenderWorker.TargetCallback() {
+        @Override
+        public void onRenderedInto(DocumentHandle renderedDocument, int pageIndex, Bitmap target, boolean rendered) {
+            // The ring takes its buffer back even when the render failed or is no longer wanted
+            boolean current = renderedDocument == document && !isDestroyed();
+            boolean shown = pageRing.finishRender(pageIndex, target, rendered && current);
+            // A page that wanted this slot while it was busy renders into the same buffer now
+            int waiting = pageRing.takeWaitingRender(pageIndex);
+            if (waiting >= 0 && !isDestroyed()) {
+                requestPagedRender(waiting);
+            }
+            if (!shown) {
+                return;
+            }
+            firstPageTimer.onFirstPageShown(false);
+            if (adapter != null) {
+                adapter.notifyItemChanged(pageIndex);
+            }
+        }
+    };
+
+    private final Runnable prerenderPagedNeighbors = new Runnable() {
+        @Override
+        public void run() {
+            // Forward first: that is where most readers go next
+            prerenderPagedPage(currentPagedPage + 1);
+            prerenderPagedPage(currentPagedPage - 1);
+        }
+    };
+
+    private void prerenderPagedPage(int pageIndex) {
+        if (document == null || pageIndex < 0 || pageIndex >= document.getPageCount()
+                || pageRing.holds(pageIndex)) {
+            return;
+        }
+        RecyclerView.ViewHolder holder = pagedRecyclerView.findViewHolderForAdapterPosition(pageIndex);
+        if (holder instanceof PdfPageAdapter.PageViewHolder) {
+            // The slot is about to be rendered into or replaced; stop showing its old content
+            ((PdfPageAdapter.PageViewHolder) holder).showBitmap(null);
+        }
+        requestPagedRender(pageIndex);
+    }
+
     private void showError(String errorMessage) {
         selectFileButton.setVisibility(View.GONE);
         recyclerView.setVisibility(View.GONE);
+        pagedRecyclerView.setVisibility(View.GONE);
+        documentSurfaceView.setVisibility(View.GONE);
         errorText.setVisibility(View.VISIBLE);
         errorText.setText("Error: " + errorMessage);
         resetZoomButton.setVisibility(View.GONE);
@@ -312,270 +950,578 @@ public class PdfViewerActivity extends AppCompatActivity {
      */
     private class PdfPageAdapter extends RecyclerView.Adapter<PdfPageAdapter.PageViewHolder> {
 
-        private final ZoomCoordinator zoomCoordinator;
+        // Paged items fill the viewport and take their bitmaps from the page ring
+        private final boolean paged;
+
+        PdfPageAdapter() {
+            this(false);
+        }
 
-        PdfPageAdapter(ZoomCoordinator zoomCoordinator) {
-            this.zoomCoordinator = zoomCoordinator;
+        PdfPageAdapter(boolean paged) {
+            this.paged = paged;
         }
 
         @Override
         public int getItemCount() {
-            return pdfRenderer != null ? pdfRenderer.getPageCount() : 0;
+            return document != null ? document.getPageCount() : 0;
         }
 
         @Override
         public PageViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-            Log.d(TAG, "Creating new ViewHolder");
+            log.d("Creating new ViewHolder");
 
-            ZoomableImageView imageView = new ZoomableImageView(parent.getContext());
-            imageView.setZoomCoordinator(zoomCoordinator);
+            AppCompatImageView imageView = new AppCompatImageView(parent.getContext());
+            imageView.setScaleType(ImageView.ScaleType.FIT_CENTER);
+            // Height follows the list width, so a page rendered for another width is shown scaled
+            // until its re-render arrives
+            imageView.setAdjustViewBounds(true);
+            PageBitmapDrawable pageDrawable = new PageBitmapDrawable();
+            imageView.setImageDrawable(pageDrawable);
 
             // Set layout params for proper sizing
             RecyclerView.LayoutParams params = new RecyclerView.LayoutParams(
                     ViewGroup.LayoutParams.MATCH_PARENT,
-                    ViewGroup.LayoutParams.WRAP_CONTENT
+                    paged ? ViewGroup.LayoutParams.MATCH_PARENT : ViewGroup.LayoutParams.WRAP_CONTENT
             );
-            params.setMargins(16, 8, 16, 8);
+            if (!paged) {
+                params.setMargins(16, 8, 16, 8);
+            }
             imageView.setLayoutParams(params);
 
-            return new PageViewHolder(imageView);
+            return new PageViewHolder(imageView, pageDrawable);
         }
 
         @Override
         public void onBindViewHolder(PageViewHolder holder, int position) {
-            Log.d(TAG, "Binding page " + position);
-            logMemoryInfo("Before binding page " + position);
+            TraceSections.begin(TraceSections.BIND_PAGE);
+            try {
+                bindPage(holder, position);
+            } finally {
+                TraceSections.end();
+            }
+        }
+
+        private void bindPage(PageViewHolder holder, int position) {
+            // Bind runs on every scroll step; keep it free of string building unless debugging
+            log.d("Binding page %d", position);
+
+            if (paged) {
+                if (pageRing.holds(position)) {
+                    cacheHits.increment();
+                    holder.showBitmap(pageRing.getSlot(position));
+                    return;
+                }
+                cacheMisses.increment();
+                // Blank first: the slot's buffer may be reconfigured or replaced for the render
+                holder.showBitmap(null);
+                requestPagedRender(position);
+                return;
+            }
 
+            holder.pageIndex = position;
+            bindToPixelsTracker.onPageBound(position);
             // Check cache first
             Bitmap bitmap = bitmapCache.get(position);
-
             if (bitmap == null || bitmap.isRecycled()) {
-                // Render the page
-                bitmap = renderPage(position);
+                cacheMisses.increment();
+            } else {
+                cacheHits.increment();
+            }
 
-                if (bitmap != null) {
-                    bitmapCache.put(position, bitmap);
+            if ((bitmap == null || bitmap.isRecycled()) && position == 0 && firstPagePreview != null) {
+                showFirstPagePreview(holder);
+                requestPageRender(0);
+                return;
+            }
 
-                    // Limit cache size
-                    if (bitmapCache.size() > MAX_CACHED_PAGES) {
-                        cleanupOldestCacheEntry();
-                    }
-                }
+            if (bitmap == null || bitmap.isRecycled()) {
+                // Rendered in the background; the page arrives as a payload rebind
+                showPlaceholder(holder);
+                requestPageRender(position);
+                return;
             }
 
-            if (bitmap != null) {
-                holder.imageView.setImageBitmap(bitmap);
-                Log.d(TAG, "Page " + position + " bound successfully. Cache size: " + bitmapCache.size());
-            } else {
-                holder.imageView.setImageDrawable(null);
-                Log.w(TAG, "Failed to render page " + position);
+            holder.showBitmap(bitmap);
+            bindToPixelsTracker.onPixelsSet(position);
+            firstPageTimer.onFirstPageShown(false);
+            log.d("Page %d bound successfully. Cache size: %d", position, bitmapCache.size());
+            if (log.isDebugEnabled() && memorySampler.shouldSample()) {
+                logMemoryInfo("After binding page " + position);
+            }
+        }
+
+        @Override
+        public void onBindViewHolder(PageViewHolder holder, int position, List<Object> payloads) {
+            Object last = payloads.isEmpty() ? null : payloads.get(payloads.size() - 1);
+            if (!paged && last instanceof Bitmap) {
+                // A finished render: swap the pixels in place; same-sized pages skip re-measuring
+                holder.showBitmap((Bitmap) last);
+                bindToPixelsTracker.onPixelsSet(position);
+                firstPageTimer.onFirstPageShown(false);
+                return;
             }
+            onBindViewHolder(holder, position);
+        }
+
+        /**
+         * Shows the preview scaled up to the size the full render will have.
+         */
+        private void showFirstPagePreview(PageViewHolder holder) {
+            Bitmap preview = firstPagePreview;
+            int width = Math.min(getPageRenderWidth(), PageRasterizer.MAX_RENDER_DIMENSION);
+            int height = Math.round((float) preview.getHeight() * width / preview.getWidth());
+            holder.showBitmap(preview, width, height);
+            firstPageTimer.onFirstPageShown(true);
+        }
 
-            logMemoryInfo("After binding page " + position);
+        /**
+         * Blanks the page while keeping it at the size of the last rendered page, or at A4
+         * proportions before any page has rendered.
+         */
+        private void showPlaceholder(PageViewHolder holder) {
+            if (placeholderPageWidth <= 0) {
+                placeholderPageWidth = Math.min(getPageRenderWidth(), PageRasterizer.MAX_RENDER_DIMENSION);
+                placeholderPageHeight = Math.round(placeholderPageWidth * 1.4142f);
+            }
+            holder.showBitmap(null, placeholderPageWidth, placeholderPageHeight);
         }
 
         @Override
         public void onViewRecycled(PageViewHolder holder) {
             super.onViewRecycled(holder);
-            // Clear the image to free memory when view is recycled
-            holder.imageView.setImageDrawable(null);
-            Log.d(TAG, "ViewHolder recycled");
+            // Release the bitmap to free memory when view is recycled
+            holder.showBitmap(null);
+            if (!paged && holder.pageIndex != RecyclerView.NO_POSITION) {
+                bindToPixelsTracker.onPageRecycled(holder.pageIndex);
+            }
+            holder.pageIndex = RecyclerView.NO_POSITION;
+            log.v("ViewHolder recycled");
         }
 
         class PageViewHolder extends RecyclerView.ViewHolder {
-            ZoomableImageView imageView;
+            ImageView imageView;
+            final PageBitmapDrawable pageDrawable;
+            // Page last bound in full, for timing until its pixels are drawn
+            int pageIndex = RecyclerView.NO_POSITION;
 
-            PageViewHolder(ZoomableImageView itemView) {
+            PageViewHolder(ImageView itemView, PageBitmapDrawable pageDrawable) {
                 super(itemView);
                 this.imageView = itemView;
+                this.pageDrawable = pageDrawable;
             }
-        }
-    }
-
-    private Bitmap renderPage(int pageIndex) {
-        if (pdfRenderer == null) {
-            Log.e(TAG, "PDF renderer is null");
-            return null;
-        }
 
-        try {
-            PdfRenderer.Page page = pdfRenderer.openPage(pageIndex);
+            void showBitmap(Bitmap bitmap) {
+                if (pageDrawable.setBitmap(bitmap)) {
+                    onPageSizeChanged();
+                }
+            }
 
-            int width = page.getWidth();
-            int height = page.getHeight();
+            void showBitmap(Bitmap bitmap, int width, int height) {
+                if (pageDrawable.setBitmap(bitmap, width, height)) {
+                    onPageSizeChanged();
+                }
+            }
 
-            Log.d(TAG, String.format("Page %d native size: %dx%d (%.1f MP)",
-                    pageIndex, width, height, (width * height) / 1000000.0));
+            private void onPageSizeChanged() {
+                // Re-attach so the ImageView picks up the new bounds
+                imageView.setImageDrawable(null);
+                imageView.setImageDrawable(pageDrawable);
+            }
+        }
+    }
 
-            // Calculate target dimensions with aggressive downsampling for large pages
-            int screenWidth = getResources().getDisplayMetrics().widthPixels - 32;
+    /**
+     * Returns the width pages are rendered at: the document view's width less the page margins,
+     * or the display's before the view has been laid out.
+     */
+    private int getPageRenderWidth() {
+        if (pageRenderWidth > 0) {
+            return pageRenderWidth;
+        }
+        return getResources().getDisplayMetrics().widthPixels - 32;
+    }
 
-            // Start with screen width
-            int targetWidth = screenWidth;
-            float scale = (float) targetWidth / width;
-            int targetHeight = (int) (height * scale);
+    private int measureDocumentWidth() {
+        View documentView = isSurfaceMode() ? documentSurfaceView : recyclerView;
+        int width = documentView.getWidth();
+        return width > 0 ? width - 32 : -1;
+    }
 
-            // Apply maximum dimension limit to prevent OOM
-            if (targetWidth > MAX_RENDER_DIMENSION || targetHeight > MAX_RENDER_DIMENSION) {
-                float maxScale = Math.min(
-                        (float) MAX_RENDER_DIMENSION / targetWidth,
-                        (float) MAX_RENDER_DIMENSION / targetHeight
-                );
-                targetWidth = (int) (targetWidth * maxScale);
-                targetHeight = (int) (targetHeight * maxScale);
-                Log.w(TAG, "Page " + pageIndex + " downsampled to fit max dimension limit");
+    /**
+     * Watches the document view's width, e.g. for split screen, freeform windows or rotation
+     * without recreation. Shown pages scale to the new width at once; re-rendering waits for the
+     * width to settle.
+     */
+    private final View.OnLayoutChangeListener documentWidthListener = new View.OnLayoutChangeListener() {
+        @Override
+        public void onLayoutChange(View view, int left, int top, int right, int bottom,
+                                   int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            if (right - left == oldRight - oldLeft || view.getVisibility() != View.VISIBLE) {
+                return;
             }
+            view.removeCallbacks(applySettledWidth);
+            view.postDelayed(applySettledWidth, RESIZE_SETTLE_MS);
+        }
+    };
 
-            long bitmapBytes = (long) targetWidth * targetHeight * 4;
-            Log.d(TAG, String.format("Page %d rendering at %dx%d = %.1f MB (scale: %.2f)",
-                    pageIndex, targetWidth, targetHeight, bitmapBytes / 1024.0 / 1024.0,
-                    (float) targetWidth / width));
-
-            Bitmap bitmap = Bitmap.createBitmap(targetWidth, targetHeight, Bitmap.Config.ARGB_8888);
-            page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+    private final Runnable applySettledWidth = new Runnable() {
+        @Override
+        public void run() {
+            int width = measureDocumentWidth();
+            if (width <= 0) {
+                return;
+            }
+            int previousWidth = getPageRenderWidth();
+            pageRenderWidth = width;
+            if (width == previousWidth || document == null || isPagedMode()) {
+                return;
+            }
+            log.i("Document width changed to %d px, re-rendering visible pages", width);
+            rerenderVisiblePages();
+        }
+    };
 
-            page.close();
-            return bitmap;
+    /**
+     * Re-renders the visible pages at the current width, the page in the middle of the viewport
+     * first and then outward. Other cached pages are dropped and render again when shown.
+     */
+    private void rerenderVisiblePages() {
+        int first;
+        int last;
+        if (isSurfaceMode()) {
+            first = surfaceFirstVisiblePage;
+            last = surfaceLastVisiblePage;
+        } else {
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+            first = layoutManager.findFirstVisibleItemPosition();
+            last = layoutManager.findLastVisibleItemPosition();
+        }
+        // Anything queued or in flight was requested at the old width
+        if (pageRenderWorker != null) {
+            pageRenderWorker.cancelQueued();
+        }
+        clearPendingPageRenders();
+        renderBatcher.clear();
+        for (int i = bitmapCache.size() - 1; i >= 0; i--) {
+            int pageIndex = bitmapCache.keyAt(i);
+            if (pageIndex < first || pageIndex > last) {
+                // Not recycled: a view may still be drawing it
+                bitmapCache.removeAt(i);
+                cacheEvictions.increment();
+            }
+        }
+        if (first < 0 || last < first) {
+            return;
+        }
+        int count = orderCenterOut(first, last);
+        for (int i = 0; i < count; i++) {
+            requestPageRender(renderOrder[i]);
+        }
+    }
 
-        } catch (OutOfMemoryError e) {
-            Log.e(TAG, "Out of memory rendering page " + pageIndex, e);
-            logMemoryInfo("OOM during render");
-            clearBitmapCache();
-            System.gc();
-            return null;
-        } catch (IllegalStateException e) {
-            Log.e(TAG, "IllegalStateException rendering page " + pageIndex + ": " + e.getMessage(), e);
-            return null;
-        } catch (Exception e) {
-            Log.e(TAG, "Error rendering page " + pageIndex + ": " + e.getMessage(), e);
-            return null;
+    /**
+     * Writes the pages {@code first..last} into {@link #renderOrder}, the page in the middle of
+     * the viewport first.
+     *
+     * @return the number of pages written
+     */
+    private int orderCenterOut(int first, int last) {
+        if (last - first + 1 > renderOrder.length) {
+            renderOrder = new int[(last - first + 1) * 2];
         }
+        return RenderOrder.centerOut(first, last, renderOrder);
     }
 
     private void cleanupDistantPages() {
-        if (recyclerView == null || recyclerView.getLayoutManager() == null || pdfRenderer == null) return;
+        if (recyclerView == null || recyclerView.getLayoutManager() == null || document == null) return;
 
-        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
-        int firstVisible = layoutManager.findFirstVisibleItemPosition();
-        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        TraceSections.begin(TraceSections.CLEANUP_DISTANT_PAGES);
+        try {
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+            int firstVisible = layoutManager.findFirstVisibleItemPosition();
+            int lastVisible = layoutManager.findLastVisibleItemPosition();
 
-        if (firstVisible == RecyclerView.NO_POSITION || lastVisible == RecyclerView.NO_POSITION) {
-            return;
-        }
+            if (firstVisible == RecyclerView.NO_POSITION || lastVisible == RecyclerView.NO_POSITION) {
+                return;
+            }
 
-        // Keep a buffer of 2 pages on each side
-        int keepStart = Math.max(0, firstVisible - 2);
-        int keepEnd = Math.min(pdfRenderer.getPageCount() - 1, lastVisible + 2);
+            trimCacheOutside(firstVisible, lastVisible);
+        } finally {
+            TraceSections.end();
+        }
+    }
 
-        // Remove cached pages outside the keep range
-        // BUT DON'T RECYCLE - just remove from cache
-        // Android will handle bitmap memory automatically
-        for (Iterator<Map.Entry<Integer, Bitmap>> iterator = bitmapCache.entrySet().iterator(); iterator.hasNext();) {
-            Map.Entry<Integer, Bitmap> entry = iterator.next();
-            int pageIndex = entry.getKey();
-            if (pageIndex < keepStart || pageIndex > keepEnd) {
-                Log.d(TAG, "Removing page " + pageIndex + " from cache (outside keep range " +
-                        keepStart + "-" + keepEnd + ")");
-                iterator.remove();
-                // DO NOT call bitmap.recycle() here - it may still be displayed
-            }
+    private void trimCacheOutside(int firstVisible, int lastVisible) {
+        if (document == null) return;
+
+        // Pages outside the visible range and its margin are removed from the cache but not
+        // recycled, since a view may still be displaying them
+        // Runs on every scroll event, so logging is only built when debugging
+        int cachedCount = snapshotCachedPages();
+        int evictionCount = PageCachePolicy.selectEvictions(cachedPageKeys, cachedCount,
+                firstVisible, lastVisible, document.getPageCount(), pageEvictions);
+        for (int i = 0; i < evictionCount; i++) {
+            log.d("Removing page %d from cache (outside visible pages %d-%d)", pageEvictions[i], firstVisible, lastVisible);
+            bitmapCache.delete(pageEvictions[i]);
+            cacheEvictions.increment();
         }
 
-        logMemoryInfo("After cleanup");
+        if (log.isDebugEnabled() && memorySampler.shouldSample()) {
+            logMemoryInfo("After cleanup");
+        }
     }
 
-    private void cleanupOldestCacheEntry() {
-        if (bitmapCache.isEmpty()) return;
+    /**
+     * Evicts a page once the cache holds more than it may by count or by the memory budget. The
+     * surface trims by visible range, so for it only the budget applies and visible pages stay.
+     */
+    private void trimCacheToLimits(boolean surface) {
+        int cachedCount = snapshotCachedPages();
+        boolean overBudget = memoryAccountant.bytesAvailableForPages(getResidentPageBytes()) == 0;
+        int evicted = PageCachePolicy.selectOverflowEviction(cachedPageKeys, cachedCount,
+                surface ? Integer.MAX_VALUE : MAX_CACHED_PAGES, overBudget);
+        if (evicted < 0) return;
+        if (surface && evicted >= surfaceFirstVisiblePage && evicted <= surfaceLastVisiblePage) {
+            // Only pages that scrolled away make room; the surface has nothing else to draw
+            return;
+        }
 
-        // Simple cleanup: remove first entry
         // DO NOT recycle - bitmap may still be displayed
-        Integer firstKey = bitmapCache.keySet().iterator().next();
-        bitmapCache.remove(firstKey);
-        Log.d(TAG, "Removed page " + firstKey + " from cache (cache full)");
+        bitmapCache.delete(evicted);
+        cacheEvictions.increment();
+        log.d("Removed page %d from cache (cache full)", evicted);
+    }
+
+    /**
+     * Returns whether an attached list page is still showing the bitmap.
+     */
+    private boolean isShownInList(int pageIndex, Bitmap bitmap) {
+        RecyclerView.ViewHolder holder = recyclerView != null
+                ? recyclerView.findViewHolderForAdapterPosition(pageIndex) : null;
+        return holder instanceof PdfPageAdapter.PageViewHolder
+                && ((PdfPageAdapter.PageViewHolder) holder).pageDrawable.getBitmap() == bitmap;
+    }
+
+    /**
+     * Copies the cached page indices, ascending, into {@link #cachedPageKeys} for the cache
+     * policy, growing the scratch arrays when the cache has outgrown them.
+     *
+     * @return the number of cached pages
+     */
+    private int snapshotCachedPages() {
+        int count = bitmapCache.size();
+        if (cachedPageKeys.length < count) {
+            cachedPageKeys = new int[count * 2];
+            pageEvictions = new int[count * 2];
+        }
+        for (int i = 0; i < count; i++) {
+            cachedPageKeys[i] = bitmapCache.keyAt(i);
+        }
+        return count;
     }
 
     private void clearBitmapCache() {
-        Log.d(TAG, "Clearing entire bitmap cache (" + bitmapCache.size() + " entries)");
+        log.d("Clearing entire bitmap cache (%d entries)", bitmapCache.size());
         // Just clear the cache - don't recycle bitmaps as they may still be displayed
         // Android's garbage collector will handle bitmap cleanup when they're no longer referenced
         bitmapCache.clear();
     }
 
-    private void closeQuietly(PdfRenderer renderer) {
-        if (renderer != null) {
-            try {
-                renderer.close();
-            } catch (Exception e) {
-                Log.w(TAG, "Error closing PdfRenderer: " + e.getMessage(), e);
-            }
-        }
+    /**
+     * Returns whether a document is still on its way from the background opener.
+     */
+    boolean isOpeningDocument() {
+        return documentOpener != null && documentOpener.isOpening();
     }
 
-    private void closeQuietly(ParcelFileDescriptor descriptor) {
-        if (descriptor != null) {
-            try {
-                descriptor.close();
-            } catch (IOException e) {
-                Log.w(TAG, "Error closing ParcelFileDescriptor: " + e.getMessage(), e);
-            }
+    /**
+     * Returns how many page renders have been requested and not delivered yet, in any view mode.
+     */
+    int getPendingRenderCount() {
+        int pending = pendingPageRenders.size();
+        if (pageRing != null) {
+            pending += pageRing.getRenderingCount();
         }
+        return pending;
     }
 
-    private void replaceRenderer(PdfRenderer newRenderer, ParcelFileDescriptor newDescriptor) {
-        clearBitmapCache();
-        closeCurrentRenderer();
-        pdfRenderer = newRenderer;
-        parcelFileDescriptor = newDescriptor;
+    /**
+     * Shows a document that was opened elsewhere, e.g. one backed by a test {@link PageSource}.
+     * The activity takes ownership; without a fingerprint it is closed rather than pooled when
+     * replaced.
+     */
+    void showOpenedDocument(DocumentHandle opened) {
+        documentOpener.cancel();
+        saveDocumentPosition();
+        replaceDocument(opened, null);
+        showDocument();
     }
 
-    private void closeCurrentRenderer() {
-        if (pdfRenderer != null) {
-            try {
-                pdfRenderer.close();
-            } catch (Exception e) {
-                Log.w(TAG, "Error closing current PdfRenderer: " + e.getMessage(), e);
-            }
-            pdfRenderer = null;
-            Log.d(TAG, "PDF renderer closed");
-        }
+    private void replaceDocument(DocumentHandle newDocument, DocumentFingerprint fingerprint) {
+        // The session parks the old document with its caches, or closes it
+        session.replaceDocument(newDocument, fingerprint);
+        document = newDocument;
+        firstPagePreview = null;
+    }
 
-        if (parcelFileDescriptor != null) {
-            try {
-                parcelFileDescriptor.close();
-            } catch (IOException e) {
-                Log.e(TAG, "Error closing file descriptor: " + e.getMessage(), e);
-            }
-            parcelFileDescriptor = null;
-            Log.d(TAG, "File descriptor closed");
-        }
+    private void closeCurrentDocument() {
+        session.closeDocument();
+        document = null;
+        firstPagePreview = null;
     }
 
     private void logMemoryInfo(String context) {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
         Runtime runtime = Runtime.getRuntime();
         long usedMemory = (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024;
         long maxMemory = runtime.maxMemory() / 1024 / 1024;
         long totalMemory = runtime.totalMemory() / 1024 / 1024;
         long freeMemory = runtime.freeMemory() / 1024 / 1024;
-        Log.i(TAG, String.format("[%s] Memory - Used: %d MB, Free: %d MB, Total: %d MB, Max: %d MB, Cache: %d pages",
-                context, usedMemory, freeMemory, totalMemory, maxMemory, bitmapCache.size()));
+        Log.i(TAG, String.format(Locale.US, "[%s] Memory - Used: %d MB, Free: %d MB, Total: %d MB, Max: %d MB, Cache: %d pages (%d KB%s)",
+                context, usedMemory, freeMemory, totalMemory, maxMemory, bitmapCache.size(),
+                getCachedPageBytes() / 1024, hardwareBitmaps ? ", hardware" : ""));
+        if (memoryAccountant != null) {
+            Log.i(TAG, String.format(Locale.US, "[%s] %s", context,
+                    memoryAccountant.describe(getResidentPageBytes())));
+        }
+    }
+
+    private long getCachedPageBytes() {
+        long bytes = 0;
+        for (int i = 0; i < bitmapCache.size(); i++) {
+            bytes += PageBitmaps.byteCount(bitmapCache.valueAt(i));
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the bytes held by every page bitmap the viewer references: the page cache, the
+     * preview, the paged ring and the pages of parked documents.
+     */
+    private long getResidentPageBytes() {
+        long bytes = getCachedPageBytes() + PageBitmaps.byteCount(firstPagePreview);
+        if (pageRing != null) {
+            bytes += pageRing.getAllocatedBytes();
+        }
+        if (session != null) {
+            bytes += session.getPool().getPageBytes();
+        }
+        return bytes;
+    }
+
+    private void updateMetricGauges() {
+        long residentBytes = getResidentPageBytes();
+        metrics.gauge(MetricsRegistry.RESIDENT_BITMAP_BYTES).set(residentBytes);
+        metrics.gauge(MetricsRegistry.PAGE_BYTES_AVAILABLE).set(memoryAccountant.bytesAvailableForPages(residentBytes));
+        metrics.gauge(MetricsRegistry.RENDER_QUEUE_DEPTH).set(pendingPageRenders.size());
+    }
+
+    /**
+     * Adds the in-memory performance metrics to {@code adb shell dumpsys activity}.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        updateMetricGauges();
+        metrics.dump(prefix, writer);
+        memoryAccountant.dump(prefix, writer, getResidentPageBytes());
+        MainThreadStallDetector stallDetector = MainThreadStallDetector.getInstalled();
+        if (stallDetector != null) {
+            stallDetector.dump(prefix, writer);
+        }
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (perfHud != null) {
+            perfHud.start();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (perfHud != null) {
+            perfHud.stop();
+        }
+    }
+
+    /**
+     * Feeds the debug HUD from counters kept anyway; called a few times a second at most.
+     */
+    private final PerfHud.Source perfHudSource = new PerfHud.Source() {
+        @Override
+        public void collect(PerfHud.Stats stats) {
+            stats.queueDepth = pageRenderWorker != null ? pageRenderWorker.getQueueDepth() : 0;
+            stats.residentBytes = getResidentPageBytes();
+            stats.cacheHits = cacheHits.get();
+            stats.cacheMisses = cacheMisses.get();
+            // A cached page that is being rendered again was rendered for an earlier width and is
+            // shown scaled until the new render lands
+            int stale = 0;
+            for (int i = 0; i < bitmapCache.size(); i++) {
+                if (pendingPageRenders.get(bitmapCache.keyAt(i))) {
+                    stale++;
+                }
+            }
+            stats.fullPages = bitmapCache.size() - stale;
+            stats.stalePages = stale;
+            stats.previewPages = firstPagePreview != null ? 1 : 0;
+            stats.placeholderPages = Math.max(0, pendingPageRenders.size() - stale - stats.previewPages);
+            stats.zoom = zoomCoordinator.getCurrentScale();
+            stats.lastRenderNanos = renderLatency.getLastValue();
+        }
+    };
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        Log.d(TAG, "Activity destroying, cleaning up resources");
+        log.d("Activity destroying, cleaning up resources");
 
+        if (documentGestureHandler != null) {
+            documentGestureHandler.detach(isPagedMode() ? pagedRecyclerView : recyclerView);
+        }
         if (documentZoomController != null) {
             documentZoomController.detach();
         }
-        clearBitmapCache();
+        pagedRecyclerView.removeCallbacks(prerenderPagedNeighbors);
+        layoutPassCounter.detach();
+        bindToPixelsTracker.detach();
+        recyclerView.removeOnLayoutChangeListener(documentWidthListener);
+        documentSurfaceView.removeOnLayoutChangeListener(documentWidthListener);
+        recyclerView.removeCallbacks(applySettledWidth);
+        documentSurfaceView.removeCallbacks(applySettledWidth);
+        renderBatcher.clear();
+        // A recreated activity starts the open again from its intent
+        documentOpener.cancel();
+        if (pageRenderWorker != null) {
+            // Anything still rendering finishes off-thread and is discarded on delivery
+            pageRenderWorker.shutdown();
+        }
 
-        closeCurrentRenderer();
+        if (isChangingConfigurations()) {
+            // The recreated activity picks the open document back up from the session
+            saveDocumentPosition();
+            return;
+        }
+        closeCurrentDocument();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // Parked documents are a convenience; give their memory back first
+            session.clearPool();
+        }
     }
 
     private void resetZoomToDefault() {
         if (zoomCoordinator != null) {
-            zoomCoordinator.propagateScale(null, 1f, Float.NaN, Float.NaN);
+            zoomCoordinator.propagateScale(1f, Float.NaN, Float.NaN);
         }
     }
 
@@ -584,15 +1530,10 @@ public class PdfViewerActivity extends AppCompatActivity {
             return;
         }
         float currentScale = zoomCoordinator.getCurrentScale();
-        float targetScale = currentScale + delta;
-        if (targetScale < MIN_SCALE) {
-            targetScale = MIN_SCALE;
-        } else if (targetScale > MAX_SCALE) {
-            targetScale = MAX_SCALE;
-        }
+        float targetScale = ZoomMath.clampScale(currentScale + delta);
         if (Math.abs(targetScale - currentScale) < 0.0001f) {
             return;
         }
-        zoomCoordinator.propagateScale(null, targetScale, Float.NaN, Float.NaN);
+        zoomCoordinator.propagateScale(targetScale, Float.NaN, Float.NaN);
     }
 }
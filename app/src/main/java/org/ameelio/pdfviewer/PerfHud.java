@@ -0,0 +1,151 @@
+package org.ameelio.pdfviewer;
+
+import android.view.Choreographer;
+import android.view.View;
+import android.widget.TextView;
+import java.util.Locale;
+
+/**
+ * On-screen performance readout for field testing on debuggable builds. Frame times are taken
+ * from the frame callback itself; everything else is read from counters the viewer keeps anyway
+ * through a {@link Source}, at most {@link #UPDATE_INTERVAL_NANOS} apart, so a shown HUD costs one
+ * frame callback per frame and a short text update a few times a second. A stopped HUD costs
+ * nothing.
+ */
+class PerfHud implements Choreographer.FrameCallback {
+
+    static final long UPDATE_INTERVAL_NANOS = 250_000_000L;
+
+    /**
+     * Values shown on the HUD. Filled in by the source and reused for every update.
+     */
+    static final class Stats {
+        int queueDepth;
+        long residentBytes;
+        long cacheHits;
+        long cacheMisses;
+        int placeholderPages;
+        int previewPages;
+        int fullPages;
+        int stalePages;
+        float zoom;
+        long lastRenderNanos;
+    }
+
+    interface Source {
+        /**
+         * Fills in the current values. Called on the main thread.
+         */
+        void collect(Stats stats);
+    }
+
+    private final View container;
+    private final TextView text;
+    private final Source source;
+    private final ZoomCoordinator.FrameScheduler frameScheduler;
+    private final Stats stats = new Stats();
+    private final StringBuilder line = new StringBuilder(256);
+    private boolean running = false;
+    private boolean frameScheduled = false;
+    private long lastFrameNanos = 0;
+    private long lastUpdateNanos = 0;
+    private long windowFrameNanos = 0;
+    private long windowMaxFrameNanos = 0;
+    private int windowFrames = 0;
+    private int updateCount = 0;
+
+    PerfHud(View container, TextView text, Source source) {
+        this(container, text, source, ZoomCoordinator.CHOREOGRAPHER_SCHEDULER);
+    }
+
+    PerfHud(View container, TextView text, Source source, ZoomCoordinator.FrameScheduler frameScheduler) {
+        this.container = container;
+        this.text = text;
+        this.source = source;
+        this.frameScheduler = frameScheduler;
+    }
+
+    void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        lastFrameNanos = 0;
+        lastUpdateNanos = 0;
+        resetWindow();
+        container.setVisibility(View.VISIBLE);
+        scheduleFrame();
+    }
+
+    /**
+     * Hides the HUD. The frame callback already posted finds it stopped and does not repost.
+     */
+    void stop() {
+        running = false;
+        container.setVisibility(View.GONE);
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    int getUpdateCount() {
+        return updateCount;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (!running) {
+            return;
+        }
+        if (lastFrameNanos != 0) {
+            long frameNanos = frameTimeNanos - lastFrameNanos;
+            windowFrameNanos += frameNanos;
+            windowFrames++;
+            if (frameNanos > windowMaxFrameNanos) {
+                windowMaxFrameNanos = frameNanos;
+            }
+        }
+        lastFrameNanos = frameTimeNanos;
+        if (lastUpdateNanos == 0) {
+            lastUpdateNanos = frameTimeNanos;
+        } else if (frameTimeNanos - lastUpdateNanos >= UPDATE_INTERVAL_NANOS) {
+            lastUpdateNanos = frameTimeNanos;
+            update();
+        }
+        scheduleFrame();
+    }
+
+    private void scheduleFrame() {
+        if (!frameScheduled) {
+            frameScheduled = true;
+            frameScheduler.postFrameCallback(this);
+        }
+    }
+
+    private void update() {
+        source.collect(stats);
+        long lookups = stats.cacheHits + stats.cacheMisses;
+        line.setLength(0);
+        line.append(String.format(Locale.US, "frame %.1f ms avg, %.1f ms max\n",
+                windowFrames > 0 ? windowFrameNanos / (double) windowFrames / 1_000_000.0 : 0.0,
+                windowMaxFrameNanos / 1_000_000.0));
+        line.append(String.format(Locale.US, "queue %d  resident %.1f MB  hits %.0f%%\n",
+                stats.queueDepth, stats.residentBytes / 1024.0 / 1024.0,
+                lookups > 0 ? stats.cacheHits * 100.0 / lookups : 0.0));
+        line.append(String.format(Locale.US, "pages: %d full, %d stale, %d preview, %d pending\n",
+                stats.fullPages, stats.stalePages, stats.previewPages, stats.placeholderPages));
+        line.append(String.format(Locale.US, "zoom %.2fx  last render %.1f ms",
+                stats.zoom, stats.lastRenderNanos / 1_000_000.0));
+        text.setText(line);
+        updateCount++;
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        windowFrameNanos = 0;
+        windowMaxFrameNanos = 0;
+        windowFrames = 0;
+    }
+}
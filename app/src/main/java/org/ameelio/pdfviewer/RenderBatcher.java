@@ -0,0 +1,95 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.util.SparseArray;
+import android.view.Choreographer;
+
+/**
+ * Collects finished page renders and hands them to the UI once per frame, so several pages
+ * completing close together cost one rebind pass instead of one layout pass each. A page that
+ * finishes twice before the frame only delivers its newest bitmap.
+ */
+class RenderBatcher implements Choreographer.FrameCallback {
+
+    interface Target {
+        /**
+         * Called on the main thread with every page finished since the last frame, keyed by page
+         * index. The array is reused after the call returns.
+         */
+        void onRenderBatch(SparseArray<Bitmap> pages);
+    }
+
+    private final Target target;
+    private final ZoomCoordinator.FrameScheduler frameScheduler;
+    // Swapped on every frame so delivering a batch allocates nothing
+    private SparseArray<Bitmap> pending = new SparseArray<>();
+    private SparseArray<Bitmap> delivering = new SparseArray<>();
+    private boolean frameScheduled = false;
+    private int batchCount = 0;
+    private int deliveredPageCount = 0;
+
+    RenderBatcher(Target target) {
+        this(target, ZoomCoordinator.CHOREOGRAPHER_SCHEDULER);
+    }
+
+    RenderBatcher(Target target, ZoomCoordinator.FrameScheduler frameScheduler) {
+        this.target = target;
+        this.frameScheduler = frameScheduler;
+    }
+
+    /**
+     * Queues a finished page for the next frame. Must be called on the main thread.
+     */
+    void add(int pageIndex, Bitmap bitmap) {
+        Bitmap replaced = pending.get(pageIndex);
+        if (replaced != null && replaced != bitmap) {
+            // Never handed to a view, so it can go right away
+            replaced.recycle();
+        }
+        pending.put(pageIndex, bitmap);
+        if (!frameScheduled) {
+            frameScheduled = true;
+            frameScheduler.postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Drops everything queued, e.g. when the document is replaced.
+     */
+    void clear() {
+        for (int i = 0; i < pending.size(); i++) {
+            pending.valueAt(i).recycle();
+        }
+        pending.clear();
+    }
+
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    int getBatchCount() {
+        return batchCount;
+    }
+
+    int getDeliveredPageCount() {
+        return deliveredPageCount;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (pending.size() == 0) {
+            return;
+        }
+        SparseArray<Bitmap> batch = pending;
+        pending = delivering;
+        delivering = batch;
+        batchCount++;
+        deliveredPageCount += batch.size();
+        try {
+            target.onRenderBatch(batch);
+        } finally {
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+/**
+ * One reusable software bitmap that pages are rendered into before being copied elsewhere, so
+ * rendering a run of same-sized pages allocates no software pixels at all. Not thread safe: each
+ * render thread keeps its own.
+ */
+class ScratchBitmap {
+
+    private Bitmap bitmap;
+
+    /**
+     * Returns a cleared ARGB_8888 bitmap of exactly the given size, reusing the current
+     * allocation whenever it is large enough.
+     */
+    Bitmap obtain(int width, int height) {
+        if (bitmap != null && (bitmap.getWidth() != width || bitmap.getHeight() != height)) {
+            if (bitmap.getAllocationByteCount() >= width * height * 4) {
+                bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+            } else {
+                bitmap.recycle();
+                bitmap = null;
+            }
+        }
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        } else {
+            // Still holds the previous page
+            bitmap.eraseColor(Color.TRANSPARENT);
+        }
+        return bitmap;
+    }
+
+    long getAllocatedBytes() {
+        return bitmap != null ? bitmap.getAllocationByteCount() : 0;
+    }
+
+    void release() {
+        if (bitmap != null) {
+            bitmap.recycle();
+            bitmap = null;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.ameelio.pdfviewer;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Named system trace sections for Perfetto and systrace captures. Section names are constants,
+ * so nothing is built per call; with tracing off each call is a single enabled-tag check inside
+ * {@link Trace}.
+ *
+ * <p>Main-thread sections also name the stage of a stall for {@link MainThreadStallDetector}
+ * when it is installed.</p>
+ *
+ * <p>Synchronous sections must begin and end on the same thread. Async sections may end on any
+ * thread and are matched by name and cookie; they need API 29 and are skipped on older
+ * releases.</p>
+ */
+final class TraceSections {
+
+    static final String OPEN_PDF = "openPdf";
+    static final String OPEN_RENDERER = "PdfRenderer.open";
+    static final String OPEN_PAGE = "PdfRenderer.openPage";
+    static final String RENDER_PAGE = "Page.render";
+    static final String BIND_PAGE = "onBindViewHolder";
+    static final String CLEANUP_DISTANT_PAGES = "cleanupDistantPages";
+    static final String APPLY_TRANSFORMS = "DocumentZoomController.applyTransforms";
+    /** Async slice from requesting a page render to handing the page to its view; cookie is the page index. */
+    static final String PAGE_REQUEST = "page request";
+
+    private TraceSections() {
+    }
+
+    static void begin(String section) {
+        Trace.beginSection(section);
+        MainThreadStallDetector.onSectionBegin(section);
+    }
+
+    static void end() {
+        MainThreadStallDetector.onSectionEnd();
+        Trace.endSection();
+    }
+
+    static void beginAsync(String section, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            beginAsyncSection(section, cookie);
+        }
+    }
+
+    static void endAsync(String section, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            endAsyncSection(section, cookie);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.Q)
+    private static void beginAsyncSection(String section, int cookie) {
+        Trace.beginAsyncSection(section, cookie);
+    }
+
+    @TargetApi(Build.VERSION_CODES.Q)
+    private static void endAsyncSection(String section, int cookie) {
+        Trace.endAsyncSection(section, cookie);
+    }
+}
@@ -0,0 +1,155 @@
+package org.ameelio.pdfviewer;
+
+import android.util.Log;
+import java.util.Locale;
+
+/**
+ * Info, debug and verbose logging for hot paths such as binds and scroll callbacks. Whether a
+ * level is enabled is read from {@link Log#isLoggable} once, when the logger is created or
+ * {@link #refresh()}ed, so a disabled call costs one field read. Messages are only formatted
+ * once the level check passes, and the primitive overloads keep arguments unboxed until then.
+ *
+ * <p>Format strings use {@link String#format} syntax. Enable with
+ * {@code adb shell setprop log.tag.<TAG> DEBUG} (or VERBOSE) before the screen is opened.</p>
+ */
+final class ViewerLog {
+
+    private final String tag;
+    private boolean infoEnabled;
+    private boolean debugEnabled;
+    private boolean verboseEnabled;
+
+    ViewerLog(String tag) {
+        this.tag = tag;
+        refresh();
+    }
+
+    /**
+     * Re-reads the enabled levels, e.g. after the log property was changed.
+     */
+    void refresh() {
+        infoEnabled = Log.isLoggable(tag, Log.INFO);
+        debugEnabled = Log.isLoggable(tag, Log.DEBUG);
+        verboseEnabled = Log.isLoggable(tag, Log.VERBOSE);
+    }
+
+    boolean isInfoEnabled() {
+        return infoEnabled;
+    }
+
+    boolean isDebugEnabled() {
+        return debugEnabled;
+    }
+
+    boolean isVerboseEnabled() {
+        return verboseEnabled;
+    }
+
+    void i(String message) {
+        if (infoEnabled) {
+            Log.i(tag, message);
+        }
+    }
+
+    void i(String format, int arg) {
+        if (infoEnabled) {
+            Log.i(tag, String.format(Locale.US, format, arg));
+        }
+    }
+
+    void i(String format, int arg1, long arg2) {
+        if (infoEnabled) {
+            Log.i(tag, String.format(Locale.US, format, arg1, arg2));
+        }
+    }
+
+    void i(String format, Object arg) {
+        if (infoEnabled) {
+            Log.i(tag, String.format(Locale.US, format, arg));
+        }
+    }
+
+    void d(String message) {
+        if (debugEnabled) {
+            Log.d(tag, message);
+        }
+    }
+
+    void d(String format, int arg) {
+        if (debugEnabled) {
+            Log.d(tag, String.format(Locale.US, format, arg));
+        }
+    }
+
+    void d(String format, int arg1, int arg2) {
+        if (debugEnabled) {
+            Log.d(tag, String.format(Locale.US, format, arg1, arg2));
+        }
+    }
+
+    void d(String format, int arg1, int arg2, int arg3) {
+        if (debugEnabled) {
+            Log.d(tag, String.format(Locale.US, format, arg1, arg2, arg3));
+        }
+    }
+
+    void d(String format, long arg) {
+        if (debugEnabled) {
+            Log.d(tag, String.format(Locale.US, format, arg));
+        }
+    }
+
+    void d(String format, long arg1, long arg2) {
+        if (debugEnabled) {
+            Log.d(tag, String.format(Locale.US, format, arg1, arg2));
+        }
+    }
+
+    void d(String format, long arg1, long arg2, long arg3) {
+        if (debugEnabled) {
+            Log.d(tag, String.format(Locale.US, format, arg1, arg2, arg3));
+        }
+    }
+
+    void d(String format, float arg1, float arg2, float arg3, float arg4) {
+        if (debugEnabled) {
+            Log.d(tag, String.format(Locale.US, format, arg1, arg2, arg3, arg4));
+        }
+    }
+
+    void d(String format, Object arg) {
+        if (debugEnabled) {
+            Log.d(tag, String.format(Locale.US, format, arg));
+        }
+    }
+
+    void v(String message) {
+        if (verboseEnabled) {
+            Log.v(tag, message);
+        }
+    }
+
+    void v(String format, int arg) {
+        if (verboseEnabled) {
+            Log.v(tag, String.format(Locale.US, format, arg));
+        }
+    }
+
+    void v(String format, int arg1, int arg2) {
+        if (verboseEnabled) {
+            Log.v(tag, String.format(Locale.US, format, arg1, arg2));
+        }
+    }
+
+    void v(String format, long arg) {
+        if (verboseEnabled) {
+            Log.v(tag, String.format(Locale.US, format, arg));
+        }
+    }
+
+    void v(String format, Object arg) {
+        if (verboseEnabled) {
+            Log.v(tag, String.format(Locale.US, format, arg));
+        }
+    }
+}
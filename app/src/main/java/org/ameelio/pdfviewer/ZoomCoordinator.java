@@ -1,66 +1,226 @@
 package org.ameelio.pdfviewer;
 
-import java.util.Collections;
-import java.util.Set;
-import java.util.WeakHashMap;
+import android.view.Choreographer;
+import org.ameelio.pdfviewer.core.ListenerArrays;
 
 /**
- * Coordinates zoom scale across all PDF page views so pinch-to-zoom applies to the entire document.
+ * Coordinates zoom scale across the document so pinch-to-zoom applies to every page at once.
+ *
+ * <p>Scale and pan updates are coalesced and delivered to listeners once per display frame, so
+ * touch panels reporting several events per frame still cause a single transform pass.
+ * {@link #getCurrentScale()} always reflects the latest requested scale.</p>
+ *
+ * <p>Listeners are held in copy-on-write arrays: register/unregister take a lock and publish a
+ * new array, while dispatch reads the current array without locking or allocating. Listeners
+ * must unregister explicitly. Propagation and frame dispatch run on
+ * the main thread.</p>
  */
-class ZoomCoordinator {
+class ZoomCoordinator implements Choreographer.FrameCallback {
 
     interface ZoomListener {
-        void onGlobalScaleChanged(ZoomableImageView source, float scale, float focusX, float focusY);
+        void onGlobalScaleChanged(float scale, float focusX, float focusY);
     }
 
     interface PanListener {
         void onGlobalPanChanged(float dx, float dy);
+
+        void onGlobalFling(float velocityX, float velocityY);
+
+        void onGlobalFlingStopped();
+    }
+
+    /**
+     * Schedules the coalesced dispatch. Production code posts to the {@link Choreographer};
+     * tests substitute a scheduler they can step frame by frame.
+     */
+    interface FrameScheduler {
+        void postFrameCallback(Choreographer.FrameCallback callback);
     }
 
-    private final Set<ZoomListener> zoomListeners =
-            Collections.newSetFromMap(new WeakHashMap<>());
-    private final Set<PanListener> panListeners =
-            Collections.newSetFromMap(new WeakHashMap<>());
-    private float currentScale = 1f;
+    static final FrameScheduler CHOREOGRAPHER_SCHEDULER = new FrameScheduler() {
+        @Override
+        public void postFrameCallback(Choreographer.FrameCallback callback) {
+            Choreographer.getInstance().postFrameCallback(callback);
+        }
+    };
+
+    private static final ZoomListener[] NO_ZOOM_LISTENERS = new ZoomListener[0];
+    private static final PanListener[] NO_PAN_LISTENERS = new PanListener[0];
+
+    private final Object registryLock = new Object();
+    private volatile ZoomListener[] zoomListeners = NO_ZOOM_LISTENERS;
+    private volatile PanListener[] panListeners = NO_PAN_LISTENERS;
+    private final FrameScheduler frameScheduler;
+    private volatile float currentScale = 1f;
+
+    // Pending state flushed on the next frame. Pan recorded before a scale change is delivered
+    // ahead of it so listeners see the same ordering as with immediate dispatch.
+    private boolean frameScheduled = false;
+    private boolean scalePending = false;
+    private float pendingFocusX;
+    private float pendingFocusY;
+    private float panBeforeScaleX;
+    private float panBeforeScaleY;
+    private float panAfterScaleX;
+    private float panAfterScaleY;
+    private boolean flingPending = false;
+    private float pendingFlingVelocityX;
+    private float pendingFlingVelocityY;
+    // Pan being delivered by panDelivery
+    private float dispatchPanX;
+    private float dispatchPanY;
+
+    private final ListenerArrays.Delivery<ZoomListener> scaleDelivery = new ListenerArrays.Delivery<ZoomListener>() {
+        @Override
+        public void deliver(ZoomListener listener) {
+            listener.onGlobalScaleChanged(currentScale, pendingFocusX, pendingFocusY);
+        }
+    };
+
+    private final ListenerArrays.Delivery<PanListener> panDelivery = new ListenerArrays.Delivery<PanListener>() {
+        @Override
+        public void deliver(PanListener listener) {
+            listener.onGlobalPanChanged(dispatchPanX, dispatchPanY);
+        }
+    };
+
+    private final ListenerArrays.Delivery<PanListener> flingDelivery = new ListenerArrays.Delivery<PanListener>() {
+        @Override
+        public void deliver(PanListener listener) {
+            listener.onGlobalFling(pendingFlingVelocityX, pendingFlingVelocityY);
+        }
+    };
+
+    private final ListenerArrays.Delivery<PanListener> flingStoppedDelivery =
+            new ListenerArrays.Delivery<PanListener>() {
+                @Override
+                public void deliver(PanListener listener) {
+                    listener.onGlobalFlingStopped();
+                }
+            };
 
-    synchronized void register(ZoomListener listener) {
-        zoomListeners.add(listener);
-        listener.onGlobalScaleChanged(null, currentScale, Float.NaN, Float.NaN);
+    ZoomCoordinator() {
+        this(CHOREOGRAPHER_SCHEDULER);
     }
 
-    synchronized void unregister(ZoomListener listener) {
-        zoomListeners.remove(listener);
+    ZoomCoordinator(FrameScheduler frameScheduler) {
+        this.frameScheduler = frameScheduler;
     }
 
-    synchronized void registerPanListener(PanListener listener) {
-        panListeners.add(listener);
+    void register(ZoomListener listener) {
+        synchronized (registryLock) {
+            zoomListeners = ListenerArrays.append(zoomListeners, listener);
+        }
+        listener.onGlobalScaleChanged(currentScale, Float.NaN, Float.NaN);
     }
 
-    synchronized void unregisterPanListener(PanListener listener) {
-        panListeners.remove(listener);
+    void unregister(ZoomListener listener) {
+        synchronized (registryLock) {
+            zoomListeners = ListenerArrays.remove(zoomListeners, listener);
+        }
     }
 
-    synchronized void propagateScale(ZoomableImageView source, float scale, float focusX, float focusY) {
-        currentScale = scale;
-        for (ZoomListener listener : zoomListeners) {
-            if (listener != null && listener != source) {
-                listener.onGlobalScaleChanged(source, currentScale, focusX, focusY);
-            }
+    void registerPanListener(PanListener listener) {
+        synchronized (registryLock) {
+            panListeners = ListenerArrays.append(panListeners, listener);
         }
     }
 
-    synchronized void propagatePan(float dx, float dy) {
+    void unregisterPanListener(PanListener listener) {
+        synchronized (registryLock) {
+            panListeners = ListenerArrays.remove(panListeners, listener);
+        }
+    }
+
+    int getZoomListenerCount() {
+        return zoomListeners.length;
+    }
+
+    int getPanListenerCount() {
+        return panListeners.length;
+    }
+
+    void propagateScale(float scale, float focusX, float focusY) {
+        currentScale = scale;
+        scalePending = true;
+        pendingFocusX = focusX;
+        pendingFocusY = focusY;
+        scheduleFrame();
+    }
+
+    void propagatePan(float dx, float dy) {
         if (dx == 0 && dy == 0) {
             return;
         }
-        for (PanListener listener : panListeners) {
-            if (listener != null) {
-                listener.onGlobalPanChanged(dx, dy);
-            }
+        if (scalePending) {
+            panAfterScaleX += dx;
+            panAfterScaleY += dy;
+        } else {
+            panBeforeScaleX += dx;
+            panBeforeScaleY += dy;
         }
+        scheduleFrame();
+    }
+
+    void propagateFling(float velocityX, float velocityY) {
+        flingPending = true;
+        pendingFlingVelocityX = velocityX;
+        pendingFlingVelocityY = velocityY;
+        scheduleFrame();
     }
 
-    synchronized float getCurrentScale() {
+    void stopFling() {
+        // Delivered immediately so a new touch catches the fling before its next frame
+        flingPending = false;
+        ListenerArrays.dispatch(panListeners, flingStoppedDelivery);
+    }
+
+    float getCurrentScale() {
         return currentScale;
     }
+
+    /**
+     * Flushes everything accumulated since the previous frame: pan recorded before the scale
+     * change, the latest scale, pan recorded after it, then any fling released at the end.
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+
+        if (panBeforeScaleX != 0 || panBeforeScaleY != 0) {
+            dispatchPan(panBeforeScaleX, panBeforeScaleY);
+            panBeforeScaleX = 0f;
+            panBeforeScaleY = 0f;
+        }
+
+        if (scalePending) {
+            scalePending = false;
+            ListenerArrays.dispatch(zoomListeners, scaleDelivery);
+        }
+
+        if (panAfterScaleX != 0 || panAfterScaleY != 0) {
+            dispatchPan(panAfterScaleX, panAfterScaleY);
+            panAfterScaleX = 0f;
+            panAfterScaleY = 0f;
+        }
+
+        if (flingPending) {
+            flingPending = false;
+            ListenerArrays.dispatch(panListeners, flingDelivery);
+        }
+    }
+
+    private void dispatchPan(float dx, float dy) {
+        dispatchPanX = dx;
+        dispatchPanY = dy;
+        ListenerArrays.dispatch(panListeners, panDelivery);
+    }
+
+    private void scheduleFrame() {
+        if (frameScheduled) {
+            return;
+        }
+        frameScheduled = true;
+        frameScheduler.postFrameCallback(this);
+    }
 }
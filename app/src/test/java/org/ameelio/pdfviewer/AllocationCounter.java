@@ -0,0 +1,43 @@
+package org.ameelio.pdfviewer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the JVM's per-thread allocation counter so tests can assert that a code path stops
+ * allocating once warmed up.
+ */
+final class AllocationCounter {
+
+    private AllocationCounter() {
+    }
+
+    static boolean isSupported() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled();
+    }
+
+    static long currentThreadAllocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Runs the action {@code iterations} times after {@code warmup} untimed runs and returns the
+     * average number of bytes allocated per iteration on the calling thread.
+     */
+    static double bytesPerIteration(int warmup, int iterations, Runnable action) {
+        for (int i = 0; i < warmup; i++) {
+            action.run();
+        }
+        long before = currentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            action.run();
+        }
+        long after = currentThreadAllocatedBytes();
+        return (after - before) / (double) iterations;
+    }
+}
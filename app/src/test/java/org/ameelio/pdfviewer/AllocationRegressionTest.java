@@ -0,0 +1,193 @@
+package org.ameelio.pdfviewer;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.SparseArray;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.lang.reflect.Field;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Guards the per-event paths (touch, scale, pan, frame dispatch and page binding) against
+ * allocating in steady state. A formatted log line or a boxed page index per event is enough to
+ * push the per-event average over the budget.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class AllocationRegressionTest {
+
+    // Tolerates one-off JIT/bookkeeping noise across the run, not a per-event allocation
+    private static final double MAX_BYTES_PER_EVENT = 8.0;
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int MEASURED_ITERATIONS = 2000;
+
+    @Before
+    public void requireAllocationCounter() {
+        assumeTrue("Per-thread allocation counting is not available on this JVM",
+                AllocationCounter.isSupported());
+    }
+
+    @Test
+    public void gestureSequenceDoesNotAllocate() {
+        Context context = RuntimeEnvironment.getApplication();
+        final ManualFrameScheduler frames = new ManualFrameScheduler();
+        final ZoomCoordinator coordinator = new ZoomCoordinator(frames);
+        ScrollingView target = new ScrollingView(context);
+        target.layout(0, 0, 400, 800);
+        DocumentZoomController controller = new DocumentZoomController(target, coordinator);
+        final DocumentGestureHandler handler = new DocumentGestureHandler(context, coordinator);
+
+        final MotionEvent[] gesture = scriptedGesture();
+        final int eventCount = gesture.length;
+
+        double bytesPerIteration = AllocationCounter.bytesPerIteration(
+                WARMUP_ITERATIONS, MEASURED_ITERATIONS, new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < eventCount; i++) {
+                            handler.handleTouch(gesture[i]);
+                            frames.runFrame();
+                        }
+                    }
+                });
+
+        double bytesPerEvent = bytesPerIteration / eventCount;
+        assertTrue("Gesture path allocated " + bytesPerEvent + " bytes per event",
+                bytesPerEvent <= MAX_BYTES_PER_EVENT);
+        assertTrue("Sequence should have zoomed the document", coordinator.getCurrentScale() > 1f);
+
+        controller.detach();
+        for (MotionEvent event : gesture) {
+            event.recycle();
+        }
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void bindingCachedPagesDoesNotAllocate() throws Exception {
+        Uri pdfUri = TestPdfs.register(TestPdfs.createPdfFile(1));
+        PdfViewerActivity activity = Robolectric.buildActivity(PdfViewerActivity.class,
+                        new Intent(Intent.ACTION_VIEW, pdfUri))
+                .create()
+                .resume()
+                .get();
+        TestPdfs.awaitOpen(activity);
+
+        final RecyclerView recyclerView = activity.findViewById(R.id.pdfRecyclerView);
+        final RecyclerView.Adapter adapter = recyclerView.getAdapter();
+        assertNotNull("Adapter should be attached once the PDF is open", adapter);
+
+        // Three cached, same-sized pages cycled through three holders, as when scrolling back and forth
+        SparseArray<Bitmap> cache = getBitmapCache(activity);
+        cache.clear();
+        final int pages = 3;
+        for (int i = 0; i < pages; i++) {
+            cache.put(i, Bitmap.createBitmap(100, 140, Bitmap.Config.ARGB_8888));
+        }
+        final RecyclerView.ViewHolder[] holders = new RecyclerView.ViewHolder[pages];
+        for (int i = 0; i < pages; i++) {
+            holders[i] = adapter.onCreateViewHolder(recyclerView, 0);
+        }
+
+        final int[] step = new int[1];
+        double bytesPerIteration = AllocationCounter.bytesPerIteration(
+                WARMUP_ITERATIONS, MEASURED_ITERATIONS, new Runnable() {
+                    @Override
+                    public void run() {
+                        int offset = step[0]++;
+                        for (int i = 0; i < pages; i++) {
+                            adapter.onBindViewHolder(holders[i], (i + offset) % pages);
+                        }
+                    }
+                });
+
+        double bytesPerBind = bytesPerIteration / pages;
+        assertTrue("Bind path allocated " + bytesPerBind + " bytes per bind",
+                bytesPerBind <= MAX_BYTES_PER_EVENT);
+
+        activity.onDestroy();
+    }
+
+    /**
+     * Pan, pinch out, pan again and lift slowly (so no fling is started).
+     */
+    private MotionEvent[] scriptedGesture() {
+        long t = SystemClock.uptimeMillis();
+        int pointer1Down = MotionEvent.ACTION_POINTER_DOWN | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+        int pointer1Up = MotionEvent.ACTION_POINTER_UP | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+        return new MotionEvent[]{
+                event(t, t, MotionEvent.ACTION_DOWN, new float[][]{{200f, 400f}}),
+                event(t, t + 10, pointer1Down, new float[][]{{200f, 400f}, {300f, 600f}}),
+                event(t, t + 20, MotionEvent.ACTION_MOVE, new float[][]{{150f, 300f}, {350f, 700f}}),
+                event(t, t + 30, MotionEvent.ACTION_MOVE, new float[][]{{100f, 200f}, {400f, 800f}}),
+                event(t, t + 40, pointer1Up, new float[][]{{100f, 200f}, {400f, 800f}}),
+                event(t, t + 50, MotionEvent.ACTION_MOVE, new float[][]{{100f, 200f}}),
+                event(t, t + 60, MotionEvent.ACTION_MOVE, new float[][]{{110f, 150f}}),
+                event(t, t + 70, MotionEvent.ACTION_MOVE, new float[][]{{120f, 100f}}),
+                event(t, t + 80, MotionEvent.ACTION_MOVE, new float[][]{{130f, 50f}}),
+                event(t, t + 600, MotionEvent.ACTION_UP, new float[][]{{130f, 50f}}),
+        };
+    }
+
+    private MotionEvent event(long downTime, long eventTime, int action, float[][] positions) {
+        int pointerCount = positions.length;
+        MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[pointerCount];
+        MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[pointerCount];
+        for (int i = 0; i < pointerCount; i++) {
+            MotionEvent.PointerProperties prop = new MotionEvent.PointerProperties();
+            prop.id = i;
+            prop.toolType = MotionEvent.TOOL_TYPE_FINGER;
+            properties[i] = prop;
+
+            MotionEvent.PointerCoords coord = new MotionEvent.PointerCoords();
+            coord.x = positions[i][0];
+            coord.y = positions[i][1];
+            coord.pressure = 1f;
+            coord.size = 1f;
+            coords[i] = coord;
+        }
+        return MotionEvent.obtain(downTime, eventTime, action, pointerCount, properties, coords,
+                0, 0, 1f, 1f, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private SparseArray<Bitmap> getBitmapCache(PdfViewerActivity activity) throws Exception {
+        Field bitmapCacheField = PdfViewerActivity.class.getDeclaredField("bitmapCache");
+        bitmapCacheField.setAccessible(true);
+        return (SparseArray<Bitmap>) bitmapCacheField.get(activity);
+    }
+
+    private static class ScrollingView extends View {
+        ScrollingView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public boolean canScrollVertically(int direction) {
+            return true;
+        }
+
+        @Override
+        public void scrollBy(int x, int y) {
+            // Absorb overflow without moving, like a long document in mid-scroll
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.ameelio.pdfviewer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class BindToPixelsTrackerTest {
+
+    @Test
+    public void recordsOnceThePixelsAreDrawn() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        BindToPixelsTracker tracker = new BindToPixelsTracker(histogram);
+
+        tracker.onPageBound(3);
+        tracker.onDraw();
+        assertEquals("Nothing to record before the page has pixels", 0, histogram.getCount());
+
+        tracker.onPixelsSet(3);
+        tracker.onDraw();
+        tracker.onDraw();
+        assertEquals(1, histogram.getCount());
+    }
+
+    @Test
+    public void recycledPagesAreNotRecorded() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        BindToPixelsTracker tracker = new BindToPixelsTracker(histogram);
+
+        tracker.onPageBound(1);
+        tracker.onPageRecycled(1);
+        tracker.onPixelsSet(1);
+        tracker.onDraw();
+
+        assertEquals(0, histogram.getCount());
+    }
+}
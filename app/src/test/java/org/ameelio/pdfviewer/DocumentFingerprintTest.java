@@ -0,0 +1,85 @@
+package org.ameelio.pdfviewer;
+
+import android.os.ParcelFileDescriptor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DocumentFingerprintTest {
+
+    @Test
+    public void sameContentInDifferentFilesMatches() throws Exception {
+        byte[] content = content(3 * DocumentFingerprint.BLOCK_SIZE, (byte) 1);
+
+        assertEquals(fingerprint(content), fingerprint(content));
+        assertEquals(fingerprint(content).hashCode(), fingerprint(content).hashCode());
+    }
+
+    @Test
+    public void changesInFirstOrLastBlockDiffer() throws Exception {
+        byte[] content = content(3 * DocumentFingerprint.BLOCK_SIZE, (byte) 1);
+        byte[] changedStart = content.clone();
+        changedStart[10] = 2;
+        byte[] changedEnd = content.clone();
+        changedEnd[content.length - 10] = 2;
+
+        DocumentFingerprint original = fingerprint(content);
+        assertNotEquals(original, fingerprint(changedStart));
+        assertNotEquals(original, fingerprint(changedEnd));
+    }
+
+    @Test
+    public void sizeIsPartOfTheFingerprint() throws Exception {
+        DocumentFingerprint small = fingerprint(content(100, (byte) 1));
+        DocumentFingerprint larger = fingerprint(content(101, (byte) 1));
+
+        assertEquals(100L, small.getSize());
+        assertNotEquals(small, larger);
+    }
+
+    @Test
+    public void fingerprintingLeavesTheReadOffsetAlone() throws Exception {
+        File file = writeFile(content(2 * DocumentFingerprint.BLOCK_SIZE, (byte) 7));
+        try (ParcelFileDescriptor descriptor =
+                     ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY)) {
+            assertNotNull(DocumentFingerprint.of(descriptor));
+            // Not closed: the stream does not own the descriptor
+            assertEquals(0L, new FileInputStream(descriptor.getFileDescriptor()).getChannel().position());
+        }
+    }
+
+    private DocumentFingerprint fingerprint(byte[] content) throws IOException {
+        File file = writeFile(content);
+        try (ParcelFileDescriptor descriptor =
+                     ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY)) {
+            return DocumentFingerprint.of(descriptor);
+        }
+    }
+
+    private static byte[] content(int size, byte fill) {
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, fill);
+        return bytes;
+    }
+
+    private static File writeFile(byte[] content) throws IOException {
+        File file = File.createTempFile("fingerprint", ".bin", RuntimeEnvironment.getApplication().getCacheDir());
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+}
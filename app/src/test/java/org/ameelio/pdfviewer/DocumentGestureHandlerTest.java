@@ -0,0 +1,199 @@
+package org.ameelio.pdfviewer;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DocumentGestureHandlerTest {
+
+    private ManualFrameScheduler frames;
+    private ZoomCoordinator coordinator;
+    private DocumentGestureHandler handler;
+    private PanRecorder panRecorder;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.getApplication();
+        frames = new ManualFrameScheduler();
+        coordinator = new ZoomCoordinator(frames);
+        handler = new DocumentGestureHandler(context, coordinator);
+        panRecorder = new PanRecorder();
+        coordinator.registerPanListener(panRecorder);
+    }
+
+    @Test
+    public void pinchGestureIsClaimedAsSoonAsSecondPointerLands() {
+        long downTime = SystemClock.uptimeMillis();
+        MotionEvent down = obtainMotionEvent(downTime, downTime, MotionEvent.ACTION_DOWN,
+                new float[][]{{50f, 50f}});
+        assertFalse("A single finger down should be left to the RecyclerView", handler.handleTouch(down));
+
+        MotionEvent pointerDown = obtainMotionEvent(
+                downTime,
+                downTime + 10,
+                MotionEvent.ACTION_POINTER_DOWN | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT),
+                new float[][]{{50f, 50f}, {150f, 150f}});
+        assertTrue("Multi-touch pointer down should be claimed", handler.handleTouch(pointerDown));
+
+        MotionEvent pointerUp = obtainMotionEvent(
+                downTime,
+                downTime + 20,
+                MotionEvent.ACTION_POINTER_UP | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT),
+                new float[][]{{50f, 50f}, {150f, 150f}});
+        handler.handleTouch(pointerUp);
+
+        MotionEvent up = obtainMotionEvent(downTime, downTime + 30, MotionEvent.ACTION_UP,
+                new float[][]{{50f, 50f}});
+        assertFalse("Lifting the last finger should release the gesture", handler.handleTouch(up));
+
+        down.recycle();
+        pointerDown.recycle();
+        pointerUp.recycle();
+        up.recycle();
+    }
+
+    @Test
+    public void pinchSpreadIncreasesDocumentScale() {
+        long downTime = SystemClock.uptimeMillis();
+        MotionEvent down = obtainMotionEvent(downTime, downTime, MotionEvent.ACTION_DOWN,
+                new float[][]{{100f, 100f}});
+        MotionEvent pointerDown = obtainMotionEvent(downTime, downTime + 10,
+                MotionEvent.ACTION_POINTER_DOWN | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT),
+                new float[][]{{100f, 100f}, {300f, 500f}});
+        MotionEvent spread = obtainMotionEvent(downTime, downTime + 20, MotionEvent.ACTION_MOVE,
+                new float[][]{{50f, 50f}, {400f, 700f}});
+
+        handler.handleTouch(down);
+        handler.handleTouch(pointerDown);
+        handler.handleTouch(spread);
+
+        assertTrue("Spreading two fingers should zoom in", coordinator.getCurrentScale() > 1f);
+
+        down.recycle();
+        pointerDown.recycle();
+        spread.recycle();
+    }
+
+    @Test
+    public void singleFingerDragAtDefaultScaleIsLeftToRecyclerView() {
+        long downTime = SystemClock.uptimeMillis();
+        MotionEvent down = obtainMotionEvent(downTime, downTime, MotionEvent.ACTION_DOWN,
+                new float[][]{{100f, 300f}});
+        MotionEvent move = obtainMotionEvent(downTime, downTime + 10, MotionEvent.ACTION_MOVE,
+                new float[][]{{100f, 100f}});
+
+        assertFalse(handler.handleTouch(down));
+        assertFalse("Unzoomed drags should scroll the list natively", handler.handleTouch(move));
+        frames.runFrame();
+        assertEquals(0f, panRecorder.totalDy, 0.0001f);
+
+        down.recycle();
+        move.recycle();
+    }
+
+    @Test
+    public void zoomedDragPastTouchSlopIsClaimedAndPans() {
+        coordinator.propagateScale(2f, Float.NaN, Float.NaN);
+        frames.runFrame();
+
+        long downTime = SystemClock.uptimeMillis();
+        MotionEvent down = obtainMotionEvent(downTime, downTime, MotionEvent.ACTION_DOWN,
+                new float[][]{{100f, 300f}});
+        MotionEvent move = obtainMotionEvent(downTime, downTime + 10, MotionEvent.ACTION_MOVE,
+                new float[][]{{100f, 200f}});
+        MotionEvent moveAgain = obtainMotionEvent(downTime, downTime + 20, MotionEvent.ACTION_MOVE,
+                new float[][]{{100f, 150f}});
+
+        assertFalse(handler.handleTouch(down));
+        assertTrue("Zoomed drags beyond the touch slop should be claimed", handler.handleTouch(move));
+        handler.handleTouch(moveAgain);
+        frames.runFrame();
+
+        assertEquals("Claimed drags should pan the document by the finger movement",
+                -150f, panRecorder.totalDy, 0.0001f);
+
+        down.recycle();
+        move.recycle();
+        moveAgain.recycle();
+    }
+
+    @Test
+    public void newTouchStopsRunningFling() {
+        long downTime = SystemClock.uptimeMillis();
+        MotionEvent down = obtainMotionEvent(downTime, downTime, MotionEvent.ACTION_DOWN,
+                new float[][]{{100f, 300f}});
+
+        handler.handleTouch(down);
+
+        assertEquals("Touch down should stop any fling", 1, panRecorder.flingStops);
+        down.recycle();
+    }
+
+    private MotionEvent obtainMotionEvent(long downTime, long eventTime, int action, float[][] positions) {
+        int pointerCount = positions.length;
+        MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[pointerCount];
+        MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[pointerCount];
+        for (int i = 0; i < pointerCount; i++) {
+            MotionEvent.PointerProperties prop = new MotionEvent.PointerProperties();
+            prop.id = i;
+            prop.toolType = MotionEvent.TOOL_TYPE_FINGER;
+            properties[i] = prop;
+
+            MotionEvent.PointerCoords coord = new MotionEvent.PointerCoords();
+            coord.x = positions[i][0];
+            coord.y = positions[i][1];
+            coord.pressure = 1f;
+            coord.size = 1f;
+            coords[i] = coord;
+        }
+
+        return MotionEvent.obtain(
+                downTime,
+                eventTime,
+                action,
+                pointerCount,
+                properties,
+                coords,
+                0,
+                0,
+                1f,
+                1f,
+                0,
+                0,
+                InputDevice.SOURCE_TOUCHSCREEN,
+                0);
+    }
+
+    private static class PanRecorder implements ZoomCoordinator.PanListener {
+        float totalDx;
+        float totalDy;
+        int flingStops;
+
+        @Override
+        public void onGlobalPanChanged(float dx, float dy) {
+            totalDx += dx;
+            totalDy += dy;
+        }
+
+        @Override
+        public void onGlobalFling(float velocityX, float velocityY) {
+        }
+
+        @Override
+        public void onGlobalFlingStopped() {
+            flingStops++;
+        }
+    }
+}
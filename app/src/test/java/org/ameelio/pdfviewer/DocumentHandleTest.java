@@ -0,0 +1,103 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.graphics.pdf.PdfRenderer;
+import android.os.ParcelFileDescriptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DocumentHandleTest {
+
+    @Test
+    public void closingWaitsForInFlightRenders() throws Exception {
+        ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(
+                TestPdfs.createPdfFile(2), ParcelFileDescriptor.MODE_READ_ONLY);
+        DocumentHandle document = TestPdfs.openDocument(descriptor);
+
+        assertTrue(document.acquire());
+        document.close();
+
+        assertTrue(document.isClosed());
+        assertTrue("Renderer stays open while a render holds it", descriptor.getFileDescriptor().valid());
+        assertEquals(2, document.getPageSource().getPageCount());
+
+        document.release();
+        assertFalse("Last release tears the document down", descriptor.getFileDescriptor().valid());
+    }
+
+    @Test
+    public void closedHandleRefusesNewRenders() throws Exception {
+        DocumentHandle document = TestPdfs.openDocument(TestPdfs.createPdfFile(1));
+        document.close();
+
+        assertFalse(document.acquire());
+        // Closing twice must not drop a reference it does not own
+        document.close();
+    }
+
+    @Test
+    public void teardownRunsOnTheGivenExecutor() throws Exception {
+        final List<Runnable> queued = new ArrayList<>();
+        Executor deferred = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        };
+        ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(
+                TestPdfs.createPdfFile(1), ParcelFileDescriptor.MODE_READ_ONLY);
+        int liveBefore = DocumentHandle.getLiveCount();
+        DocumentHandle document = new DocumentHandle(
+                new PdfRenderer(descriptor), descriptor, deferred);
+        assertEquals(liveBefore + 1, DocumentHandle.getLiveCount());
+
+        document.close();
+        assertEquals("Closing only schedules the teardown", 1, queued.size());
+        assertTrue(descriptor.getFileDescriptor().valid());
+
+        queued.get(0).run();
+        assertFalse(descriptor.getFileDescriptor().valid());
+        assertEquals(liveBefore, DocumentHandle.getLiveCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unbalancedReleaseFails() throws Exception {
+        DocumentHandle document = TestPdfs.openDocument(TestPdfs.createPdfFile(1));
+        document.close();
+        document.release();
+    }
+
+    @Test
+    public void rasterizerSkipsClosedDocuments() throws Exception {
+        DocumentHandle document = TestPdfs.openDocument(TestPdfs.createPdfFile(1));
+        assertNotNull(PageRasterizer.render(document, 0, 50, null, null));
+
+        document.close();
+        assertNull(PageRasterizer.render(document, 0, 50, null, null));
+    }
+
+    @Test
+    public void rendersFromAnyPageSourceAndClosesIt() {
+        FakePageSource source = new FakePageSource(3, 100, 200);
+        DocumentHandle document = new DocumentHandle(source, null, TestPdfs.DIRECT_EXECUTOR);
+
+        Bitmap page = PageRasterizer.render(document, 1, 50, null, null);
+
+        assertEquals(50, page.getWidth());
+        assertEquals(100, page.getHeight());
+        assertEquals(1, source.getRenderCount(1));
+        document.close();
+        assertTrue("Teardown should close the source", source.isClosed());
+    }
+}
@@ -0,0 +1,167 @@
+package org.ameelio.pdfviewer;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DocumentOpenerTest {
+
+    private DocumentOpener opener;
+    private RecordingCallback callback;
+
+    @Before
+    public void setUp() {
+        opener = new DocumentOpener(RuntimeEnvironment.getApplication().getContentResolver(),
+                new DocumentStager(), null, TestPdfs.DIRECT_EXECUTOR, new Handler(Looper.getMainLooper()));
+        callback = new RecordingCallback();
+    }
+
+    @Test
+    public void backgroundOpenDeliversDocumentWithFirstPagePreview() throws Exception {
+        Uri uri = TestPdfs.register(TestPdfs.createPdfFile(3));
+
+        opener.openAsync(uri, 40, callback);
+        assertTrue(opener.isOpening());
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertFalse(opener.isOpening());
+        assertNotNull(callback.opened);
+        assertEquals(3, callback.opened.document.getPageCount());
+        assertNotNull(callback.opened.fingerprint);
+        assertEquals("Preview should be rendered at the requested width",
+                40, callback.opened.firstPagePreview.getWidth());
+        callback.opened.document.close();
+    }
+
+    @Test
+    public void noPreviewWhenNoneRequested() throws Exception {
+        Uri uri = TestPdfs.register(TestPdfs.createPdfFile(1));
+
+        opener.openAsync(uri, 0, callback);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertNotNull(callback.opened);
+        assertNull(callback.opened.firstPagePreview);
+        callback.opened.document.close();
+    }
+
+    @Test
+    public void cancelledOpenIsClosedInsteadOfDelivered() throws Exception {
+        Uri uri = TestPdfs.register(TestPdfs.createPdfFile(1));
+        int liveBefore = DocumentHandle.getLiveCount();
+
+        opener.openAsync(uri, 40, callback);
+        opener.cancel();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertNull(callback.opened);
+        assertNull(callback.error);
+        assertFalse(opener.isOpening());
+        // Teardown runs on the shared background thread
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (DocumentHandle.getLiveCount() != liveBefore && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals("Superseded document should be torn down", liveBefore, DocumentHandle.getLiveCount());
+    }
+
+    @Test
+    public void knownDocumentIsReportedWithoutOpeningIt() throws Exception {
+        File pdfFile = TestPdfs.createPdfFile(2);
+        opener.openAsync(TestPdfs.register(pdfFile), 0, callback);
+        shadowOf(Looper.getMainLooper()).idle();
+        DocumentFingerprint fingerprint = callback.opened.fingerprint;
+        callback.opened.document.close();
+        callback.opened = null;
+        int liveBefore = DocumentHandle.getLiveCount();
+
+        // Same bytes behind another URI
+        Uri again = TestPdfs.register(pdfFile);
+        opener.openAsync(again, 40, Collections.singleton(fingerprint), callback);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertFalse(opener.isOpening());
+        assertNull("Nothing should be opened for a known document", callback.opened);
+        assertEquals(again, callback.knownUri);
+        assertEquals(fingerprint, callback.knownFingerprint);
+        assertTrue(DocumentHandle.getLiveCount() <= liveBefore);
+    }
+
+    @Test
+    public void knownDocumentIsRecognizedBeforeStaging() throws Exception {
+        File pdfFile = TestPdfs.createPdfFile(1);
+        opener.openAsync(TestPdfs.register(pdfFile), 0, callback);
+        shadowOf(Looper.getMainLooper()).idle();
+        DocumentFingerprint fingerprint = callback.opened.fingerprint;
+        callback.opened.document.close();
+
+        final int[] probes = new int[1];
+        DocumentOpener probingOpener = new DocumentOpener(
+                RuntimeEnvironment.getApplication().getContentResolver(),
+                new DocumentStager() {
+                    @Override
+                    boolean needsStaging(ParcelFileDescriptor source) {
+                        probes[0]++;
+                        return super.needsStaging(source);
+                    }
+                }, null, TestPdfs.DIRECT_EXECUTOR, new Handler(Looper.getMainLooper()));
+        probingOpener.openAsync(TestPdfs.register(pdfFile), 0, Collections.singleton(fingerprint), callback);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(fingerprint, callback.knownFingerprint);
+        assertEquals("A known document should not be probed or staged", 0, probes[0]);
+    }
+
+    @Test
+    public void missingDocumentReportsFailure() throws Exception {
+        // Registering any document installs the provider, which rejects unknown ids
+        TestPdfs.register(TestPdfs.createPdfFile(1));
+        Uri uri = Uri.parse("content://" + TestPdfs.AUTHORITY + "/documents/missing");
+
+        opener.openAsync(uri, 40, callback);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertNull(callback.opened);
+        assertTrue(callback.error instanceof FileNotFoundException);
+    }
+
+    private static class RecordingCallback implements DocumentOpener.Callback {
+        DocumentOpener.OpenedDocument opened;
+        Throwable error;
+        Uri knownUri;
+        DocumentFingerprint knownFingerprint;
+
+        @Override
+        public void onDocumentOpened(DocumentOpener.OpenedDocument opened) {
+            this.opened = opened;
+        }
+
+        @Override
+        public void onOpenFailed(Throwable error, long sizeBytes) {
+            this.error = error;
+        }
+
+        @Override
+        public void onKnownDocument(Uri uri, DocumentFingerprint fingerprint) {
+            knownUri = uri;
+            knownFingerprint = fingerprint;
+        }
+    }
+}
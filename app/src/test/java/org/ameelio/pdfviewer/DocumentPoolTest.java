@@ -0,0 +1,124 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.os.ParcelFileDescriptor;
+
+import java.io.File;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DocumentPoolTest {
+
+    @Test
+    public void closesLeastRecentlyParkedDocumentPastTheCountLimit() throws Exception {
+        DocumentPool pool = new DocumentPool(2, Long.MAX_VALUE);
+        DocumentPool.Entry first = entry(1);
+        DocumentPool.Entry second = entry(2);
+        DocumentPool.Entry third = entry(3);
+
+        pool.park(first);
+        pool.park(second);
+        pool.park(third);
+
+        assertEquals(2, pool.size());
+        assertTrue("Oldest document should be closed", first.document.isClosed());
+        assertNull(pool.take(first.fingerprint));
+        assertSame(third, pool.take(third.fingerprint));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void dropsOldestPagesFirstToStayUnderByteBudget() throws Exception {
+        long pageBytes = 100L * 100L * 4L;
+        DocumentPool pool = new DocumentPool(2, pageBytes * 3);
+        DocumentPool.Entry older = entry(1);
+        DocumentPool.Entry newer = entry(2);
+        addPages(older, 2);
+        addPages(newer, 2);
+
+        pool.park(older);
+        pool.park(newer);
+
+        assertTrue(pool.getPageBytes() <= pageBytes * 3);
+        assertEquals("Older document's pages should go first", 0, older.pages.size());
+        assertEquals(2, newer.pages.size());
+        assertFalse("Renderer stays open without its pages", older.document.isClosed());
+    }
+
+    @Test
+    public void loweringTheBudgetDropsPagesThatNoLongerFit() throws Exception {
+        long pageBytes = 100L * 100L * 4L;
+        DocumentPool pool = new DocumentPool(2, Long.MAX_VALUE);
+        DocumentPool.Entry entry = entry(1);
+        addPages(entry, 2);
+        pool.park(entry);
+
+        pool.setMaxBytes(pageBytes);
+
+        assertEquals(0, entry.pages.size());
+        assertEquals(pageBytes, pool.getMaxBytes());
+    }
+
+    @Test
+    public void stagedCopiesCountAgainstTheBudget() throws Exception {
+        long stagedBytes = 1024L * 1024L;
+        DocumentPool pool = new DocumentPool(2, stagedBytes + stagedBytes / 2);
+        DocumentPool.Entry older = entry(1);
+        DocumentPool.Entry newer = entry(2);
+        older.document.setStagedBytes(stagedBytes);
+        newer.document.setStagedBytes(stagedBytes);
+
+        pool.park(older);
+        assertEquals(stagedBytes, pool.getBytes());
+        pool.park(newer);
+
+        assertEquals("Only one staged copy fits", 1, pool.size());
+        assertTrue("The older copy is freed by closing its document", older.document.isClosed());
+        assertFalse(newer.document.isClosed());
+        assertEquals(stagedBytes, pool.getBytes());
+    }
+
+    @Test
+    public void clearClosesEverything() throws Exception {
+        DocumentPool pool = new DocumentPool(2, Long.MAX_VALUE);
+        DocumentPool.Entry entry = entry(1);
+        pool.park(entry);
+
+        pool.clear();
+
+        assertEquals(0, pool.size());
+        assertTrue(entry.document.isClosed());
+    }
+
+    @Test
+    public void documentsWithoutFingerprintAreClosedInsteadOfParked() throws Exception {
+        DocumentPool pool = new DocumentPool(2, Long.MAX_VALUE);
+        File pdf = TestPdfs.createPdfFile(1);
+        ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(pdf, ParcelFileDescriptor.MODE_READ_ONLY);
+
+        pool.park(new DocumentPool.Entry(null, TestPdfs.openDocument(descriptor)));
+
+        assertEquals(0, pool.size());
+        assertFalse(descriptor.getFileDescriptor().valid());
+    }
+
+    private static DocumentPool.Entry entry(int pageCount) throws Exception {
+        File pdf = TestPdfs.createPdfFile(pageCount);
+        ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(pdf, ParcelFileDescriptor.MODE_READ_ONLY);
+        DocumentFingerprint fingerprint = DocumentFingerprint.of(descriptor);
+        return new DocumentPool.Entry(fingerprint, TestPdfs.openDocument(descriptor));
+    }
+
+    private static void addPages(DocumentPool.Entry entry, int count) {
+        for (int i = 0; i < count; i++) {
+            entry.pages.put(i, Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888));
+        }
+    }
+}
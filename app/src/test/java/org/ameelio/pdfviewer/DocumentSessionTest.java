@@ -0,0 +1,88 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.os.ParcelFileDescriptor;
+
+import java.io.File;
+
+import org.ameelio.pdfviewer.core.PageGeometry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DocumentSessionTest {
+
+    @Test
+    public void replacingTheDocumentDropsEverythingDerivedFromIt() throws Exception {
+        DocumentSession session = new DocumentSession();
+        session.replaceDocument(TestPdfs.openDocument(TestPdfs.createPdfFile(2)), null);
+        session.getBitmapCache().put(0, Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888));
+        PageGeometry firstGeometry = session.getGeometry(16, 16);
+        session.savePosition(1, 0.5f, 2f);
+
+        DocumentHandle second = TestPdfs.openDocument(TestPdfs.createPdfFile(3));
+        session.replaceDocument(second, null);
+
+        assertSame(second, session.getDocument());
+        assertEquals(0, session.getBitmapCache().size());
+        assertFalse(session.hasSavedPosition());
+        assertNotSame("Geometry belongs to the previous document", firstGeometry, session.getGeometry(16, 16));
+        assertEquals(3, session.getGeometry(16, 16).getPageCount());
+    }
+
+    @Test
+    public void switchingBackResumesTheParkedDocument() throws Exception {
+        DocumentSession session = new DocumentSession();
+        File firstPdf = TestPdfs.createPdfFile(2);
+        ParcelFileDescriptor firstDescriptor =
+                ParcelFileDescriptor.open(firstPdf, ParcelFileDescriptor.MODE_READ_ONLY);
+        DocumentFingerprint firstFingerprint = DocumentFingerprint.of(firstDescriptor);
+        DocumentHandle first = TestPdfs.openDocument(firstDescriptor);
+        session.replaceDocument(first, firstFingerprint);
+        Bitmap page = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        session.getBitmapCache().put(1, page);
+        session.savePosition(1, 0.25f, 1.5f);
+
+        session.replaceDocument(TestPdfs.openDocument(TestPdfs.createPdfFile(3)), null);
+        assertEquals(1, session.getPool().size());
+        assertTrue(session.resumePooledDocument(firstFingerprint));
+
+        assertSame(first, session.getDocument());
+        assertFalse(first.isClosed());
+        assertTrue(session.isCurrentDocument(firstFingerprint));
+        assertSame(page, session.getBitmapCache().get(1));
+        assertTrue(session.hasSavedPosition());
+        assertEquals(1, session.getSavedPage());
+        assertEquals(1.5f, session.getSavedScale(), 0.0001f);
+        assertEquals("The unfingerprinted document is closed, not parked", 0, session.getPool().size());
+    }
+
+    @Test
+    public void clearingTheSessionClosesTheDocument() throws Exception {
+        DocumentSession session = new DocumentSession();
+        File pdf = TestPdfs.createPdfFile(1);
+        ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(pdf, ParcelFileDescriptor.MODE_READ_ONLY);
+        session.replaceDocument(TestPdfs.openDocument(descriptor), null);
+        session.getBitmapCache().put(0, Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888));
+
+        File otherPdf = TestPdfs.createPdfFile(2);
+        ParcelFileDescriptor otherDescriptor =
+                ParcelFileDescriptor.open(otherPdf, ParcelFileDescriptor.MODE_READ_ONLY);
+        session.replaceDocument(TestPdfs.openDocument(otherDescriptor),
+                DocumentFingerprint.of(otherDescriptor));
+        session.replaceDocument(TestPdfs.openDocument(TestPdfs.createPdfFile(3)), null);
+
+        session.onCleared();
+
+        assertFalse(session.hasDocument());
+        assertEquals("Parked documents are wiped too", 0, session.getPool().size());
+        assertFalse(otherDescriptor.getFileDescriptor().valid());
+        assertEquals(0, session.getBitmapCache().size());
+        assertFalse("Descriptor should be closed", descriptor.getFileDescriptor().valid());
+    }
+}
@@ -0,0 +1,103 @@
+package org.ameelio.pdfviewer;
+
+import android.os.ParcelFileDescriptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DocumentStagerTest {
+
+    @Test
+    public void stagedCopyMatchesTheSource() throws Exception {
+        byte[] content = content(3 * 1024 * 1024 + 123);
+        final long[] lastReport = new long[2];
+        DocumentStager stager = new DocumentStager();
+
+        try (ParcelFileDescriptor source = open(writeFile(content));
+             ParcelFileDescriptor staged = stager.stage(source, new DocumentStager.ProgressListener() {
+                 @Override
+                 public void onStagingProgress(long bytesCopied, long totalBytes, long elapsedNanos) {
+                     assertTrue("Progress should only move forward", bytesCopied >= lastReport[0]);
+                     lastReport[0] = bytesCopied;
+                     lastReport[1] = totalBytes;
+                 }
+             })) {
+            assertEquals(content.length, staged.getStatSize());
+            assertArrayEquals(content, readAll(staged));
+        }
+        assertEquals("Final report should cover the whole document", content.length, lastReport[0]);
+        assertEquals(content.length, lastReport[1]);
+    }
+
+    @Test
+    public void documentsOverTheCapAreRejected() throws Exception {
+        DocumentStager stager = new DocumentStager(1024);
+
+        try (ParcelFileDescriptor source = open(writeFile(content(4096)))) {
+            stager.stage(source, null);
+            fail("Staging past the size cap should fail");
+        } catch (DocumentStager.StagingException expected) {
+            assertTrue(expected.getMessage().contains("limit"));
+        }
+    }
+
+    @Test
+    public void localFilesAreRenderedInPlace() throws Exception {
+        try (ParcelFileDescriptor source = open(writeFile(content(8192)))) {
+            assertTrue(DocumentStager.isSeekable(source));
+            assertFalse(new DocumentStager().needsStaging(source));
+        }
+    }
+
+    @Test
+    public void throughputIsReportedInKiBPerSecond() {
+        assertEquals(1024L, DocumentStager.throughputKiBPerSecond(1024L * 1024L, 1_000_000_000L));
+        assertEquals(0L, DocumentStager.throughputKiBPerSecond(1024L, 0L));
+    }
+
+    private static byte[] content(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+
+    private static File writeFile(byte[] content) throws IOException {
+        File file = File.createTempFile("staging", ".pdf", RuntimeEnvironment.getApplication().getCacheDir());
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    private static ParcelFileDescriptor open(File file) throws IOException {
+        return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+    }
+
+    private static byte[] readAll(ParcelFileDescriptor descriptor) throws IOException {
+        // Not closed: the stream does not own the descriptor
+        FileInputStream input = new FileInputStream(descriptor.getFileDescriptor());
+        input.getChannel().position(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
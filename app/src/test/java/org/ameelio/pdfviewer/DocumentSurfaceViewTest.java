@@ -0,0 +1,135 @@
+package org.ameelio.pdfviewer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ameelio.pdfviewer.core.PageGeometry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DocumentSurfaceViewTest {
+
+    private ManualFrameScheduler frames;
+    private ZoomCoordinator coordinator;
+    private DocumentSurfaceView surface;
+    private RecordingProvider provider;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.getApplication();
+        frames = new ManualFrameScheduler();
+        coordinator = new ZoomCoordinator(frames);
+        surface = new DocumentSurfaceView(context);
+        surface.setZoomCoordinator(coordinator);
+        Shadows.shadowOf(surface).callOnAttachedToWindow();
+        surface.layout(0, 0, 200, 400);
+
+        PageGeometry geometry = new PageGeometry(10, 0, 0);
+        geometry.setPageSize(0, 100, 100);
+        provider = new RecordingProvider();
+        surface.setDocument(geometry, provider);
+    }
+
+    @Test
+    public void panScrollsTheViewportAndClampsAtTheEnds() {
+        coordinator.propagatePan(0f, -150f);
+        frames.runFrame();
+        assertEquals(150f, surface.getViewportTop(), 0.0001f);
+
+        coordinator.propagatePan(0f, 1000f);
+        frames.runFrame();
+        assertEquals("Viewport should not scroll above the first page", 0f, surface.getViewportTop(), 0.0001f);
+
+        coordinator.propagatePan(0f, -100_000f);
+        frames.runFrame();
+        assertEquals("Viewport should stop at the last page", 2000f - 400f, surface.getViewportTop(), 0.0001f);
+    }
+
+    @Test
+    public void zoomKeepsViewportCenteredAndAllowsHorizontalPan() {
+        coordinator.propagateScale(2f, Float.NaN, Float.NaN);
+        frames.runFrame();
+
+        assertEquals(2f, surface.getScale(), 0.0001f);
+        assertEquals("Zooming about the center should keep it fixed", 50f, surface.getViewportLeft(), 0.0001f);
+        assertEquals(100f, surface.getViewportTop(), 0.0001f);
+
+        coordinator.propagatePan(1000f, 0f);
+        frames.runFrame();
+        assertEquals(0f, surface.getViewportLeft(), 0.0001f);
+    }
+
+    @Test
+    public void centerOnPageRoundTripsThroughCenterPage() {
+        surface.centerOnPage(5, 0.5f);
+
+        assertEquals(1100f - 200f, surface.getViewportTop(), 0.0001f);
+        assertEquals(5, surface.getCenterPage());
+        assertEquals(0.5f, surface.getCenterPageOffset(), 0.0001f);
+    }
+
+    @Test
+    public void scrollingReportsVisiblePagesOutsideDraw() {
+        Shadows.shadowOf(Looper.getMainLooper()).idle();
+        provider.reported.clear();
+
+        coordinator.propagatePan(0f, -450f);
+        frames.runFrame();
+        coordinator.propagatePan(0f, -10f);
+        frames.runFrame();
+
+        assertEquals(2, surface.getFirstVisiblePage());
+        assertEquals(4, surface.getLastVisiblePage());
+        assertTrue("The range is posted, not delivered from the move", provider.reported.isEmpty());
+        Shadows.shadowOf(Looper.getMainLooper()).idle();
+        assertEquals("Both moves are reported once", 1, provider.reported.size());
+        assertArrayEquals(new int[] {2, 4}, provider.reported.get(0));
+    }
+
+    @Test
+    public void drawingOnlyLooksUpVisiblePages() {
+        coordinator.propagatePan(0f, -450f);
+        frames.runFrame();
+        Shadows.shadowOf(Looper.getMainLooper()).idle();
+        int reports = provider.reported.size();
+
+        Canvas canvas = new Canvas(Bitmap.createBitmap(200, 400, Bitmap.Config.ARGB_8888));
+        surface.draw(canvas);
+        Shadows.shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals("Only pages intersecting the viewport should be looked up", 3, provider.requested.size());
+        assertEquals(Integer.valueOf(2), provider.requested.get(0));
+        assertEquals(Integer.valueOf(4), provider.requested.get(2));
+        assertEquals("Drawing does not report visible pages", reports, provider.reported.size());
+    }
+
+    private static class RecordingProvider implements DocumentSurfaceView.PageBitmapProvider {
+        final List<Integer> requested = new ArrayList<>();
+        final List<int[]> reported = new ArrayList<>();
+
+        @Override
+        public Bitmap getPageBitmap(int pageIndex) {
+            requested.add(pageIndex);
+            return null;
+        }
+
+        @Override
+        public void onVisiblePagesChanged(int firstVisible, int lastVisible) {
+            reported.add(new int[] {firstVisible, lastVisible});
+        }
+    }
+}
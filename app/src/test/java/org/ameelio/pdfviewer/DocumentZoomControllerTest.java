@@ -0,0 +1,116 @@
+package org.ameelio.pdfviewer;
+
+import android.content.Context;
+import android.view.View;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DocumentZoomControllerTest {
+
+    private ScrollRecordingView target;
+    private ManualFrameScheduler frames;
+    private ZoomCoordinator coordinator;
+    private DocumentZoomController controller;
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.getApplication();
+        target = new ScrollRecordingView(context);
+        target.layout(0, 0, 200, 400);
+        frames = new ManualFrameScheduler();
+        coordinator = new ZoomCoordinator(frames);
+        controller = new DocumentZoomController(target, coordinator);
+    }
+
+    @Test
+    public void fractionalOverflowIsCarriedAcrossPanEvents() {
+        coordinator.propagateScale(2f, Float.NaN, Float.NaN);
+        // Push the translation to its lower clamp so every further delta overflows
+        coordinator.propagatePan(0f, -1000f);
+        frames.runFrame();
+        target.totalScrollY = 0;
+
+        for (int i = 0; i < 10; i++) {
+            coordinator.propagatePan(0f, -0.25f);
+            frames.runFrame();
+        }
+
+        assertEquals("Sub-pixel overflow should accumulate into whole-pixel scrolls",
+                2, target.totalScrollY);
+    }
+
+    @Test
+    public void flingKeepsPanningAcrossFramesUntilStopped() {
+        coordinator.propagateScale(2f, Float.NaN, Float.NaN);
+        coordinator.propagateFling(-3000f, -3000f);
+        frames.runFrame();
+        assertTrue("Fling should start when zoomed in", controller.isFlinging());
+
+        ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+        ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+        float translationAfterFrames = target.getTranslationX();
+        assertTrue("Fling should move the document horizontally", translationAfterFrames < 0f);
+
+        ShadowLooper.idleMainLooper(200, TimeUnit.MILLISECONDS);
+        assertTrue("Fling should hand vertical movement to list scrolling once clamped",
+                target.totalScrollY > 0);
+
+        coordinator.stopFling();
+        assertFalse("Stopping should end the fling", controller.isFlinging());
+        int scrollAtStop = target.totalScrollY;
+        ShadowLooper.idleMainLooper(200, TimeUnit.MILLISECONDS);
+        assertEquals("No scrolling should happen after the fling is stopped",
+                scrollAtStop, target.totalScrollY);
+    }
+
+    @Test
+    public void flingIsIgnoredAtDefaultScale() {
+        coordinator.propagateFling(0f, -3000f);
+        frames.runFrame();
+        assertFalse("Unzoomed documents scroll natively, without a translation fling",
+                controller.isFlinging());
+    }
+
+    @Test
+    public void zoomingOutCancelsFling() {
+        coordinator.propagateScale(2f, Float.NaN, Float.NaN);
+        coordinator.propagateFling(0f, -3000f);
+        frames.runFrame();
+        assertTrue(controller.isFlinging());
+        coordinator.propagateScale(1f, Float.NaN, Float.NaN);
+        frames.runFrame();
+
+        assertFalse("Resetting the zoom should cancel an active fling", controller.isFlinging());
+        assertEquals(0f, target.getTranslationY(), 0.0001f);
+    }
+
+    private static class ScrollRecordingView extends View {
+        int totalScrollY;
+
+        ScrollRecordingView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public boolean canScrollVertically(int direction) {
+            return true;
+        }
+
+        @Override
+        public void scrollBy(int x, int y) {
+            totalScrollY += y;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Matrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Page source for tests: pages of made-up sizes that render as a flat fill. Rendering takes no
+ * real time; each render instead adds a configurable simulated cost, which
+ * {@link ScrollSimulator} charges to whichever thread did the render. Like PdfRenderer it
+ * refuses a second open page and any use after close. Renders of chosen pages can be made to
+ * fail, e.g. with an OutOfMemoryError.
+ */
+class FakePageSource implements PageSource {
+
+    private final int[] widths;
+    private final int[] heights;
+    private final int[] rendersPerPage;
+    private final long[] pageRenderMillis;
+    private final Throwable[] renderFailures;
+    // Bitmaps handed to renders that then failed, so tests can check they were released
+    private final List<Bitmap> failedRenderTargets = new ArrayList<>();
+    private final FakePage page = new FakePage();
+    private long renderMillis = 0L;
+    private long renderMillisPerMegapixel = 0L;
+    private long totalRenderMillis = 0L;
+    private int renderCount = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a document whose pages all have the given size in points.
+     */
+    FakePageSource(int pageCount, int width, int height) {
+        widths = new int[pageCount];
+        heights = new int[pageCount];
+        rendersPerPage = new int[pageCount];
+        pageRenderMillis = new long[pageCount];
+        renderFailures = new Throwable[pageCount];
+        Arrays.fill(widths, width);
+        Arrays.fill(heights, height);
+    }
+
+    void setPageSize(int pageIndex, int width, int height) {
+        widths[pageIndex] = width;
+        heights[pageIndex] = height;
+    }
+
+    /**
+     * Sets the simulated cost of one render: a fixed part plus a part per megapixel of output.
+     */
+    void setRenderCost(long millis, long millisPerMegapixel) {
+        renderMillis = millis;
+        renderMillisPerMegapixel = millisPerMegapixel;
+    }
+
+    /**
+     * Adds a cost to every render of one page, e.g. for a page heavy with vector art.
+     */
+    void setPageRenderMillis(int pageIndex, long millis) {
+        pageRenderMillis[pageIndex] = millis;
+    }
+
+    /**
+     * Makes every render of one page throw the given exception instead of drawing.
+     */
+    void setRenderFailure(int pageIndex, RuntimeException failure) {
+        renderFailures[pageIndex] = failure;
+    }
+
+    /**
+     * Makes every render of one page throw the given error, e.g. an OutOfMemoryError as for a
+     * page too large to rasterize.
+     */
+    void setRenderFailure(int pageIndex, Error failure) {
+        renderFailures[pageIndex] = failure;
+    }
+
+    /** The bitmaps of every render that failed, in order. */
+    List<Bitmap> getFailedRenderTargets() {
+        synchronized (failedRenderTargets) {
+            return new ArrayList<>(failedRenderTargets);
+        }
+    }
+
+    int getRenderCount() {
+        return renderCount;
+    }
+
+    int getRenderCount(int pageIndex) {
+        return rendersPerPage[pageIndex];
+    }
+
+    /** Sum of the simulated cost of every render so far. */
+    long getTotalRenderMillis() {
+        return totalRenderMillis;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int getPageCount() {
+        return widths.length;
+    }
+
+    @Override
+    public Page openPage(int pageIndex) {
+        if (closed) {
+            throw new IllegalStateException("Page source is closed");
+        }
+        if (page.index >= 0) {
+            throw new IllegalStateException("Page " + page.index + " is still open");
+        }
+        if (pageIndex < 0 || pageIndex >= widths.length) {
+            throw new IllegalArgumentException("Invalid page index " + pageIndex);
+        }
+        page.index = pageIndex;
+        return page;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            throw new IllegalStateException("Page source closed twice");
+        }
+        closed = true;
+    }
+
+    private class FakePage implements Page {
+
+        int index = -1;
+
+        @Override
+        public int getWidth() {
+            return widths[index];
+        }
+
+        @Override
+        public int getHeight() {
+            return heights[index];
+        }
+
+        @Override
+        public void render(Bitmap destination, Matrix transform) {
+            Throwable failure = renderFailures[index];
+            if (failure != null) {
+                synchronized (failedRenderTargets) {
+                    failedRenderTargets.add(destination);
+                }
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                throw (RuntimeException) failure;
+            }
+            destination.eraseColor(Color.WHITE);
+            long pixels = (long) destination.getWidth() * destination.getHeight();
+            totalRenderMillis += renderMillis + pageRenderMillis[index]
+                    + renderMillisPerMegapixel * pixels / 1_000_000L;
+            renderCount++;
+            rendersPerPage[index]++;
+        }
+
+        @Override
+        public void close() {
+            index = -1;
+        }
+    }
+}
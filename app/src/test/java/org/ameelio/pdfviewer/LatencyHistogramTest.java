@@ -0,0 +1,62 @@
+package org.ameelio.pdfviewer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueWithBoundedError() {
+        long[] values = {0, 1, 31, 32, 33, 1_000, 999_999, 16_000_000, 3_000_000_000L, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(index >= 0 && index < LatencyHistogram.BUCKET_COUNT);
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            assertTrue("Upper bound of " + value + " was " + upper, upper >= value);
+            assertTrue("Bucket of " + value + " is too wide", upper - value <= value / 16 + 1);
+        }
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int i = 1; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long lowerOfNext = LatencyHistogram.bucketUpperBound(i - 1) + 1;
+            assertEquals(i, LatencyHistogram.bucketIndex(lowerOfNext));
+        }
+    }
+
+    @Test
+    public void percentilesTrackRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(ms * 1_000_000L);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1_000_000L, histogram.getMin());
+        assertEquals(100_000_000L, histogram.getMax());
+        assertEquals(50_500_000L, histogram.getMean());
+        assertWithin(50_000_000L, histogram.getValueAtPercentile(50));
+        assertWithin(99_000_000L, histogram.getValueAtPercentile(99));
+        assertEquals("Percentiles never exceed the maximum", 100_000_000L, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void resetClearsSamples() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5_000);
+        histogram.record(-1);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 16);
+    }
+}
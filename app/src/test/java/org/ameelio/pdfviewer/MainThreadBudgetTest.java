@@ -0,0 +1,193 @@
+package org.ameelio.pdfviewer;
+
+import android.content.Intent;
+import android.net.Uri;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.io.File;
+import java.util.Locale;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Opens and reads large synthetic documents with a {@link MainThreadStallDetector} timing every
+ * main-thread message, guarding against the ANR fixed in 1.1 where a 581-page PDF was opened on
+ * the UI thread. Launches, documents sent to a running viewer and the paged mode are covered.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class MainThreadBudgetTest {
+
+    // The page count of the document behind the 1.1 ANR
+    private static final int LARGE_PAGE_COUNT = 581;
+    // Far above a device frame, since Robolectric runs layout and drawing on a plain JVM, but
+    // well below the five seconds that make an ANR
+    private static final long SLICE_BUDGET_NANOS = 1_000_000_000L;
+
+    private MainThreadStallDetector detector;
+
+    @Before
+    public void setUp() throws Exception {
+        // Load and inflate everything once so class loading is not mistaken for a stall
+        ActivityController<PdfViewerActivity> warmUp = launch(TestPdfs.createPdfFile(3));
+        TestPdfs.awaitOpen(warmUp.get());
+        TestPdfs.awaitRenders(warmUp.get());
+        warmUp.pause().stop().destroy();
+
+        startTiming();
+    }
+
+    private void startTiming() {
+        detector = new MainThreadStallDetector(MainThreadStallDetector.DEFAULT_THRESHOLD_NANOS,
+                MainThreadStallDetector.SYSTEM_CLOCK, new MetricsRegistry());
+        MainThreadStallDetector.install(detector);
+    }
+
+    @After
+    public void tearDown() {
+        MainThreadStallDetector.uninstall();
+    }
+
+    @Test
+    public void openingALargeDocumentNeverBlocksTheMainThread() throws Exception {
+        File pdfFile = TestPdfs.createPdfFile(SyntheticPdf.largeMixedDocument(LARGE_PAGE_COUNT));
+
+        // On a device the launch arrives as one looper message
+        detector.messageStarted("launch");
+        ActivityController<PdfViewerActivity> controller = launch(pdfFile);
+        detector.messageFinished();
+        awaitOpenAndRendered(controller.get());
+
+        assertNothingOpenedOrRenderedOnTheMainThread();
+        assertSliceWithinBudget();
+        controller.pause().stop().destroy();
+    }
+
+    @Test
+    public void openingALargeDocumentFromANewIntentNeverBlocksTheMainThread() throws Exception {
+        ActivityController<PdfViewerActivity> controller = launch(TestPdfs.createPdfFile(3));
+        awaitOpenAndRendered(controller.get());
+        Uri largeUri = TestPdfs.register(TestPdfs.createPdfFile(SyntheticPdf.largeMixedDocument(LARGE_PAGE_COUNT)));
+
+        detector.messageStarted("newIntent");
+        controller.newIntent(new Intent(Intent.ACTION_VIEW, largeUri));
+        detector.messageFinished();
+        awaitOpenAndRendered(controller.get());
+
+        RecyclerView pages = controller.get().findViewById(R.id.pdfRecyclerView);
+        assertEquals("The new document should be shown", LARGE_PAGE_COUNT, pages.getAdapter().getItemCount());
+        assertNothingOpenedOrRenderedOnTheMainThread();
+        assertSliceWithinBudget();
+        controller.pause().stop().destroy();
+    }
+
+    @Test
+    public void pagingThroughALargeDocumentNeverRendersOnTheMainThread() throws Exception {
+        // The paged views have not been inflated and bound yet; do that before timing
+        ActivityController<PdfViewerActivity> warmUp = launchPaged(TestPdfs.createPdfFile(3));
+        TestPdfs.awaitOpen(warmUp.get());
+        TestPdfs.awaitRenders(warmUp.get());
+        warmUp.pause().stop().destroy();
+        startTiming();
+
+        detector.messageStarted("launch");
+        ActivityController<PdfViewerActivity> controller =
+                launchPaged(TestPdfs.createPdfFile(SyntheticPdf.largeMixedDocument(LARGE_PAGE_COUNT)));
+        detector.messageFinished();
+        awaitOpenAndRendered(controller.get());
+
+        RecyclerView pages = controller.get().findViewById(R.id.pagedRecyclerView);
+        for (int page : new int[] {1, 2, LARGE_PAGE_COUNT / 2, LARGE_PAGE_COUNT - 1}) {
+            pages.scrollToPosition(page);
+            awaitOpenAndRendered(controller.get());
+        }
+
+        assertNothingOpenedOrRenderedOnTheMainThread();
+        assertSliceWithinBudget();
+        controller.pause().stop().destroy();
+    }
+
+    @Test
+    public void readingALargeDocumentKeepsSlicesWithinBudget() throws Exception {
+        ScrollSimulator simulator =
+                ScrollSimulator.open(SyntheticPdf.largeMixedDocument(LARGE_PAGE_COUNT).toPageSource());
+        simulator.scroll(2400, 60)
+                .fling(12000)
+                .settle()
+                .zoomTo(2f)
+                .pan(-80f, -120f)
+                .zoomTo(1f)
+                .fling(-12000)
+                .settle();
+        ScrollSimulator.Report report = simulator.report();
+        simulator.close();
+
+        assertEquals("Pages must not render on the main thread: " + report, 0, report.mainThreadRenderMillis);
+        assertTrue("Binding should have run", detector.getLongestStageNanos(TraceSections.BIND_PAGE) > 0);
+        assertTrue("Binding a page took " + detector.getLongestStageNanos(TraceSections.BIND_PAGE) / 1e6 + " ms",
+                detector.getLongestStageNanos(TraceSections.BIND_PAGE) < SLICE_BUDGET_NANOS);
+        assertSliceWithinBudget();
+    }
+
+    private void assertNothingOpenedOrRenderedOnTheMainThread() {
+        assertEquals("The renderer must be opened off the main thread",
+                0L, detector.getLongestStageNanos(TraceSections.OPEN_RENDERER));
+        assertEquals("Pages must be rendered off the main thread",
+                0L, detector.getLongestStageNanos(TraceSections.RENDER_PAGE));
+    }
+
+    private void assertSliceWithinBudget() {
+        assertTrue(String.format(Locale.US, "Longest main-thread slice was %.1f ms in %s",
+                        detector.getLongestSliceNanos() / 1e6, detector.getLongestSliceStage()),
+                detector.getLongestSliceNanos() < SLICE_BUDGET_NANOS);
+    }
+
+    private static ActivityController<PdfViewerActivity> launch(File pdfFile) {
+        return launch(new Intent(Intent.ACTION_VIEW, TestPdfs.register(pdfFile)));
+    }
+
+    private static ActivityController<PdfViewerActivity> launchPaged(File pdfFile) {
+        Intent intent = new Intent(Intent.ACTION_VIEW, TestPdfs.register(pdfFile));
+        intent.putExtra(PdfViewerActivity.EXTRA_VIEW_MODE, PdfViewerActivity.VIEW_MODE_PAGED);
+        return launch(intent);
+    }
+
+    private static ActivityController<PdfViewerActivity> launch(Intent intent) {
+        return Robolectric.buildActivity(PdfViewerActivity.class, intent).create().resume().visible();
+    }
+
+    /**
+     * Like {@link TestPdfs#awaitOpen} and {@link TestPdfs#awaitRenders}, but runs the looper one
+     * timed message at a time.
+     */
+    private void awaitOpenAndRendered(PdfViewerActivity activity) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000;
+        // Pages are requested once the list lays out, a frame or two after the document arrives
+        int framesSinceOpen = -1;
+        while (true) {
+            MainThreadSlices.run(detector, ScrollSimulator.FRAME_MILLIS);
+            if (framesSinceOpen >= 0) {
+                framesSinceOpen++;
+            } else if (!activity.isOpeningDocument()) {
+                framesSinceOpen = 0;
+            }
+            if (framesSinceOpen >= 2 && activity.getPendingRenderCount() == 0) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Document did not open and render in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
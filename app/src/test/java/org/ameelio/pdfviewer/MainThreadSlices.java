@@ -0,0 +1,52 @@
+package org.ameelio.pdfviewer;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.time.Duration;
+
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Runs the paused main looper one message at a time, reporting each to a
+ * {@link MainThreadStallDetector} the way Looper's message logging does on a device. Robolectric
+ * dispatches messages without that logging, so tests drive the looper through here to measure
+ * main-thread slices.
+ */
+final class MainThreadSlices {
+
+    private MainThreadSlices() {
+    }
+
+    /**
+     * Runs every message due within the next {@code millis}, advancing the clock to the end of
+     * that window.
+     *
+     * @param detector receives each message, or null to run them untimed
+     */
+    static void run(MainThreadStallDetector detector, long millis) {
+        ShadowLooper looper = shadowOf(Looper.getMainLooper());
+        long end = SystemClock.uptimeMillis() + millis;
+        while (true) {
+            if (looper.isIdle()) {
+                Duration next = looper.getNextScheduledTaskTime();
+                if (next.isZero() || next.toMillis() > end) {
+                    break;
+                }
+            }
+            if (detector != null) {
+                detector.messageStarted("main looper message");
+            }
+            looper.runOneTask();
+            if (detector != null) {
+                detector.messageFinished();
+            }
+        }
+        long remaining = end - SystemClock.uptimeMillis();
+        if (remaining > 0) {
+            looper.idleFor(Duration.ofMillis(remaining));
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.ameelio.pdfviewer;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class MainThreadStallDetectorTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    private long now;
+    private MetricsRegistry metrics;
+    private MainThreadStallDetector detector;
+
+    private final MainThreadStallDetector.Clock clock = new MainThreadStallDetector.Clock() {
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        now = 0L;
+        metrics = new MetricsRegistry();
+        detector = new MainThreadStallDetector(100 * MILLIS, clock, metrics);
+    }
+
+    @After
+    public void tearDown() {
+        MainThreadStallDetector.uninstall();
+    }
+
+    @Test
+    public void blamesTheOutermostSectionThatTookLongest() {
+        detector.messageStarted(">>>>> Dispatching to Handler (android.os.Handler) {1} null: 0");
+        section(TraceSections.BIND_PAGE, 30);
+        section(TraceSections.OPEN_PDF, 150);
+        section(TraceSections.CLEANUP_DISTANT_PAGES, 20);
+        now += 5 * MILLIS;
+        detector.messageFinished();
+
+        assertEquals(1, detector.getStallCount());
+        MainThreadStallDetector.Stall stall = detector.getLastStall();
+        assertEquals(TraceSections.OPEN_PDF, stall.stage);
+        assertEquals(205 * MILLIS, stall.durationNanos);
+        assertTrue(stall.message.contains("android.os.Handler"));
+        assertEquals(205 * MILLIS, detector.getLongestSliceNanos());
+        assertEquals(TraceSections.OPEN_PDF, detector.getLongestSliceStage());
+        assertEquals(1L, metrics.counter(MetricsRegistry.MAIN_THREAD_STALLS).get());
+        assertEquals(1L, metrics.histogram(MetricsRegistry.MAIN_THREAD_SLICE).getCount());
+    }
+
+    @Test
+    public void nestedSectionsCountTowardsTheirOutermostOne() {
+        detector.messageStarted("message");
+        detector.sectionBegan(TraceSections.OPEN_PDF);
+        now += 10 * MILLIS;
+        section(TraceSections.OPEN_RENDERER, 120);
+        detector.sectionEnded();
+        detector.messageFinished();
+
+        assertEquals(TraceSections.OPEN_PDF, detector.getLastStall().stage);
+        assertEquals(130 * MILLIS, detector.getLongestStageNanos(TraceSections.OPEN_PDF));
+        assertEquals(0L, detector.getLongestStageNanos(TraceSections.OPEN_RENDERER));
+    }
+
+    @Test
+    public void shortMessagesAreSlicesButNotStalls() {
+        detector.messageStarted("message");
+        now += 99 * MILLIS;
+        detector.messageFinished();
+
+        assertEquals(0, detector.getStallCount());
+        assertNull(detector.getLastStall());
+        assertEquals(99 * MILLIS, detector.getLongestSliceNanos());
+        assertEquals(MainThreadStallDetector.UNKNOWN_STAGE, detector.getLongestSliceStage());
+        assertEquals(1L, metrics.histogram(MetricsRegistry.MAIN_THREAD_SLICE).getCount());
+    }
+
+    @Test
+    public void keepsTheLongestRunOfEachStage() {
+        for (long millis : new long[] {12, 40, 25}) {
+            detector.messageStarted("message");
+            section(TraceSections.BIND_PAGE, millis);
+            detector.messageFinished();
+        }
+
+        assertEquals(40 * MILLIS, detector.getLongestStageNanos(TraceSections.BIND_PAGE));
+        assertEquals(0, detector.getStallCount());
+    }
+
+    @Test
+    public void readsTheLooperLogLines() {
+        detector.println(">>>>> Dispatching to Handler (android.view.Choreographer$FrameHandler) {2} "
+                + "android.view.Choreographer$FrameDisplayEventReceiver@3: 0");
+        section(TraceSections.RENDER_PAGE, 300);
+        detector.println("<<<<< Finished to Handler (android.view.Choreographer$FrameHandler) {2} "
+                + "android.view.Choreographer$FrameDisplayEventReceiver@3");
+
+        assertEquals(1, detector.getStallCount());
+        assertEquals(TraceSections.RENDER_PAGE, detector.getLastStall().stage);
+        assertTrue(detector.getLastStall().message.contains("Choreographer$FrameHandler"));
+
+        // Anything else the looper might print is ignored
+        detector.println("unrelated");
+        assertEquals(1, detector.getStallCount());
+    }
+
+    @Test
+    public void sectionsOutsideAMessageAreNotBlamedOnTheNextOne() {
+        section(TraceSections.OPEN_PDF, 500);
+        detector.messageStarted("message");
+        now += 150 * MILLIS;
+        detector.messageFinished();
+
+        assertEquals(MainThreadStallDetector.UNKNOWN_STAGE, detector.getLastStall().stage);
+        assertEquals(500 * MILLIS, detector.getLongestStageNanos(TraceSections.OPEN_PDF));
+    }
+
+    @Test
+    public void traceSectionsReachTheInstalledDetectorFromTheMainThreadOnly() throws Exception {
+        MainThreadStallDetector.install(detector);
+        assertSame(detector, MainThreadStallDetector.getInstalled());
+
+        detector.messageStarted("message");
+        TraceSections.begin(TraceSections.CLEANUP_DISTANT_PAGES);
+        now += 120 * MILLIS;
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                TraceSections.begin(TraceSections.RENDER_PAGE);
+                now += 50 * MILLIS;
+                TraceSections.end();
+            }
+        });
+        worker.start();
+        worker.join();
+        TraceSections.end();
+        detector.messageFinished();
+
+        assertEquals(TraceSections.CLEANUP_DISTANT_PAGES, detector.getLastStall().stage);
+        assertEquals(0L, detector.getLongestStageNanos(TraceSections.RENDER_PAGE));
+
+        MainThreadStallDetector.uninstall();
+        assertNull(MainThreadStallDetector.getInstalled());
+        TraceSections.begin(TraceSections.BIND_PAGE);
+        TraceSections.end();
+        assertEquals(0L, detector.getLongestStageNanos(TraceSections.BIND_PAGE));
+    }
+
+    @Test
+    public void dumpListsStagesAndStalls() {
+        detector.messageStarted("slow message");
+        section(TraceSections.OPEN_PDF, 250);
+        detector.messageFinished();
+
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        detector.dump("  ", writer);
+        writer.flush();
+        String dump = out.toString();
+
+        assertTrue(dump, dump.contains("longest slice 250.0 ms (openPdf), 1 stalls over 100 ms"));
+        assertTrue(dump, dump.contains("openPdf: longest 250.0 ms"));
+        assertTrue(dump, dump.contains("stall 250.0 ms in openPdf: slow message"));
+    }
+
+    private void section(String name, long millis) {
+        detector.sectionBegan(name);
+        now += millis * MILLIS;
+        detector.sectionEnded();
+    }
+}
@@ -0,0 +1,43 @@
+package org.ameelio.pdfviewer;
+
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frame scheduler for tests: callbacks only run when {@link #runFrame()} is called.
+ */
+class ManualFrameScheduler implements ZoomCoordinator.FrameScheduler {
+
+    // Two lists swapped per frame so stepping frames allocates nothing (see AllocationRegressionTest)
+    private List<Choreographer.FrameCallback> pending = new ArrayList<>();
+    private List<Choreographer.FrameCallback> running = new ArrayList<>();
+    private long frameTimeNanos = 0L;
+    private int framesRun = 0;
+
+    @Override
+    public void postFrameCallback(Choreographer.FrameCallback callback) {
+        pending.add(callback);
+    }
+
+    void runFrame() {
+        frameTimeNanos += 16_666_667L;
+        List<Choreographer.FrameCallback> callbacks = pending;
+        pending = running;
+        running = callbacks;
+        for (int i = 0; i < callbacks.size(); i++) {
+            callbacks.get(i).doFrame(frameTimeNanos);
+        }
+        callbacks.clear();
+        framesRun++;
+    }
+
+    int pendingCallbackCount() {
+        return pending.size();
+    }
+
+    int getFramesRun() {
+        return framesRun;
+    }
+}
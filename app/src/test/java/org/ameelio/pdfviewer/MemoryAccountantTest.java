@@ -0,0 +1,93 @@
+package org.ameelio.pdfviewer;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class MemoryAccountantTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private ActivityManager activityManager;
+
+    @Before
+    public void setUp() {
+        activityManager = (ActivityManager) RuntimeEnvironment.getApplication()
+                .getSystemService(Context.ACTIVITY_SERVICE);
+        shadowOf(activityManager).setMemoryClass(64);
+    }
+
+    @Test
+    public void nativePixelsBudgetFollowsTheMemoryClass() {
+        MemoryAccountant accountant = new MemoryAccountant(activityManager, false);
+
+        assertEquals(16 * MB, accountant.getPageBudgetBytes());
+        assertEquals("Without system numbers only the budget applies",
+                12 * MB, accountant.bytesAvailableForPages(4 * MB));
+        assertEquals(0, accountant.bytesAvailableForPages(20 * MB));
+    }
+
+    @Test
+    public void systemMemoryLimitsWhatPagesMayTake() {
+        setSystemMemory(3 * MB, false);
+        MemoryAccountant accountant = new MemoryAccountant(activityManager, false);
+
+        assertEquals("Only memory above the low-memory threshold counts",
+                2 * MB, accountant.bytesAvailableForPages(0));
+    }
+
+    @Test
+    public void lowMemoryLeavesNothingForPages() {
+        setSystemMemory(512 * MB, true);
+        MemoryAccountant accountant = new MemoryAccountant(activityManager, false);
+
+        assertEquals(0, accountant.bytesAvailableForPages(0));
+    }
+
+    @Test
+    public void heapPixelsAreBoundedByTheJavaHeap() {
+        MemoryAccountant accountant = new MemoryAccountant(activityManager, true);
+
+        assertTrue(accountant.getPageBudgetBytes() <= Runtime.getRuntime().maxMemory() / 4);
+        Runtime runtime = Runtime.getRuntime();
+        long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        assertTrue(accountant.bytesAvailableForPages(0) <= freeHeap);
+    }
+
+    @Test
+    public void dumpShowsTheFigureCachesUse() {
+        setSystemMemory(512 * MB, false);
+        MemoryAccountant accountant = new MemoryAccountant(activityManager, false);
+
+        StringWriter out = new StringWriter();
+        accountant.dump("", new PrintWriter(out), 2 * MB);
+        String dump = out.toString();
+
+        assertTrue(dump, dump.contains("pages 2048 KB"));
+        assertTrue(dump, dump.contains("available for pages " + (14 * MB / 1024) + " KB"));
+        assertTrue(dump, dump.contains("system available 512 MB"));
+    }
+
+    private void setSystemMemory(long availableBytes, boolean lowMemory) {
+        ActivityManager.MemoryInfo info = new ActivityManager.MemoryInfo();
+        info.totalMem = 4096 * MB;
+        info.availMem = availableBytes;
+        info.threshold = MB;
+        info.lowMemory = lowMemory;
+        shadowOf(activityManager).setMemoryInfo(info);
+    }
+}
@@ -0,0 +1,40 @@
+package org.ameelio.pdfviewer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MemorySnapshotSamplerTest {
+
+    @Test
+    public void samplesOnceEveryInterval() {
+        MemorySnapshotSampler sampler = new MemorySnapshotSampler(4);
+
+        int samples = 0;
+        for (int i = 0; i < 20; i++) {
+            if (sampler.shouldSample()) {
+                samples++;
+            }
+        }
+
+        assertEquals(5, samples);
+    }
+
+    @Test
+    public void zeroIntervalDisablesSampling() {
+        MemorySnapshotSampler sampler = new MemorySnapshotSampler(4);
+        sampler.setInterval(0);
+
+        for (int i = 0; i < 10; i++) {
+            assertFalse(sampler.shouldSample());
+        }
+    }
+
+    @Test
+    public void intervalOfOneSamplesEveryCall() {
+        MemorySnapshotSampler sampler = new MemorySnapshotSampler(1);
+
+        assertTrue(sampler.shouldSample());
+        assertTrue(sampler.shouldSample());
+    }
+}
@@ -0,0 +1,56 @@
+package org.ameelio.pdfviewer;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void lookupsReturnTheSameMetric() {
+        MetricsRegistry registry = new MetricsRegistry();
+
+        assertSame(registry.histogram("a"), registry.histogram("a"));
+        assertSame(registry.counter("b"), registry.counter("b"));
+        assertSame(registry.gauge("c"), registry.gauge("c"));
+        assertNotSame(registry.counter("b"), registry.counter("d"));
+    }
+
+    @Test
+    public void dumpPrintsEveryMetric() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.histogram(MetricsRegistry.RENDER_LATENCY).record(2_000_000L);
+        registry.histogram(MetricsRegistry.OPEN_LATENCY);
+        registry.counter(MetricsRegistry.CACHE_HITS).add(3);
+        registry.gauge(MetricsRegistry.RENDER_QUEUE_DEPTH).set(7);
+
+        StringWriter out = new StringWriter();
+        registry.dump("  ", new PrintWriter(out));
+        String dump = out.toString();
+
+        assertTrue(dump, dump.contains("  Performance metrics:"));
+        assertTrue(dump, dump.contains("page.render: count=1 min=2.00ms"));
+        assertTrue(dump, dump.contains("document.open: no samples"));
+        assertTrue(dump, dump.contains("page_cache.hits: 3"));
+        assertTrue(dump, dump.contains("render.queue_depth: 7"));
+    }
+
+    @Test
+    public void resetKeepsMetricsUsable() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Counter counter = registry.counter("c");
+        LatencyHistogram histogram = registry.histogram("h");
+        counter.increment();
+        histogram.record(10);
+
+        registry.reset();
+        counter.increment();
+
+        assertEquals(1, counter.get());
+        assertEquals(0, histogram.getCount());
+        assertSame(counter, registry.counter("c"));
+    }
+}
@@ -0,0 +1,171 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class PageBitmapRingTest {
+
+    @Test
+    public void movingForwardReusesTheBufferOfTheDroppedPage() {
+        PageBitmapRing ring = new PageBitmapRing();
+        ring.setSize(50, 80);
+        for (int page = 0; page < 3; page++) {
+            ring.finishRender(page, ring.beginRender(page), true);
+        }
+        Bitmap firstPageBuffer = ring.getSlot(0);
+
+        Bitmap buffer = ring.beginRender(3);
+
+        assertSame("Page 3 should take over page 0's buffer", firstPageBuffer, buffer);
+        assertFalse(ring.holds(0));
+        assertFalse("Slot is not valid until rendering finishes", ring.holds(3));
+        assertTrue(ring.isRendering(3));
+        assertTrue(ring.finishRender(3, buffer, true));
+        assertFalse(ring.isRendering(3));
+        assertTrue(ring.holds(3));
+        assertTrue(ring.holds(1));
+        assertTrue(ring.holds(2));
+    }
+
+    @Test
+    public void neverAllocatesMoreThanThreeBuffers() {
+        PageBitmapRing ring = new PageBitmapRing();
+        ring.setSize(50, 80);
+        for (int page = 0; page < 20; page++) {
+            ring.finishRender(page, ring.beginRender(page), true);
+        }
+
+        long bufferBytes = 50L * 80L * 4L;
+        assertEquals(PageBitmapRing.SLOT_COUNT * bufferBytes, ring.getAllocatedBytes());
+    }
+
+    @Test
+    public void resizingReusesBuffersThatAreLargeEnough() {
+        PageBitmapRing ring = new PageBitmapRing();
+        assertNull("No buffer before the ring is sized", ring.getSlot(0));
+        ring.setSize(50, 80);
+        Bitmap buffer = ring.beginRender(0);
+        ring.finishRender(0, buffer, true);
+
+        assertFalse(ring.setSize(50, 80));
+        assertTrue(ring.holds(0));
+        assertTrue(ring.setSize(80, 50));
+
+        assertFalse(ring.holds(0));
+        assertSame("Same byte count: the buffer is reconfigured in place", buffer, ring.getSlot(0));
+        assertEquals(80, buffer.getWidth());
+        assertEquals(50L * 80L * 4L, ring.getAllocatedBytes());
+    }
+
+    @Test
+    public void growingRecyclesTheOldBuffer() {
+        PageBitmapRing ring = new PageBitmapRing();
+        ring.setSize(50, 80);
+        Bitmap small = ring.beginRender(0);
+        ring.finishRender(0, small, true);
+
+        ring.setSize(100, 160);
+        Bitmap large = ring.getSlot(0);
+
+        assertNotSame(small, large);
+        assertTrue("The outgrown buffer is freed, not left to the garbage collector", small.isRecycled());
+        assertEquals(100L * 160L * 4L, ring.getAllocatedBytes());
+    }
+
+    @Test
+    public void resizingWhileInFlightWaitsForTheBufferInsteadOfAllocating() {
+        PageBitmapRing ring = new PageBitmapRing();
+        ring.setSize(50, 80);
+        Bitmap rendering = ring.beginRender(0);
+
+        ring.setSize(80, 50);
+        assertNull("The slot is busy: nothing new is allocated", ring.beginRender(0));
+        assertSame(rendering, ring.getSlot(0));
+        assertFalse(ring.finishRender(0, rendering, true));
+        assertFalse("The worker drew at the old size", ring.holds(0));
+        assertEquals("The page is rendered again at the new size", 0, ring.takeWaitingRender(0));
+
+        Bitmap resized = ring.beginRender(0);
+        assertSame("The buffer is reconfigured once it is back", rendering, resized);
+        assertEquals(80, resized.getWidth());
+        assertTrue(ring.finishRender(0, resized, true));
+        assertTrue(ring.holds(0));
+    }
+
+    @Test
+    public void pagingFasterThanRendersFinishNeverAllocatesMoreThanThreeBuffers() {
+        PageBitmapRing ring = new PageBitmapRing();
+        ring.setSize(50, 80);
+        Set<Bitmap> buffers = new HashSet<>();
+        Bitmap[] rendering = new Bitmap[PageBitmapRing.SLOT_COUNT];
+        // Show page 1 with its neighbours, then page three times while no render comes back
+        for (int page = 0; page <= 4; page++) {
+            Bitmap buffer = ring.beginRender(page);
+            if (buffer != null) {
+                buffers.add(buffer);
+                rendering[page % PageBitmapRing.SLOT_COUNT] = buffer;
+            }
+        }
+
+        long bufferBytes = 50L * 80L * 4L;
+        assertEquals(PageBitmapRing.SLOT_COUNT, buffers.size());
+        assertEquals(PageBitmapRing.SLOT_COUNT * bufferBytes, ring.getAllocatedBytes());
+        assertTrue(ring.isRendering(3));
+        assertTrue(ring.isRendering(4));
+
+        // Page 0's render comes back and page 3 takes its buffer over
+        assertFalse("Page 0 is no longer wanted in that slot", ring.finishRender(0, rendering[0], true));
+        assertEquals(3, ring.takeWaitingRender(0));
+        assertEquals(-1, ring.takeWaitingRender(0));
+        Bitmap third = ring.beginRender(3);
+        assertSame(rendering[0], third);
+        assertTrue(ring.finishRender(3, third, true));
+        assertTrue(ring.holds(3));
+        assertEquals(PageBitmapRing.SLOT_COUNT * bufferBytes, ring.getAllocatedBytes());
+    }
+
+    @Test
+    public void clearRecyclesIdleBuffersAndLeavesRendersInFlight() {
+        PageBitmapRing ring = new PageBitmapRing();
+        ring.setSize(50, 80);
+        Bitmap idle = ring.beginRender(0);
+        ring.finishRender(0, idle, true);
+        Bitmap rendering = ring.beginRender(1);
+
+        ring.clear();
+
+        assertTrue(idle.isRecycled());
+        assertFalse(rendering.isRecycled());
+        assertEquals("The buffer in flight is still alive", 50L * 80L * 4L, ring.getAllocatedBytes());
+        assertNull("Nothing is allocated for the slot until the buffer is back", ring.beginRender(4));
+        assertFalse(ring.finishRender(1, rendering, true));
+        assertTrue(rendering.isRecycled());
+        assertFalse(ring.holds(1));
+        assertEquals(0L, ring.getAllocatedBytes());
+        assertEquals(4, ring.takeWaitingRender(1));
+    }
+
+    @Test
+    public void failedRendersLeaveTheSlotEmpty() {
+        PageBitmapRing ring = new PageBitmapRing();
+        ring.setSize(50, 80);
+        Bitmap buffer = ring.beginRender(2);
+
+        assertFalse(ring.finishRender(2, buffer, false));
+        assertFalse(ring.holds(2));
+        assertFalse(ring.isRendering(2));
+        assertFalse("The buffer stays in the ring for the next try", buffer.isRecycled());
+        assertSame(buffer, ring.beginRender(2));
+    }
+}
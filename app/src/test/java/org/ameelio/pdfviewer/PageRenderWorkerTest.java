@@ -0,0 +1,223 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class PageRenderWorkerTest {
+
+    @Test
+    public void deliversPagesWithTheRequestedWidth() throws Exception {
+        DocumentHandle document = TestPdfs.openDocument(TestPdfs.createPdfFile(2));
+        PageRenderWorker worker = new PageRenderWorker(TestPdfs.DIRECT_EXECUTOR, new Handler(Looper.getMainLooper()));
+        RecordingCallback callback = new RecordingCallback(document);
+
+        worker.submit(document, 1, 60, callback);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(1, callback.pageIndex);
+        assertEquals(60, callback.targetWidth);
+        assertEquals(60, callback.bitmap.getWidth());
+        document.close();
+    }
+
+    @Test
+    public void resultsForAReplacedDocumentAreRecycled() throws Exception {
+        DocumentHandle document = TestPdfs.openDocument(TestPdfs.createPdfFile(1));
+        PageRenderWorker worker = new PageRenderWorker(TestPdfs.DIRECT_EXECUTOR, new Handler(Looper.getMainLooper()));
+        RecordingCallback callback = new RecordingCallback(null);
+
+        worker.submit(document, 0, 60, callback);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertNull("Stale pages must not reach the UI", callback.bitmap);
+        document.close();
+    }
+
+    @Test
+    public void failedRendersAreReportedAndReleaseTheirBitmap() throws Exception {
+        FakePageSource source = new FakePageSource(2, 612, 792);
+        source.setRenderFailure(1, new OutOfMemoryError("Injected render failure"));
+        DocumentHandle document = new DocumentHandle(source, null, TestPdfs.DIRECT_EXECUTOR);
+        PageRenderWorker worker = new PageRenderWorker(TestPdfs.DIRECT_EXECUTOR, new Handler(Looper.getMainLooper()));
+        RecordingCallback callback = new RecordingCallback(document);
+
+        worker.submit(document, 1, 60, callback);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertNull(callback.bitmap);
+        assertEquals("The failure must reach the UI so the page can be asked for again", 1, callback.failedPageIndex);
+        assertEquals(1, source.getFailedRenderTargets().size());
+        assertTrue(source.getFailedRenderTargets().get(0).isRecycled());
+        document.close();
+        assertTrue(source.isClosed());
+    }
+
+    @Test
+    public void rendersIntoTheCallersBitmapAndHandsItBack() throws Exception {
+        FakePageSource source = new FakePageSource(2, 612, 792);
+        DocumentHandle document = new DocumentHandle(source, null, TestPdfs.DIRECT_EXECUTOR);
+        PageRenderWorker worker = new PageRenderWorker(TestPdfs.DIRECT_EXECUTOR, new Handler(Looper.getMainLooper()));
+        Bitmap target = Bitmap.createBitmap(50, 80, Bitmap.Config.ARGB_8888);
+        RecordingTargetCallback callback = new RecordingTargetCallback();
+
+        worker.submitInto(document, 1, target, callback);
+        assertNull("Results arrive on the main thread", callback.target);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertSame(target, callback.target);
+        assertEquals(1, callback.pageIndex);
+        assertTrue(callback.rendered);
+        assertEquals(1, source.getRenderCount(1));
+        document.close();
+    }
+
+    @Test
+    public void droppedRendersIntoTheCallersBitmapStillHandItBack() throws Exception {
+        FakePageSource source = new FakePageSource(2, 612, 792);
+        DocumentHandle document = new DocumentHandle(source, null, TestPdfs.DIRECT_EXECUTOR);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        // Never started, so every render stays queued
+                        return null;
+                    }
+                });
+        PageRenderWorker worker = new PageRenderWorker(executor, new Handler(Looper.getMainLooper()));
+        Bitmap target = Bitmap.createBitmap(50, 80, Bitmap.Config.ARGB_8888);
+        RecordingTargetCallback callback = new RecordingTargetCallback();
+        worker.submitInto(document, 0, target, callback);
+
+        worker.cancelQueued();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertSame(target, callback.target);
+        assertFalse(callback.rendered);
+        assertEquals(0, source.getRenderCount());
+        document.close();
+    }
+
+    @Test
+    public void cancelQueuedDropsRendersThatHaveNotStarted() throws Exception {
+        DocumentHandle document = TestPdfs.openDocument(TestPdfs.createPdfFile(1));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        final Object gate = new Object();
+        // Keep the only thread busy so later submissions stay queued
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (gate) {
+                    try {
+                        gate.wait(5_000);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }
+        });
+        PageRenderWorker worker = new PageRenderWorker(executor, new Handler(Looper.getMainLooper()));
+        RecordingCallback callback = new RecordingCallback(document);
+        worker.submit(document, 0, 60, callback);
+        assertEquals(1, executor.getQueue().size());
+
+        worker.cancelQueued();
+        assertEquals(0, executor.getQueue().size());
+
+        synchronized (gate) {
+            gate.notifyAll();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        shadowOf(Looper.getMainLooper()).idle();
+        assertNull(callback.bitmap);
+        document.close();
+    }
+
+    @Test
+    public void hardwareModeDeliversACopyAndKeepsTheScratchBitmap() throws Exception {
+        DocumentHandle document = TestPdfs.openDocument(TestPdfs.createPdfFile(2));
+        PageRenderWorker worker = new PageRenderWorker(TestPdfs.DIRECT_EXECUTOR,
+                new Handler(Looper.getMainLooper()), true);
+        RecordingCallback callback = new RecordingCallback(document);
+        assertTrue(worker.usesHardwareBitmaps());
+
+        worker.submit(document, 0, 60, callback);
+        shadowOf(Looper.getMainLooper()).idle();
+        Bitmap first = callback.bitmap;
+        worker.submit(document, 1, 60, callback);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(60, first.getWidth());
+        assertNotSame("Each page must get its own copy", first, callback.bitmap);
+        assertFalse("Delivered pages must not be the reused scratch buffer", first.isMutable());
+        assertEquals(60L * first.getHeight() * 4, PageBitmaps.byteCount(first));
+        document.close();
+    }
+
+    @Test
+    @Config(sdk = 21)
+    public void hardwareModeFallsBackToSoftwareBeforeApi26() throws Exception {
+        PageRenderWorker worker = new PageRenderWorker(TestPdfs.DIRECT_EXECUTOR,
+                new Handler(Looper.getMainLooper()), true);
+
+        assertFalse(worker.usesHardwareBitmaps());
+    }
+
+    private static class RecordingCallback implements PageRenderWorker.Callback {
+        private final DocumentHandle current;
+        int pageIndex = -1;
+        int targetWidth = -1;
+        Bitmap bitmap;
+        int failedPageIndex = -1;
+
+        RecordingCallback(DocumentHandle current) {
+            this.current = current;
+        }
+
+        @Override
+        public void onPageRendered(DocumentHandle document, int pageIndex, int targetWidth, Bitmap bitmap) {
+            this.pageIndex = pageIndex;
+            this.targetWidth = targetWidth;
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        public void onPageFailed(DocumentHandle document, int pageIndex) {
+            failedPageIndex = pageIndex;
+        }
+
+        @Override
+        public boolean isCurrentDocument(DocumentHandle document) {
+            return document == current;
+        }
+    }
+
+    private static class RecordingTargetCallback implements PageRenderWorker.TargetCallback {
+        int pageIndex = -1;
+        Bitmap target;
+        boolean rendered;
+
+        @Override
+        public void onRenderedInto(DocumentHandle document, int pageIndex, Bitmap target, boolean rendered) {
+            this.pageIndex = pageIndex;
+            this.target = target;
+            this.rendered = rendered;
+        }
+    }
+}
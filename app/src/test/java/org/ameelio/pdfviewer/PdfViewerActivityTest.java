@@ -9,10 +9,10 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.pdf.PdfDocument;
-import android.graphics.pdf.PdfRenderer;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.ParcelFileDescriptor;
+import android.util.SparseArray;
 import android.widget.Button;
 import android.widget.ImageButton;
 import android.widget.LinearLayout;
@@ -26,8 +26,10 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.lang.reflect.Field;
-import java.util.Map;
+import java.time.Duration;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -35,8 +37,10 @@ import org.junit.runner.RunWith;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowContentResolver;
+import org.robolectric.shadows.ShadowTrace;
 
 import static org.junit.Assert.*;
 import static org.robolectric.Shadows.shadowOf;
@@ -71,6 +75,37 @@ public class PdfViewerActivityTest {
         assertNotNull("Error text should exist", errorText);
     }
 
+    @Test
+    public void testPerfHudHiddenUnlessRequested() {
+        View hud = activity.findViewById(R.id.perfHud);
+
+        assertNotNull(hud);
+        assertEquals(View.GONE, hud.getVisibility());
+    }
+
+    @Test
+    @Config(qualifiers = "land")
+    public void testPerfHudHiddenUnlessRequestedInLandscape() {
+        PdfViewerActivity landscape = Robolectric.buildActivity(PdfViewerActivity.class)
+                .create()
+                .resume()
+                .get();
+        View hud = landscape.findViewById(R.id.perfHud);
+
+        assertNotNull("Landscape layout should carry the HUD overlay too", hud);
+        assertNotNull(landscape.findViewById(R.id.perfHudText));
+        assertEquals(View.GONE, hud.getVisibility());
+
+        // Asking for the HUD must not fail for lack of its views in this orientation
+        Intent withHud = new Intent(Intent.ACTION_MAIN).putExtra(PdfViewerActivity.EXTRA_PERF_HUD, true);
+        PdfViewerActivity landscapeWithHud = Robolectric.buildActivity(PdfViewerActivity.class, withHud)
+                .create()
+                .resume()
+                .visible()
+                .get();
+        assertNotNull(landscapeWithHud.findViewById(R.id.perfHud));
+    }
+
     @Test
     public void testSecurityFeatures_NoBackupAllowed() {
         // Verify that backup is disabled for security
@@ -229,23 +264,27 @@ public class PdfViewerActivityTest {
 
     @Test
     public void testOnNewIntentReplacesDocumentAndClearsCache() throws Exception {
-        Map<Integer, Bitmap> bitmapCache = getBitmapCache(activity);
-        bitmapCache.put(0, Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888));
-        assertFalse("Precondition: bitmap cache should have entries", bitmapCache.isEmpty());
+        SparseArray<Bitmap> bitmapCache = getBitmapCache(activity);
+        Bitmap stalePage = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        bitmapCache.put(0, stalePage);
+        assertFalse("Precondition: bitmap cache should have entries", bitmapCache.size() == 0);
 
         File pdfFile = createTestPdfFile();
         Uri pdfUri = registerPdfWithContentProvider(pdfFile);
 
         Intent newIntent = new Intent(Intent.ACTION_VIEW, pdfUri);
         activity.onNewIntent(newIntent);
+        assertNull("The document should be opened in the background", getPageSource(activity));
+        TestPdfs.awaitOpen(activity);
 
-        Map<Integer, Bitmap> updatedCache = getBitmapCache(activity);
-        assertTrue("Bitmap cache should be cleared before rendering new PDF", updatedCache.isEmpty());
+        SparseArray<Bitmap> updatedCache = getBitmapCache(activity);
+        assertTrue("Bitmap cache should be cleared before rendering new PDF",
+                updatedCache.indexOfValue(stalePage) < 0);
         assertEquals("Activity intent should be replaced when a new one arrives", newIntent, activity.getIntent());
 
-        PdfRenderer pdfRenderer = getPdfRenderer(activity);
-        assertNotNull("PDF renderer should be initialized after handling new intent", pdfRenderer);
-        assertTrue("Loaded PDF should report at least one page", pdfRenderer.getPageCount() > 0);
+        PageSource pageSource = getPageSource(activity);
+        assertNotNull("PDF renderer should be initialized after handling new intent", pageSource);
+        assertTrue("Loaded PDF should report at least one page", pageSource.getPageCount() > 0);
 
         activity.onDestroy();
     }
@@ -260,6 +299,7 @@ public class PdfViewerActivityTest {
                 .create()
                 .resume()
                 .get();
+        TestPdfs.awaitOpen(activityWithPdf);
 
         RecyclerView recyclerView = activityWithPdf.findViewById(R.id.pdfRecyclerView);
         assertNotNull("RecyclerView should exist", recyclerView);
@@ -279,6 +319,7 @@ public class PdfViewerActivityTest {
                 .create()
                 .resume()
                 .get();
+        TestPdfs.awaitOpen(activityWithPdf);
 
         ImageButton resetZoomButton = activityWithPdf.findViewById(R.id.resetZoomButton);
         assertNotNull("Reset zoom button should exist", resetZoomButton);
@@ -286,7 +327,7 @@ public class PdfViewerActivityTest {
                 View.VISIBLE, resetZoomButton.getVisibility());
 
         ZoomCoordinator zoomCoordinator = getZoomCoordinator(activityWithPdf);
-        zoomCoordinator.propagateScale(null, 2f, Float.NaN, Float.NaN);
+        zoomCoordinator.propagateScale(2f, Float.NaN, Float.NaN);
         assertEquals("Scale should update before reset", 2f, zoomCoordinator.getCurrentScale(), 0.0001f);
 
         resetZoomButton.performClick();
@@ -307,6 +348,7 @@ public class PdfViewerActivityTest {
                 .create()
                 .resume()
                 .get();
+        TestPdfs.awaitOpen(activityWithPdf);
 
         ImageButton zoomInButton = activityWithPdf.findViewById(R.id.zoomInButton);
         ImageButton zoomOutButton = activityWithPdf.findViewById(R.id.zoomOutButton);
@@ -329,17 +371,321 @@ public class PdfViewerActivityTest {
         activityWithPdf.onDestroy();
     }
 
+    @Test
+    public void testSurfaceViewModeShowsDocumentSurface() throws Exception {
+        File pdfFile = createTestPdfFile();
+        Uri pdfUri = registerPdfWithContentProvider(pdfFile);
+
+        Intent intent = new Intent(Intent.ACTION_VIEW, pdfUri);
+        intent.putExtra(PdfViewerActivity.EXTRA_VIEW_MODE, PdfViewerActivity.VIEW_MODE_SURFACE);
+        PdfViewerActivity activityWithPdf = Robolectric.buildActivity(PdfViewerActivity.class, intent)
+                .create()
+                .resume()
+                .get();
+        TestPdfs.awaitOpen(activityWithPdf);
+
+        View surface = activityWithPdf.findViewById(R.id.documentSurfaceView);
+        RecyclerView recyclerView = activityWithPdf.findViewById(R.id.pdfRecyclerView);
+        assertEquals("Document surface should be visible", View.VISIBLE, surface.getVisibility());
+        assertEquals("RecyclerView should be hidden", View.GONE, recyclerView.getVisibility());
+
+        ZoomCoordinator zoomCoordinator = getZoomCoordinator(activityWithPdf);
+        ImageButton zoomInButton = activityWithPdf.findViewById(R.id.zoomInButton);
+        zoomInButton.performClick();
+        assertEquals("Zoom buttons should drive the surface through the coordinator",
+                1f + getZoomStep(), zoomCoordinator.getCurrentScale(), 0.0001f);
+
+        activityWithPdf.onDestroy();
+    }
+
+    @Test
+    public void testPagedViewModeKeepsThreePageBudget() throws Exception {
+        Uri pdfUri = TestPdfs.register(TestPdfs.createPdfFile(5));
+
+        Intent intent = new Intent(Intent.ACTION_VIEW, pdfUri);
+        intent.putExtra(PdfViewerActivity.EXTRA_VIEW_MODE, PdfViewerActivity.VIEW_MODE_PAGED);
+        PdfViewerActivity activityWithPdf = Robolectric.buildActivity(PdfViewerActivity.class, intent)
+                .create()
+                .resume()
+                .visible()
+                .get();
+        TestPdfs.awaitOpen(activityWithPdf);
+        shadowOf(activityWithPdf.getMainLooper()).idle();
+
+        RecyclerView pagedRecyclerView = activityWithPdf.findViewById(R.id.pagedRecyclerView);
+        RecyclerView recyclerView = activityWithPdf.findViewById(R.id.pdfRecyclerView);
+        assertEquals("Paged view should be visible", View.VISIBLE, pagedRecyclerView.getVisibility());
+        assertEquals("Continuous list should be hidden", View.GONE, recyclerView.getVisibility());
+        assertEquals(5, pagedRecyclerView.getAdapter().getItemCount());
+
+        Field ringField = PdfViewerActivity.class.getDeclaredField("pageRing");
+        ringField.setAccessible(true);
+        PageBitmapRing ring = (PageBitmapRing) ringField.get(activityWithPdf);
+        // Pages render into the ring on the background worker
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!(ring.holds(0) && ring.holds(1)) && System.currentTimeMillis() < deadline) {
+            shadowOf(activityWithPdf.getMainLooper()).idleFor(Duration.ofMillis(17));
+            Thread.sleep(5);
+        }
+        assertTrue("Current page should be rendered", ring.holds(0));
+        assertTrue("Next page should be pre-rendered", ring.holds(1));
+        assertEquals("Paged mode should not use the page cache", 0, getBitmapCache(activityWithPdf).size());
+
+        Bitmap slot = ring.getSlot(0);
+        assertTrue("Ring should never hold more than three buffers",
+                ring.getAllocatedBytes() <= 3L * slot.getAllocationByteCount());
+
+        activityWithPdf.onDestroy();
+    }
+
+    @Test
+    public void testLaunchShowsPreviewFirstAndMeasuresTimeToFirstPage() throws Exception {
+        Uri pdfUri = TestPdfs.register(TestPdfs.createPdfFile(2));
+
+        PdfViewerActivity activityWithPdf = Robolectric.buildActivity(PdfViewerActivity.class,
+                        new Intent(Intent.ACTION_VIEW, pdfUri))
+                .create()
+                .resume()
+                .visible()
+                .get();
+        TestPdfs.awaitOpen(activityWithPdf);
+        TestPdfs.awaitRenders(activityWithPdf);
+
+        Field timerField = PdfViewerActivity.class.getDeclaredField("firstPageTimer");
+        timerField.setAccessible(true);
+        FirstPageTimer timer = (FirstPageTimer) timerField.get(activityWithPdf);
+        assertEquals("Time to first page should be measured once", 1, timer.getCompletedCount());
+        assertTrue("First page should appear as a preview", timer.wasLastPreview());
+        assertTrue(timer.getLastTimeToFirstPageNanos() > 0);
+
+        Bitmap firstPage = getBitmapCache(activityWithPdf).get(0);
+        assertNotNull("Full-quality first page should replace the preview", firstPage);
+        int fullWidth = activityWithPdf.getResources().getDisplayMetrics().widthPixels - 32;
+        assertEquals(Math.min(fullWidth, PageRasterizer.MAX_RENDER_DIMENSION), firstPage.getWidth());
+
+        activityWithPdf.onDestroy();
+    }
+
+    @Test
+    public void testNewIntentShowsPreviewFirstToo() throws Exception {
+        PdfViewerActivity activityWithPdf = Robolectric.buildActivity(PdfViewerActivity.class,
+                        new Intent(Intent.ACTION_VIEW, TestPdfs.register(TestPdfs.createPdfFile(1))))
+                .create()
+                .resume()
+                .visible()
+                .get();
+        TestPdfs.awaitOpen(activityWithPdf);
+        TestPdfs.awaitRenders(activityWithPdf);
+
+        activityWithPdf.onNewIntent(new Intent(Intent.ACTION_VIEW, TestPdfs.register(TestPdfs.createPdfFile(2))));
+        TestPdfs.awaitOpen(activityWithPdf);
+        TestPdfs.awaitRenders(activityWithPdf);
+
+        FirstPageTimer timer = (FirstPageTimer) getField(activityWithPdf, "firstPageTimer");
+        assertEquals(2, timer.getCompletedCount());
+        assertTrue("A document opened later should also appear as a preview first", timer.wasLastPreview());
+        assertEquals(2, getPageSource(activityWithPdf).getPageCount());
+
+        activityWithPdf.onDestroy();
+    }
+
+    @Test
+    public void testDumpPrintsInMemoryMetrics() throws Exception {
+        MetricsRegistry.getDefault().reset();
+        Uri pdfUri = TestPdfs.register(TestPdfs.createPdfFile(3));
+
+        PdfViewerActivity activityWithPdf = Robolectric.buildActivity(PdfViewerActivity.class,
+                        new Intent(Intent.ACTION_VIEW, pdfUri))
+                .create()
+                .resume()
+                .visible()
+                .get();
+        TestPdfs.awaitOpen(activityWithPdf);
+        TestPdfs.awaitRenders(activityWithPdf);
+
+        StringWriter out = new StringWriter();
+        activityWithPdf.dump("", null, new PrintWriter(out), new String[0]);
+        String dump = out.toString();
+
+        assertTrue(dump, dump.contains("document.open: count=1"));
+        assertTrue(dump, dump.contains("page.render: count="));
+        assertTrue("Binding pages should have missed the empty cache",
+                MetricsRegistry.getDefault().counter(MetricsRegistry.CACHE_MISSES).get() > 0);
+        assertTrue(MetricsRegistry.getDefault().gauge(MetricsRegistry.RESIDENT_BITMAP_BYTES).get() > 0);
+        String[] files = activityWithPdf.getFilesDir().list();
+        assertTrue("Metrics must stay in memory", files == null || files.length == 0);
+
+        activityWithPdf.onDestroy();
+    }
+
+    @Test
+    public void testTraceSectionsCoverBindAndPageRequests() throws Exception {
+        ShadowTrace.reset();
+        Uri pdfUri = TestPdfs.register(TestPdfs.createPdfFile(3));
+
+        PdfViewerActivity activityWithPdf = Robolectric.buildActivity(PdfViewerActivity.class,
+                        new Intent(Intent.ACTION_VIEW, pdfUri))
+                .create()
+                .resume()
+                .visible()
+                .get();
+        TestPdfs.awaitOpen(activityWithPdf);
+        TestPdfs.awaitRenders(activityWithPdf);
+
+        assertTrue(ShadowTrace.getPreviousSections().contains(TraceSections.BIND_PAGE));
+        assertTrue("Every sync section should be closed", ShadowTrace.getCurrentSections().isEmpty());
+        boolean sawPageRequest = false;
+        for (ShadowTrace.AsyncTraceSection section : ShadowTrace.getPreviousAsyncSections()) {
+            sawPageRequest |= TraceSections.PAGE_REQUEST.equals(section.getSectionName());
+        }
+        assertTrue("Page requests should be traced until delivery", sawPageRequest);
+        assertTrue("No page request should be left open", ShadowTrace.getCurrentAsyncSections().isEmpty());
+
+        activityWithPdf.onDestroy();
+    }
+
+    @Test
+    public void testListPagesRenderInBackgroundAndArriveInBatches() throws Exception {
+        Uri pdfUri = TestPdfs.register(TestPdfs.createPdfFile(4));
+
+        PdfViewerActivity activityWithPdf = Robolectric.buildActivity(PdfViewerActivity.class,
+                        new Intent(Intent.ACTION_VIEW, pdfUri))
+                .create()
+                .resume()
+                .visible()
+                .get();
+        TestPdfs.awaitOpen(activityWithPdf);
+        TestPdfs.awaitRenders(activityWithPdf);
+
+        RenderBatcher batcher = (RenderBatcher) getField(activityWithPdf, "renderBatcher");
+        assertTrue("Rendered pages should have been delivered", batcher.getDeliveredPageCount() > 0);
+        assertNotNull("Pages should be cached once delivered", getBitmapCache(activityWithPdf).get(1));
+        LayoutPassCounter counter = (LayoutPassCounter) getField(activityWithPdf, "layoutPassCounter");
+        assertTrue("A render batch should cost at most one layout pass, saw " + counter.getMaxBatchLayoutPasses(),
+                counter.getMaxBatchLayoutPasses() <= 1);
+
+        activityWithPdf.onDestroy();
+    }
+
+    @Test
+    public void testResizeRerendersVisiblePagesOnceWidthSettles() throws Exception {
+        Uri pdfUri = TestPdfs.register(TestPdfs.createPdfFile(3));
+
+        PdfViewerActivity activityWithPdf = Robolectric.buildActivity(PdfViewerActivity.class,
+                        new Intent(Intent.ACTION_VIEW, pdfUri))
+                .create()
+                .resume()
+                .visible()
+                .get();
+        TestPdfs.awaitOpen(activityWithPdf);
+        TestPdfs.awaitRenders(activityWithPdf);
+        RecyclerView recyclerView = activityWithPdf.findViewById(R.id.pdfRecyclerView);
+        int originalWidth = recyclerView.getWidth();
+        assertTrue(originalWidth > 200);
+        // Let the width from the first layout settle
+        shadowOf(activityWithPdf.getMainLooper()).idleFor(Duration.ofMillis(300));
+        TestPdfs.awaitRenders(activityWithPdf);
+
+        // A window drag: several widths in quick succession
+        int[] widths = {originalWidth - 40, originalWidth - 80, originalWidth - 120};
+        for (int width : widths) {
+            recyclerView.getLayoutParams().width = width;
+            recyclerView.requestLayout();
+            shadowOf(activityWithPdf.getMainLooper()).idleFor(Duration.ofMillis(50));
+        }
+        assertEquals("Nothing is re-rendered while the width keeps changing",
+                originalWidth - 32, getField(activityWithPdf, "pageRenderWidth"));
+
+        shadowOf(activityWithPdf.getMainLooper()).idleFor(Duration.ofMillis(300));
+        TestPdfs.awaitRenders(activityWithPdf);
+
+        int settledWidth = widths[widths.length - 1] - 32;
+        assertEquals(settledWidth, getField(activityWithPdf, "pageRenderWidth"));
+        assertEquals("Visible pages should be re-rendered at the settled width",
+                settledWidth, getBitmapCache(activityWithPdf).get(0).getWidth());
+
+        activityWithPdf.onDestroy();
+    }
+
+    @Test
+    public void testRecreateKeepsDocumentOpenInMemory() throws Exception {
+        Uri pdfUri = TestPdfs.register(TestPdfs.createPdfFile(3));
+
+        Intent intent = new Intent(Intent.ACTION_VIEW, pdfUri);
+        ActivityController<PdfViewerActivity> controller =
+                Robolectric.buildActivity(PdfViewerActivity.class, intent).setup();
+        PdfViewerActivity original = controller.get();
+        TestPdfs.awaitOpen(original);
+        PageSource renderer = getPageSource(original);
+        Bitmap cachedPage = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        getBitmapCache(original).put(2, cachedPage);
+        getZoomCoordinator(original).propagateScale(2f, Float.NaN, Float.NaN);
+
+        controller.recreate();
+        PdfViewerActivity recreated = controller.get();
+
+        assertNotSame("Activity should have been recreated", original, recreated);
+        assertSame("Renderer should survive the configuration change", renderer, getPageSource(recreated));
+        assertSame("Rendered pages should survive the configuration change",
+                cachedPage, getBitmapCache(recreated).get(2));
+        assertEquals("Zoom should be restored", 2f,
+                getZoomCoordinator(recreated).getCurrentScale(), 0.0001f);
+        assertEquals(View.VISIBLE, recreated.findViewById(R.id.pdfRecyclerView).getVisibility());
+
+        controller.pause().stop().destroy();
+        assertNull("Finishing for good should close the document", getPageSource(recreated));
+    }
+
+    @Test
+    public void testSwitchingBackReusesPooledRenderer() throws Exception {
+        File firstPdf = TestPdfs.createPdfFile(2);
+        Uri firstUri = TestPdfs.register(firstPdf);
+        Uri secondUri = TestPdfs.register(TestPdfs.createPdfFile(3));
+        // Same bytes behind a different URI, as when an attachment is opened again
+        Uri firstAgainUri = TestPdfs.register(firstPdf);
+
+        activity.onNewIntent(new Intent(Intent.ACTION_VIEW, firstUri));
+        TestPdfs.awaitOpen(activity);
+        TestPdfs.awaitRenders(activity);
+        PageSource firstRenderer = getPageSource(activity);
+        Bitmap firstPage = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        getBitmapCache(activity).put(0, firstPage);
+
+        activity.onNewIntent(new Intent(Intent.ACTION_VIEW, secondUri));
+        TestPdfs.awaitOpen(activity);
+        assertNotSame(firstRenderer, getPageSource(activity));
+        assertEquals(3, getPageSource(activity).getPageCount());
+
+        activity.onNewIntent(new Intent(Intent.ACTION_VIEW, firstAgainUri));
+        TestPdfs.awaitOpen(activity);
+        assertSame("Previous document should come back from the pool", firstRenderer, getPageSource(activity));
+        assertSame("Its rendered pages should come back too", firstPage, getBitmapCache(activity).get(0));
+
+        activity.onNewIntent(new Intent(Intent.ACTION_VIEW, firstUri));
+        TestPdfs.awaitOpen(activity);
+        assertSame("Reopening the current document should keep it", firstRenderer, getPageSource(activity));
+
+        activity.onDestroy();
+    }
+
+    private Object getField(PdfViewerActivity activity, String name) throws Exception {
+        Field field = PdfViewerActivity.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(activity);
+    }
+
     @SuppressWarnings("unchecked")
-    private Map<Integer, Bitmap> getBitmapCache(PdfViewerActivity activity) throws Exception {
+    private SparseArray<Bitmap> getBitmapCache(PdfViewerActivity activity) throws Exception {
         Field bitmapCacheField = PdfViewerActivity.class.getDeclaredField("bitmapCache");
         bitmapCacheField.setAccessible(true);
-        return (Map<Integer, Bitmap>) bitmapCacheField.get(activity);
+        return (SparseArray<Bitmap>) bitmapCacheField.get(activity);
     }
 
-    private PdfRenderer getPdfRenderer(PdfViewerActivity activity) throws Exception {
-        Field rendererField = PdfViewerActivity.class.getDeclaredField("pdfRenderer");
-        rendererField.setAccessible(true);
-        return (PdfRenderer) rendererField.get(activity);
+    private PageSource getPageSource(PdfViewerActivity activity) throws Exception {
+        Field documentField = PdfViewerActivity.class.getDeclaredField("document");
+        documentField.setAccessible(true);
+        DocumentHandle document = (DocumentHandle) documentField.get(activity);
+        return document != null ? document.getPageSource() : null;
     }
 
     private ZoomCoordinator getZoomCoordinator(PdfViewerActivity activity) throws Exception {
@@ -0,0 +1,91 @@
+package org.ameelio.pdfviewer;
+
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class PerfHudTest {
+
+    private FrameLayout container;
+    private TextView text;
+    private ManualFrameScheduler frames;
+    private int collects;
+
+    private final PerfHud.Source source = new PerfHud.Source() {
+        @Override
+        public void collect(PerfHud.Stats stats) {
+            collects++;
+            stats.queueDepth = 2;
+            stats.residentBytes = 3L * 1024 * 1024;
+            stats.cacheHits = 3;
+            stats.cacheMisses = 1;
+            stats.fullPages = 4;
+            stats.zoom = 1.5f;
+            stats.lastRenderNanos = 12_000_000L;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        container = new FrameLayout(RuntimeEnvironment.getApplication());
+        text = new TextView(RuntimeEnvironment.getApplication());
+        container.addView(text);
+        container.setVisibility(View.GONE);
+        frames = new ManualFrameScheduler();
+    }
+
+    @Test
+    public void updatesAFewTimesPerSecondAtMost() {
+        PerfHud hud = new PerfHud(container, text, source, frames);
+        hud.start();
+
+        // One second of 60 Hz frames
+        for (int i = 0; i < 60; i++) {
+            frames.runFrame();
+        }
+
+        assertEquals(View.VISIBLE, container.getVisibility());
+        assertTrue("Updates: " + hud.getUpdateCount(), hud.getUpdateCount() >= 3 && hud.getUpdateCount() <= 4);
+        assertEquals("Counters are only read when the text updates", hud.getUpdateCount(), collects);
+        String shown = text.getText().toString();
+        assertTrue(shown, shown.contains("frame 16.7 ms avg"));
+        assertTrue(shown, shown.contains("queue 2  resident 3.0 MB  hits 75%"));
+        assertTrue(shown, shown.contains("4 full"));
+        assertTrue(shown, shown.contains("zoom 1.50x  last render 12.0 ms"));
+    }
+
+    @Test
+    public void stoppedHudHidesAndStopsScheduling() {
+        PerfHud hud = new PerfHud(container, text, source, frames);
+        hud.start();
+        frames.runFrame();
+
+        hud.stop();
+        frames.runFrame();
+
+        assertEquals(View.GONE, container.getVisibility());
+        assertEquals(0, frames.pendingCallbackCount());
+        assertFalse(hud.isRunning());
+    }
+
+    @Test
+    public void restartingDoesNotDoubleTheFrameCallback() {
+        PerfHud hud = new PerfHud(container, text, source, frames);
+        hud.start();
+        hud.stop();
+        hud.start();
+
+        assertEquals(1, frames.pendingCallbackCount());
+    }
+}
@@ -0,0 +1,92 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class RenderBatcherTest {
+
+    private ManualFrameScheduler frames;
+    private final List<SparseArray<Bitmap>> batches = new ArrayList<>();
+    private RenderBatcher batcher;
+
+    @Before
+    public void setUp() {
+        frames = new ManualFrameScheduler();
+        batcher = new RenderBatcher(new RenderBatcher.Target() {
+            @Override
+            public void onRenderBatch(SparseArray<Bitmap> pages) {
+                batches.add(pages.clone());
+            }
+        }, frames);
+    }
+
+    @Test
+    public void pagesFinishingBeforeAFrameAreDeliveredTogether() {
+        Bitmap first = page();
+        Bitmap second = page();
+        batcher.add(3, first);
+        batcher.add(4, second);
+
+        assertTrue("Nothing is delivered before the frame", batches.isEmpty());
+        assertEquals("One frame callback per batch", 1, frames.pendingCallbackCount());
+        frames.runFrame();
+
+        assertEquals(1, batches.size());
+        assertSame(first, batches.get(0).get(3));
+        assertSame(second, batches.get(0).get(4));
+        assertEquals(0, batcher.getPendingCount());
+        assertEquals(1, batcher.getBatchCount());
+        assertEquals(2, batcher.getDeliveredPageCount());
+    }
+
+    @Test
+    public void newerRenderOfTheSamePageReplacesTheQueuedOne() {
+        Bitmap stale = page();
+        Bitmap fresh = page();
+        batcher.add(1, stale);
+        batcher.add(1, fresh);
+        frames.runFrame();
+
+        assertSame(fresh, batches.get(0).get(1));
+        assertTrue("The undelivered bitmap is released", stale.isRecycled());
+    }
+
+    @Test
+    public void clearDropsQueuedPages() {
+        Bitmap queued = page();
+        batcher.add(0, queued);
+        batcher.clear();
+        frames.runFrame();
+
+        assertTrue(batches.isEmpty());
+        assertTrue(queued.isRecycled());
+    }
+
+    @Test
+    public void laterPagesGoIntoTheNextFrame() {
+        batcher.add(0, page());
+        frames.runFrame();
+        batcher.add(1, page());
+        frames.runFrame();
+
+        assertEquals(2, batches.size());
+        assertEquals(2, batcher.getBatchCount());
+    }
+
+    private static Bitmap page() {
+        return Bitmap.createBitmap(10, 14, Bitmap.Config.ARGB_8888);
+    }
+}
@@ -0,0 +1,226 @@
+package org.ameelio.pdfviewer;
+
+import android.content.ComponentCallbacks2;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Looper;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Drives the viewer through thousands of seeded open, switch, close and failure cycles, the way
+ * a kiosk does over days, and checks that file descriptors, open documents, page bitmaps and
+ * zoom listeners all come back to where they started.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ResourceLeakStressTest {
+
+    private static final long SEED = 50L;
+    private static final int ROUNDS = 20;
+    private static final int CYCLES_PER_ROUND = 100;
+    private static final int WARM_UP_CYCLES = 20;
+    // The JVM under Robolectric opens and closes a few descriptors of its own, e.g. for jars
+    private static final int DESCRIPTOR_SLACK = 8;
+    private static final long SETTLE_TIMEOUT_MILLIS = 10_000L;
+
+    private final Random random = new Random(SEED);
+    private final List<FakePageSource> fakeSources = new ArrayList<>();
+    private Uri[] documents;
+    private Uri[] failingDocuments;
+    private int baselineZoomListeners = -1;
+    private int baselinePanListeners = -1;
+
+    @Before
+    public void setUp() throws Exception {
+        documents = new Uri[] {
+                TestPdfs.register(TestPdfs.createPdfFile(3)),
+                TestPdfs.register(TestPdfs.createPdfFile(12)),
+                TestPdfs.register(TestPdfs.createPdfFile(SyntheticPdf.largeMixedDocument(40))),
+        };
+        failingDocuments = new Uri[] {
+                // Not registered, so the provider throws FileNotFoundException
+                Uri.parse("content://" + TestPdfs.AUTHORITY + "/documents/missing"),
+                TestPdfs.registerFailure(new SecurityException("Permission revoked")),
+                TestPdfs.register(corruptPdfFile()),
+        };
+    }
+
+    @Test
+    public void openSwitchCloseAndFailureCyclesReturnToBaseline() throws Exception {
+        // Classes, resources and provider descriptors get loaded once; do that before measuring
+        runRound(WARM_UP_CYCLES);
+        int baselineDocuments = DocumentHandle.getLiveCount();
+        int baselineDescriptors = openDescriptorCount();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            runRound(CYCLES_PER_ROUND);
+            awaitBaseline(baselineDocuments, baselineDescriptors, "round " + round);
+        }
+
+        for (FakePageSource source : fakeSources) {
+            assertTrue("Every page source should be closed", source.isClosed());
+            for (Bitmap target : source.getFailedRenderTargets()) {
+                assertTrue("A bitmap whose render failed should be released", target.isRecycled());
+            }
+        }
+    }
+
+    /**
+     * Launches the viewer, runs random cycles against it and finishes it for good.
+     */
+    private void runRound(int cycles) throws Exception {
+        Intent launch = new Intent(Intent.ACTION_VIEW, documents[0]);
+        ActivityController<PdfViewerActivity> controller =
+                Robolectric.buildActivity(PdfViewerActivity.class, launch).create().resume().visible();
+        TestPdfs.awaitOpen(controller.get());
+        assertListenersAtBaseline(controller.get());
+
+        for (int cycle = 0; cycle < cycles; cycle++) {
+            runCycle(controller);
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(ScrollSimulator.FRAME_MILLIS));
+            assertListenersAtBaseline(controller.get());
+        }
+
+        PdfViewerActivity activity = controller.get();
+        // A recreated activity may still be opening its intent in the background
+        TestPdfs.awaitOpen(activity);
+        TestPdfs.awaitRenders(activity);
+        long pageBudget = getPageBudgetBytes(activity);
+        long residentBytes = getResidentPageBytes(activity);
+        assertTrue("Resident pages " + residentBytes + " over the budget of " + pageBudget,
+                residentBytes <= pageBudget);
+
+        controller.pause().stop().destroy();
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals("A finished viewer should hold no page bitmaps", 0L, getResidentPageBytes(activity));
+    }
+
+    private void runCycle(ActivityController<PdfViewerActivity> controller) throws Exception {
+        PdfViewerActivity activity = controller.get();
+        int action = random.nextInt(100);
+        if (action < 35) {
+            // Switching between a few documents covers the same-document, pooled and fresh paths
+            controller.newIntent(new Intent(Intent.ACTION_VIEW, documents[random.nextInt(documents.length)]));
+        } else if (action < 55) {
+            controller.newIntent(new Intent(Intent.ACTION_VIEW,
+                    failingDocuments[random.nextInt(failingDocuments.length)]));
+        } else if (action < 70) {
+            activity.showOpenedDocument(new DocumentHandle(fakeSource(), null, TestPdfs.DIRECT_EXECUTOR));
+        } else if (action < 85) {
+            RecyclerView list = activity.findViewById(R.id.pdfRecyclerView);
+            list.scrollBy(0, random.nextInt(4000) - 2000);
+        } else if (action < 95) {
+            activity.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        } else if (action < 98) {
+            TestPdfs.awaitRenders(activity);
+        } else {
+            // A rotation hands the open document to a new activity through the session
+            controller.recreate();
+        }
+    }
+
+    /**
+     * Returns a page source whose renders sometimes fail, as PdfRenderer does on damaged or
+     * oversized pages.
+     */
+    private FakePageSource fakeSource() {
+        FakePageSource source = new FakePageSource(20 + random.nextInt(80), 612, 792);
+        int failure = random.nextInt(4);
+        if (failure == 1) {
+            source.setRenderFailure(random.nextInt(3), new OutOfMemoryError("Injected render failure"));
+        } else if (failure == 2) {
+            source.setRenderFailure(random.nextInt(3), new IllegalStateException("Injected render failure"));
+        }
+        fakeSources.add(source);
+        return source;
+    }
+
+    private void assertListenersAtBaseline(PdfViewerActivity activity) throws Exception {
+        ZoomCoordinator coordinator = (ZoomCoordinator) getField(activity, "zoomCoordinator");
+        if (baselineZoomListeners < 0) {
+            baselineZoomListeners = coordinator.getZoomListenerCount();
+            baselinePanListeners = coordinator.getPanListenerCount();
+        }
+        assertEquals("Zoom listeners", baselineZoomListeners, coordinator.getZoomListenerCount());
+        assertEquals("Pan listeners", baselinePanListeners, coordinator.getPanListenerCount());
+    }
+
+    /**
+     * Waits for documents closed in the background to be torn down, then checks nothing is left
+     * open beyond the baseline.
+     */
+    private static void awaitBaseline(int documents, int descriptors, String when) throws Exception {
+        long deadline = System.currentTimeMillis() + SETTLE_TIMEOUT_MILLIS;
+        while (DocumentHandle.getLiveCount() > documents && System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            Thread.sleep(5);
+        }
+        assertEquals("Open documents after " + when, documents, DocumentHandle.getLiveCount());
+        if (descriptors >= 0) {
+            int open = openDescriptorCount();
+            assertTrue("File descriptors grew from " + descriptors + " to " + open + " after " + when,
+                    open <= descriptors + DESCRIPTOR_SLACK);
+        }
+    }
+
+    /**
+     * Returns how many file descriptors this process has open, or -1 where /proc is not
+     * available.
+     */
+    private static int openDescriptorCount() {
+        String[] descriptors = new File("/proc/self/fd").list();
+        return descriptors != null ? descriptors.length : -1;
+    }
+
+    private static File corruptPdfFile() throws Exception {
+        File file = File.createTempFile("corrupt-doc", ".pdf", RuntimeEnvironment.getApplication().getCacheDir());
+        byte[] bytes = new byte[4096];
+        new Random(SEED).nextBytes(bytes);
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            // A plausible header over garbage, so the failure comes from parsing
+            output.write("%PDF-1.4\n".getBytes("US-ASCII"));
+            output.write(bytes);
+        }
+        return file;
+    }
+
+    private static long getPageBudgetBytes(PdfViewerActivity activity) throws Exception {
+        MemoryAccountant accountant = (MemoryAccountant) getField(activity, "memoryAccountant");
+        return accountant.getPageBudgetBytes();
+    }
+
+    private static long getResidentPageBytes(PdfViewerActivity activity) throws Exception {
+        Method method = PdfViewerActivity.class.getDeclaredMethod("getResidentPageBytes");
+        method.setAccessible(true);
+        return (Long) method.invoke(activity);
+    }
+
+    private static Object getField(PdfViewerActivity activity, String name) throws Exception {
+        Field field = PdfViewerActivity.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(activity);
+    }
+}
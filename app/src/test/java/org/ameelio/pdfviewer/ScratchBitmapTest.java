@@ -0,0 +1,65 @@
+package org.ameelio.pdfviewer;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ScratchBitmapTest {
+
+    @Test
+    public void reusesTheAllocationForPagesThatFit() {
+        ScratchBitmap scratch = new ScratchBitmap();
+
+        Bitmap first = scratch.obtain(100, 140);
+        long allocated = scratch.getAllocatedBytes();
+        Bitmap same = scratch.obtain(100, 140);
+        Bitmap smaller = scratch.obtain(100, 120);
+
+        assertSame(first, same);
+        assertSame("A smaller page should reuse the buffer", first, smaller);
+        assertEquals(100, smaller.getWidth());
+        assertEquals(120, smaller.getHeight());
+        assertEquals(allocated, scratch.getAllocatedBytes());
+    }
+
+    @Test
+    public void growsForLargerPages() {
+        ScratchBitmap scratch = new ScratchBitmap();
+        Bitmap small = scratch.obtain(50, 50);
+
+        Bitmap large = scratch.obtain(100, 140);
+
+        assertNotSame(small, large);
+        assertTrue(small.isRecycled());
+        assertEquals(100, large.getWidth());
+        assertEquals(140, large.getHeight());
+    }
+
+    @Test
+    public void releaseFreesTheBitmap() {
+        ScratchBitmap scratch = new ScratchBitmap();
+        Bitmap bitmap = scratch.obtain(50, 50);
+
+        scratch.release();
+
+        assertTrue(bitmap.isRecycled());
+        assertEquals(0, scratch.getAllocatedBytes());
+    }
+
+    @Test
+    public void byteCountIgnoresMissingAndRecycledPages() {
+        Bitmap page = Bitmap.createBitmap(10, 20, Bitmap.Config.ARGB_8888);
+
+        assertEquals(10 * 20 * 4, PageBitmaps.byteCount(page));
+        assertEquals(0, PageBitmaps.byteCount(null));
+        page.recycle();
+        assertEquals(0, PageBitmaps.byteCount(page));
+    }
+}
@@ -0,0 +1,100 @@
+package org.ameelio.pdfviewer;
+
+import java.lang.reflect.Field;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scripted reading sessions against the page list with a fake page source, checking the render,
+ * cache and memory behaviour that otherwise only shows on a device.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ScrollSimulationTest {
+
+    private static final int PAGE_COUNT = 100;
+    // US Letter in points
+    private static final int PAGE_WIDTH = 612;
+    private static final int PAGE_HEIGHT = 792;
+    private static final long RENDER_MILLIS = 40L;
+
+    @Test
+    public void sameScriptGivesSameReport() throws Exception {
+        ScrollSimulator.Report first = readingSession();
+        ScrollSimulator.Report second = readingSession();
+
+        assertEquals(first.frames, second.frames);
+        assertEquals(first.renders, second.renders);
+        assertEquals(first.cacheHits, second.cacheHits);
+        assertEquals(first.cacheMisses, second.cacheMisses);
+        assertEquals(first.peakBitmapBytes, second.peakBitmapBytes);
+        assertTrue("Session should have rendered pages: " + first, first.renders > 0);
+    }
+
+    @Test
+    public void listModeRendersOffTheMainThread() throws Exception {
+        ScrollSimulator.Report report = readingSession();
+
+        assertEquals("Pages must not render on the main thread: " + report, 0, report.mainThreadRenderMillis);
+        assertTrue("Binding should have missed the cache at least once: " + report, report.cacheMisses > 0);
+    }
+
+    @Test
+    public void residentBitmapsStayWithinTheCacheLimit() throws Exception {
+        FakePageSource source = letterDocument();
+        ScrollSimulator simulator = ScrollSimulator.open(source);
+        simulator.fling(8000).settle().fling(-8000).settle();
+        ScrollSimulator.Report report = simulator.report();
+
+        Field limitField = PdfViewerActivity.class.getDeclaredField("MAX_CACHED_PAGES");
+        limitField.setAccessible(true);
+        int maxCachedPages = limitField.getInt(null);
+        long largestPageBytes = (long) PageRasterizer.MAX_RENDER_DIMENSION * PageRasterizer.MAX_RENDER_DIMENSION * 4;
+        assertTrue("Cache grew past its limit: " + report,
+                report.peakBitmapBytes <= maxCachedPages * largestPageBytes);
+        simulator.close();
+        assertTrue("Closing the activity should close the page source", source.isClosed());
+    }
+
+    @Test
+    public void zoomingAndPanningDoNotRerender() throws Exception {
+        ScrollSimulator simulator = ScrollSimulator.open(letterDocument());
+        int rendersBefore = simulator.report().renders;
+
+        simulator.zoomTo(2f).pan(-40f, -60f).pan(40f, 60f).zoomTo(1f).settle();
+
+        assertEquals("Zoom is a view transform in list mode: " + simulator.report(),
+                rendersBefore, simulator.report().renders);
+        simulator.close();
+    }
+
+    private static ScrollSimulator.Report readingSession() throws Exception {
+        ScrollSimulator simulator = ScrollSimulator.open(letterDocument());
+        // Read a few pages, glance back, then skim ahead
+        simulator.scroll(1200, 60)
+                .scroll(-400, 20)
+                .fling(6000)
+                .settle()
+                .zoomTo(1.5f)
+                .zoomTo(1f)
+                .scroll(800, 40)
+                .settle();
+        ScrollSimulator.Report report = simulator.report();
+        simulator.close();
+        return report;
+    }
+
+    private static FakePageSource letterDocument() {
+        FakePageSource source = new FakePageSource(PAGE_COUNT, PAGE_WIDTH, PAGE_HEIGHT);
+        // A few landscape pages, as in mixed attachments
+        source.setPageSize(10, PAGE_HEIGHT, PAGE_WIDTH);
+        source.setPageSize(11, PAGE_HEIGHT, PAGE_WIDTH);
+        source.setRenderCost(RENDER_MILLIS, 0L);
+        return source;
+    }
+}
@@ -0,0 +1,215 @@
+package org.ameelio.pdfviewer;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.robolectric.Robolectric;
+import org.robolectric.android.controller.ActivityController;
+
+/**
+ * Replays a scripted reading session (scrolls, flings and zooms) against the activity's page
+ * list with a {@link FakePageSource} behind it, one 16 ms frame at a time, and reports what it
+ * cost: renders, cache hits and misses, peak resident bitmap bytes and main-thread time.
+ *
+ * <p>Everything runs on the test thread in a fixed order, so the same script always produces
+ * the same counts. The render worker is modelled as one thread that is busy for each render's
+ * simulated cost; its finished pages reach the main thread on the next frame.</p>
+ */
+final class ScrollSimulator {
+
+    static final long FRAME_MILLIS = 16L;
+    private static final int MAX_SETTLE_FRAMES = 600;
+
+    /** What a session cost. Counts are deterministic; real main-thread nanos are not. */
+    static final class Report {
+        int frames;
+        int renders;
+        long cacheHits;
+        long cacheMisses;
+        long peakBitmapBytes;
+        /** Simulated render cost spent on the main thread, e.g. by a synchronous render. */
+        long mainThreadRenderMillis;
+        /** Wall time the main thread spent on frames, measured on this JVM. */
+        long mainThreadNanos;
+        long longestFrameNanos;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "frames=%d renders=%d cacheHits=%d cacheMisses=%d peakBitmapBytes=%d " +
+                            "mainThreadRenderMillis=%d mainThreadMillis=%.1f longestFrameMillis=%.1f",
+                    frames, renders, cacheHits, cacheMisses, peakBitmapBytes, mainThreadRenderMillis,
+                    mainThreadNanos / 1e6, longestFrameNanos / 1e6);
+        }
+    }
+
+    private final ActivityController<PdfViewerActivity> controller;
+    private final PdfViewerActivity activity;
+    private final FakePageSource source;
+    private final RecyclerView list;
+    private final ZoomCoordinator zoomCoordinator;
+    private final BlockingQueue<Runnable> renderQueue;
+    private final Method residentPageBytes;
+    private final long baseHits;
+    private final long baseMisses;
+    private final Report report = new Report();
+    private long nowMillis = 0L;
+    private long workerBusyUntilMillis = 0L;
+
+    private ScrollSimulator(FakePageSource source) throws Exception {
+        this.source = source;
+        controller = Robolectric.buildActivity(PdfViewerActivity.class).create().resume().visible();
+        activity = controller.get();
+        list = activity.findViewById(R.id.pdfRecyclerView);
+
+        // A pool whose factory never makes a thread: renders wait in its queue until the
+        // simulator runs them, and cancelQueued() still clears them as on a device
+        renderQueue = new LinkedBlockingQueue<>();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, renderQueue,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return null;
+                    }
+                });
+        setField("pageRenderWorker", new PageRenderWorker(executor, new Handler(Looper.getMainLooper())));
+        zoomCoordinator = (ZoomCoordinator) getField("zoomCoordinator");
+        residentPageBytes = PdfViewerActivity.class.getDeclaredMethod("getResidentPageBytes");
+        residentPageBytes.setAccessible(true);
+
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        baseHits = metrics.counter(MetricsRegistry.CACHE_HITS).get();
+        baseMisses = metrics.counter(MetricsRegistry.CACHE_MISSES).get();
+
+        activity.showOpenedDocument(new DocumentHandle(source, null, TestPdfs.DIRECT_EXECUTOR));
+    }
+
+    /**
+     * Opens the source in a fresh visible activity and lets the first screen of pages render.
+     */
+    static ScrollSimulator open(FakePageSource source) throws Exception {
+        ScrollSimulator simulator = new ScrollSimulator(source);
+        simulator.settle();
+        return simulator;
+    }
+
+    PdfViewerActivity getActivity() {
+        return activity;
+    }
+
+    /**
+     * Scrolls by {@code distance} pixels spread evenly over {@code frames} frames, as a finger
+     * drag would.
+     */
+    ScrollSimulator scroll(int distance, int frames) throws Exception {
+        int done = 0;
+        for (int i = 1; i <= frames; i++) {
+            int target = (int) ((long) distance * i / frames);
+            list.scrollBy(0, target - done);
+            done = target;
+            runFrame();
+        }
+        return this;
+    }
+
+    /**
+     * Flings the list and runs frames until it comes to rest.
+     */
+    ScrollSimulator fling(int velocityY) throws Exception {
+        list.fling(0, velocityY);
+        runFrame();
+        for (int i = 0; i < MAX_SETTLE_FRAMES && list.getScrollState() != RecyclerView.SCROLL_STATE_IDLE; i++) {
+            runFrame();
+        }
+        return this;
+    }
+
+    ScrollSimulator zoomTo(float scale) throws Exception {
+        zoomCoordinator.propagateScale(scale, Float.NaN, Float.NaN);
+        runFrame();
+        return this;
+    }
+
+    ScrollSimulator pan(float dx, float dy) throws Exception {
+        zoomCoordinator.propagatePan(dx, dy);
+        runFrame();
+        return this;
+    }
+
+    /**
+     * Runs frames until the worker is idle and no requested page is outstanding.
+     */
+    ScrollSimulator settle() throws Exception {
+        runFrame();
+        for (int i = 0; i < MAX_SETTLE_FRAMES && (!renderQueue.isEmpty() || hasPendingRenders()); i++) {
+            runFrame();
+        }
+        return this;
+    }
+
+    /**
+     * Advances one frame: the main thread handles everything due, then the worker renders
+     * for as long as the frame lasted.
+     */
+    void runFrame() throws Exception {
+        long renderMillisBefore = source.getTotalRenderMillis();
+        long start = System.nanoTime();
+        // Timed per message when a stall detector is installed
+        MainThreadSlices.run(MainThreadStallDetector.getInstalled(), FRAME_MILLIS);
+        long elapsed = System.nanoTime() - start;
+        report.mainThreadNanos += elapsed;
+        report.longestFrameNanos = Math.max(report.longestFrameNanos, elapsed);
+        report.mainThreadRenderMillis += source.getTotalRenderMillis() - renderMillisBefore;
+        nowMillis += FRAME_MILLIS;
+        report.frames++;
+
+        workerBusyUntilMillis = Math.max(workerBusyUntilMillis, nowMillis - FRAME_MILLIS);
+        Runnable render;
+        while (workerBusyUntilMillis < nowMillis && (render = renderQueue.poll()) != null) {
+            long before = source.getTotalRenderMillis();
+            render.run();
+            workerBusyUntilMillis += source.getTotalRenderMillis() - before;
+        }
+
+        report.peakBitmapBytes = Math.max(report.peakBitmapBytes, (Long) residentPageBytes.invoke(activity));
+    }
+
+    Report report() {
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        report.renders = source.getRenderCount();
+        report.cacheHits = metrics.counter(MetricsRegistry.CACHE_HITS).get() - baseHits;
+        report.cacheMisses = metrics.counter(MetricsRegistry.CACHE_MISSES).get() - baseMisses;
+        return report;
+    }
+
+    void close() {
+        controller.pause().stop().destroy();
+    }
+
+    private boolean hasPendingRenders() throws Exception {
+        return activity.getPendingRenderCount() > 0;
+    }
+
+    private Object getField(String name) throws Exception {
+        Field field = PdfViewerActivity.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(activity);
+    }
+
+    private void setField(String name, Object value) throws Exception {
+        Field field = PdfViewerActivity.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(activity, value);
+    }
+}
@@ -0,0 +1,333 @@
+package org.ameelio.pdfviewer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes PDF files of any shape a performance test needs: hundreds of pages, huge or very tall
+ * pages, dense vector art, embedded scanned images and blank pages. The bytes are produced
+ * directly, without PdfDocument or a Canvas, so generation works on a plain JVM with no network
+ * access, and the same settings and seed always produce the same file.
+ *
+ * <p>{@link #toPageSource()} gives a {@link FakePageSource} with the same page sizes and a
+ * render cost that grows with the page's content, for tests that exercise the viewer without
+ * rendering real PDF bytes.</p>
+ */
+final class SyntheticPdf {
+
+    /** Largest page side PDF 1.4 allows, in points (200 inches). */
+    static final int MAX_PAGE_SIZE = 14400;
+
+    // Rough render cost model for the fake source: fixed, per vector path, per image megapixel
+    private static final long BASE_RENDER_MILLIS = 5L;
+    private static final int PATHS_PER_MILLI = 100;
+    private static final long MILLIS_PER_IMAGE_MEGAPIXEL = 25L;
+
+    private final int pageCount;
+    private final int[] widths;
+    private final int[] heights;
+    private final boolean[] blank;
+    private final int[] imageWidths;
+    private final int[] imageHeights;
+    private int vectorPathsPerPage = 0;
+    private long seed = 1L;
+
+    /**
+     * Creates a document whose pages all have the given size in points, each with a line of
+     * text and no other content.
+     */
+    SyntheticPdf(int pageCount, int width, int height) {
+        if (pageCount <= 0) {
+            throw new IllegalArgumentException("A PDF needs at least one page");
+        }
+        this.pageCount = pageCount;
+        widths = new int[pageCount];
+        heights = new int[pageCount];
+        blank = new boolean[pageCount];
+        imageWidths = new int[pageCount];
+        imageHeights = new int[pageCount];
+        Arrays.fill(widths, checkPageSide(width));
+        Arrays.fill(heights, checkPageSide(height));
+    }
+
+    /**
+     * A worst case modelled on the large scanned attachments the viewer has to cope with: Letter
+     * pages with dense vector content, every fifth page a 150 dpi scan, a few blank separator
+     * pages, and occasional very tall and huge pages.
+     */
+    static SyntheticPdf largeMixedDocument(int pageCount) {
+        SyntheticPdf pdf = new SyntheticPdf(pageCount, 612, 792);
+        pdf.setVectorPathsPerPage(400);
+        for (int i = 0; i < pageCount; i++) {
+            if (i % 5 == 4) {
+                pdf.setScannedImage(i, 1275, 1650);
+            } else if (i % 37 == 36) {
+                pdf.setBlank(i);
+            } else if (i % 50 == 20) {
+                pdf.setPageSize(i, 612, MAX_PAGE_SIZE);
+            } else if (i % 97 == 60) {
+                pdf.setPageSize(i, MAX_PAGE_SIZE, MAX_PAGE_SIZE);
+            }
+        }
+        return pdf;
+    }
+
+    int getPageCount() {
+        return pageCount;
+    }
+
+    int getPageWidth(int pageIndex) {
+        return widths[pageIndex];
+    }
+
+    int getPageHeight(int pageIndex) {
+        return heights[pageIndex];
+    }
+
+    void setPageSize(int pageIndex, int width, int height) {
+        widths[pageIndex] = checkPageSide(width);
+        heights[pageIndex] = checkPageSide(height);
+    }
+
+    /**
+     * Leaves the page without any content.
+     */
+    void setBlank(int pageIndex) {
+        blank[pageIndex] = true;
+        imageWidths[pageIndex] = 0;
+        imageHeights[pageIndex] = 0;
+    }
+
+    /**
+     * Covers the page with a grayscale scan of the given pixel size, stretched to the page.
+     */
+    void setScannedImage(int pageIndex, int pixelWidth, int pixelHeight) {
+        if (pixelWidth <= 0 || pixelHeight <= 0) {
+            throw new IllegalArgumentException("Image size must be positive");
+        }
+        blank[pageIndex] = false;
+        imageWidths[pageIndex] = pixelWidth;
+        imageHeights[pageIndex] = pixelHeight;
+    }
+
+    /**
+     * Sets how many stroked and filled paths each non-blank page draws, for vector-heavy
+     * content such as CAD drawings or charts.
+     */
+    void setVectorPathsPerPage(int paths) {
+        vectorPathsPerPage = paths;
+    }
+
+    /** Seeds the random content, so different documents with the same layout differ. */
+    void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns a fake page source with this document's page sizes and a render cost following
+     * its content: a fixed part, plus vector paths, plus scanned megapixels.
+     */
+    FakePageSource toPageSource() {
+        FakePageSource source = new FakePageSource(pageCount, widths[0], heights[0]);
+        for (int i = 0; i < pageCount; i++) {
+            source.setPageSize(i, widths[i], heights[i]);
+            long cost = BASE_RENDER_MILLIS;
+            if (!blank[i]) {
+                cost += vectorPathsPerPage / PATHS_PER_MILLI;
+                cost += MILLIS_PER_IMAGE_MEGAPIXEL * imageWidths[i] * imageHeights[i] / 1_000_000L;
+            }
+            source.setPageRenderMillis(i, cost);
+        }
+        return source;
+    }
+
+    /**
+     * Writes the document to a file, returning its size in bytes.
+     */
+    long writeTo(File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024)) {
+            return writeTo(out);
+        }
+    }
+
+    /**
+     * Writes the document, returning the number of bytes written. The stream is not closed.
+     */
+    long writeTo(OutputStream destination) throws IOException {
+        // Object numbers: 1 catalog, 2 page tree, 3 font, then per page its dictionary, its
+        // content stream and, for scans, its image
+        int[] pageObjects = new int[pageCount];
+        int next = 4;
+        for (int i = 0; i < pageCount; i++) {
+            pageObjects[i] = next;
+            next += hasImage(i) ? 3 : 2;
+        }
+        long[] offsets = new long[next];
+        CountingOutputStream out = new CountingOutputStream(destination);
+
+        out.write(new byte[] {'%', 'P', 'D', 'F', '-', '1', '.', '4', '\n',
+                '%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n'});
+
+        offsets[1] = out.count;
+        write(out, "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+
+        offsets[2] = out.count;
+        StringBuilder kids = new StringBuilder();
+        for (int i = 0; i < pageCount; i++) {
+            kids.append(pageObjects[i]).append(" 0 R ");
+        }
+        write(out, "2 0 obj\n<< /Type /Pages /Count " + pageCount + " /Kids [" + kids + "] >>\nendobj\n");
+
+        offsets[3] = out.count;
+        write(out, "3 0 obj\n<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>\nendobj\n");
+
+        Random random = new Random(seed);
+        for (int i = 0; i < pageCount; i++) {
+            int pageObject = pageObjects[i];
+            int contentObject = pageObject + 1;
+            int imageObject = pageObject + 2;
+            String resources = hasImage(i)
+                    ? "<< /Font << /F1 3 0 R >> /XObject << /Im0 " + imageObject + " 0 R >> >>"
+                    : "<< /Font << /F1 3 0 R >> >>";
+
+            offsets[pageObject] = out.count;
+            write(out, pageObject + " 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 " +
+                    widths[i] + " " + heights[i] + "] /Resources " + resources +
+                    " /Contents " + contentObject + " 0 R >>\nendobj\n");
+
+            offsets[contentObject] = out.count;
+            writeStream(out, contentObject, "", pageContent(i, random));
+
+            if (hasImage(i)) {
+                offsets[imageObject] = out.count;
+                writeStream(out, imageObject, "/Type /XObject /Subtype /Image /Width " + imageWidths[i] +
+                                " /Height " + imageHeights[i] + " /ColorSpace /DeviceGray /BitsPerComponent 8 ",
+                        scan(imageWidths[i], imageHeights[i], random));
+            }
+        }
+
+        long xref = out.count;
+        StringBuilder table = new StringBuilder();
+        table.append("xref\n0 ").append(next).append('\n');
+        table.append("0000000000 65535 f \n");
+        for (int object = 1; object < next; object++) {
+            table.append(String.format(Locale.US, "%010d 00000 n \n", offsets[object]));
+        }
+        table.append("trailer\n<< /Size ").append(next).append(" /Root 1 0 R >>\n");
+        table.append("startxref\n").append(xref).append("\n%%EOF\n");
+        write(out, table.toString());
+        out.flush();
+        return out.count;
+    }
+
+    private boolean hasImage(int pageIndex) {
+        return imageWidths[pageIndex] > 0;
+    }
+
+    private byte[] pageContent(int pageIndex, Random random) {
+        if (blank[pageIndex]) {
+            return new byte[0];
+        }
+        int width = widths[pageIndex];
+        int height = heights[pageIndex];
+        StringBuilder content = new StringBuilder();
+        if (hasImage(pageIndex)) {
+            content.append("q ").append(width).append(" 0 0 ").append(height).append(" 0 0 cm /Im0 Do Q\n");
+        }
+        content.append("0 g BT /F1 24 Tf 36 ").append(Math.max(0, height - 48))
+                .append(" Td (Page ").append(pageIndex + 1).append(") Tj ET\n");
+        for (int p = 0; p < vectorPathsPerPage; p++) {
+            float x = random.nextFloat() * width;
+            float y = random.nextFloat() * height;
+            content.append(String.format(Locale.US, "%.2f g %.1f w ", random.nextFloat(), 0.2f + random.nextFloat()));
+            if ((p & 3) == 0) {
+                // A filled box, as in table cells or chart bars
+                content.append(String.format(Locale.US, "%.1f %.1f %.1f %.1f re f\n",
+                        x, y, random.nextFloat() * width / 8, random.nextFloat() * height / 16));
+            } else {
+                content.append(String.format(Locale.US, "%.1f %.1f m %.1f %.1f %.1f %.1f %.1f %.1f c S\n",
+                        x, y,
+                        random.nextFloat() * width, random.nextFloat() * height,
+                        random.nextFloat() * width, random.nextFloat() * height,
+                        random.nextFloat() * width, random.nextFloat() * height));
+            }
+        }
+        return content.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns grayscale pixels that look like a scanned page to a compressor: light paper with
+     * sensor noise and dark bands where lines of text would be.
+     */
+    private static byte[] scan(int width, int height, Random random) {
+        byte[] pixels = new byte[width * height];
+        int lineHeight = Math.max(4, height / 60);
+        for (int y = 0; y < height; y++) {
+            boolean textRow = (y / lineHeight) % 2 == 1 && y % lineHeight > lineHeight / 4;
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int value = 235 + random.nextInt(20);
+                if (textRow && random.nextInt(3) == 0) {
+                    value = 20 + random.nextInt(60);
+                }
+                pixels[row + x] = (byte) value;
+            }
+        }
+        return pixels;
+    }
+
+    private static void writeStream(CountingOutputStream out, int object, String dictionary, byte[] data)
+            throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+            deflater.write(data);
+        }
+        write(out, object + " 0 obj\n<< " + dictionary + "/Filter /FlateDecode /Length " +
+                compressed.size() + " >>\nstream\n");
+        compressed.writeTo(out);
+        write(out, "\nendstream\nendobj\n");
+    }
+
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static int checkPageSide(int points) {
+        if (points <= 0 || points > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page side must be 1-" + MAX_PAGE_SIZE + " points: " + points);
+        }
+        return points;
+    }
+
+    /** Tracks byte offsets for the cross-reference table. */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        long count = 0L;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
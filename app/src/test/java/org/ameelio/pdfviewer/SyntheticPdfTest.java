@@ -0,0 +1,104 @@
+package org.ameelio.pdfviewer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class SyntheticPdfTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void crossReferenceTablePointsAtEveryObject() throws Exception {
+        SyntheticPdf pdf = new SyntheticPdf(5, 612, 792);
+        pdf.setVectorPathsPerPage(20);
+        pdf.setBlank(1);
+        pdf.setScannedImage(2, 40, 50);
+        pdf.setPageSize(3, 612, SyntheticPdf.MAX_PAGE_SIZE);
+        pdf.setPageSize(4, SyntheticPdf.MAX_PAGE_SIZE, SyntheticPdf.MAX_PAGE_SIZE);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = pdf.writeTo(out);
+        byte[] bytes = out.toByteArray();
+        // ISO-8859-1 keeps one char per byte, so string indexes are byte offsets
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+
+        assertEquals(bytes.length, written);
+        assertTrue(text.startsWith("%PDF-1.4\n"));
+        assertTrue(text.endsWith("%%EOF\n"));
+        assertTrue(text.contains("/Count 5 "));
+        assertTrue(text.contains("/MediaBox [0 0 612 14400]"));
+        assertTrue(text.contains("/MediaBox [0 0 14400 14400]"));
+        assertTrue(text.contains("/Subtype /Image /Width 40 /Height 50"));
+
+        Matcher startxref = Pattern.compile("startxref\n(\\d+)\n%%EOF\n$").matcher(text);
+        assertTrue(startxref.find());
+        int xref = Integer.parseInt(startxref.group(1));
+        assertTrue(text.startsWith("xref\n0 ", xref));
+        Matcher entry = Pattern.compile("(\\d{10}) 00000 n \n").matcher(text);
+        int object = 1;
+        int searchFrom = xref;
+        while (entry.find(searchFrom)) {
+            int offset = Integer.parseInt(entry.group(1));
+            assertTrue("Object " + object + " is not at " + offset, text.startsWith(object + " 0 obj\n", offset));
+            object++;
+            searchFrom = entry.end();
+        }
+        // Catalog, page tree and font, two objects per page and the one image
+        assertEquals(3 + 5 * 2 + 1, object - 1);
+    }
+
+    @Test
+    public void sameSettingsWriteSameBytes() throws Exception {
+        SyntheticPdf pdf = new SyntheticPdf(3, 300, 400);
+        pdf.setVectorPathsPerPage(50);
+        pdf.setScannedImage(1, 64, 64);
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        pdf.writeTo(first);
+        pdf.writeTo(second);
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+
+        pdf.setSeed(2L);
+        ByteArrayOutputStream reseeded = new ByteArrayOutputStream();
+        pdf.writeTo(reseeded);
+        assertFalse(Arrays.equals(first.toByteArray(), reseeded.toByteArray()));
+    }
+
+    @Test
+    public void largeMixedDocumentCoversTheWorstCases() throws Exception {
+        SyntheticPdf pdf = SyntheticPdf.largeMixedDocument(581);
+        FakePageSource source = pdf.toPageSource();
+
+        assertEquals(581, source.getPageCount());
+        boolean tall = false;
+        boolean huge = false;
+        for (int i = 0; i < pdf.getPageCount(); i++) {
+            tall |= pdf.getPageWidth(i) < pdf.getPageHeight(i) && pdf.getPageHeight(i) == SyntheticPdf.MAX_PAGE_SIZE;
+            huge |= pdf.getPageWidth(i) == SyntheticPdf.MAX_PAGE_SIZE;
+        }
+        assertTrue("Expected a very tall page", tall);
+        assertTrue("Expected a huge page", huge);
+
+        File file = folder.newFile("mixed.pdf");
+        long size = SyntheticPdf.largeMixedDocument(12).writeTo(file);
+        assertEquals(file.length(), size);
+        assertTrue("Scanned pages should make the file large: " + size, size > 1024 * 1024);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPagesLargerThanPdfAllows() {
+        new SyntheticPdf(1, 612, SyntheticPdf.MAX_PAGE_SIZE + 1);
+    }
+}
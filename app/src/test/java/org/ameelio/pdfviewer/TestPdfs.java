@@ -0,0 +1,217 @@
+package org.ameelio.pdfviewer;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.pdf.PdfDocument;
+import android.graphics.pdf.PdfRenderer;
+import android.net.Uri;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Shared helpers for tests that need a real PDF served through a content URI.
+ */
+final class TestPdfs {
+
+    static final String AUTHORITY = "org.ameelio.pdfviewer.test.pdfs";
+
+    private static int nextDocumentId = 1;
+    // Every registered URI stays resolvable, so a test can switch between documents
+    private static final Map<String, File> documents = new HashMap<>();
+    private static final Map<String, RuntimeException> failures = new HashMap<>();
+
+    /** Runs document teardown on the calling thread, so tests can assert on it right away. */
+    static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private TestPdfs() {
+    }
+
+    /**
+     * Opens the file as a document handle that tears down synchronously.
+     */
+    static DocumentHandle openDocument(File pdfFile) throws IOException {
+        return openDocument(ParcelFileDescriptor.open(pdfFile, ParcelFileDescriptor.MODE_READ_ONLY));
+    }
+
+    static DocumentHandle openDocument(ParcelFileDescriptor descriptor) throws IOException {
+        return new DocumentHandle(new PdfRenderer(descriptor), descriptor, DIRECT_EXECUTOR);
+    }
+
+    static File createPdfFile(int pageCount) throws IOException {
+        File cacheDir = RuntimeEnvironment.getApplication().getCacheDir();
+        File pdfFile = File.createTempFile("test-doc", ".pdf", cacheDir);
+
+        PdfDocument document = new PdfDocument();
+        Paint paint = new Paint();
+        paint.setColor(Color.BLACK);
+        paint.setTextSize(12f);
+        for (int i = 0; i < pageCount; i++) {
+            PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(100, 100, i + 1).create();
+            PdfDocument.Page page = document.startPage(pageInfo);
+            Canvas canvas = page.getCanvas();
+            canvas.drawText("Page " + (i + 1), 10, 50, paint);
+            document.finishPage(page);
+        }
+
+        try (FileOutputStream outputStream = new FileOutputStream(pdfFile)) {
+            document.writeTo(outputStream);
+        } finally {
+            document.close();
+        }
+        return pdfFile;
+    }
+
+    /**
+     * Writes a generated document, e.g. {@link SyntheticPdf#largeMixedDocument}, to the cache
+     * directory.
+     */
+    static File createPdfFile(SyntheticPdf pdf) throws IOException {
+        File cacheDir = RuntimeEnvironment.getApplication().getCacheDir();
+        File pdfFile = File.createTempFile("synthetic-doc", ".pdf", cacheDir);
+        pdf.writeTo(pdfFile);
+        return pdfFile;
+    }
+
+    /**
+     * Waits for the document an activity started opening in the background to arrive on the
+     * main thread and be shown.
+     */
+    static void awaitOpen(PdfViewerActivity activity) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            shadowOf(Looper.getMainLooper()).idle();
+            if (!activity.isOpeningDocument()) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Document did not open in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Waits until every page render the activity requested has been delivered to the UI, running
+     * frames so render batches go out.
+     */
+    static void awaitRenders(PdfViewerActivity activity) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(17));
+            if (activity.getPendingRenderCount() == 0) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Pages did not render in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Serves the file through a content provider and returns its URI, mirroring how documents
+     * arrive from other apps.
+     */
+    static Uri register(File pdfFile) {
+        String documentId = String.valueOf(nextDocumentId++);
+        documents.put(documentId, pdfFile);
+        return installProvider(documentId);
+    }
+
+    /**
+     * Returns a URI the provider refuses to open with the given exception, e.g. a
+     * SecurityException as when the sending app has revoked its grant.
+     */
+    static Uri registerFailure(RuntimeException failure) {
+        String documentId = String.valueOf(nextDocumentId++);
+        failures.put(documentId, failure);
+        return installProvider(documentId);
+    }
+
+    private static Uri installProvider(String documentId) {
+        FileProvider provider = new FileProvider();
+        ProviderInfo providerInfo = new ProviderInfo();
+        providerInfo.authority = AUTHORITY;
+        provider.attachInfo(RuntimeEnvironment.getApplication(), providerInfo);
+        ShadowContentResolver shadowContentResolver =
+                shadowOf(RuntimeEnvironment.getApplication().getContentResolver());
+        shadowContentResolver.registerProviderInternal(AUTHORITY, provider);
+
+        return new Uri.Builder()
+                .scheme("content")
+                .authority(AUTHORITY)
+                .appendPath("documents")
+                .appendPath(documentId)
+                .build();
+    }
+
+    private static class FileProvider extends ContentProvider {
+
+        @Override
+        public boolean onCreate() {
+            return true;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+            return null;
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            return "application/pdf";
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            return null;
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            return 0;
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+            return 0;
+        }
+
+        @Override
+        public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+            RuntimeException failure = failures.get(uri.getLastPathSegment());
+            if (failure != null) {
+                throw failure;
+            }
+            File pdfFile = documents.get(uri.getLastPathSegment());
+            if (pdfFile == null) {
+                throw new FileNotFoundException("No test document for " + uri);
+            }
+            return ParcelFileDescriptor.open(pdfFile, ParcelFileDescriptor.MODE_READ_ONLY);
+        }
+    }
+}
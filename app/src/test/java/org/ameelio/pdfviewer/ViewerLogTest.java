@@ -0,0 +1,67 @@
+package org.ameelio.pdfviewer;
+
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ViewerLogTest {
+
+    private static final String TAG = "ViewerLogTest";
+
+    @Test
+    public void disabledLevelsLogNothing() {
+        ShadowLog.setLoggable(TAG, Log.INFO);
+        ViewerLog log = new ViewerLog(TAG);
+
+        log.d("Page %d", 3);
+        log.v("Page %d of %d", 3, 4);
+
+        assertFalse(log.isDebugEnabled());
+        assertTrue(ShadowLog.getLogsForTag(TAG).isEmpty());
+    }
+
+    @Test
+    public void enabledLevelsFormatLazily() {
+        ShadowLog.setLoggable(TAG, Log.DEBUG);
+        ViewerLog log = new ViewerLog(TAG);
+
+        log.d("Removing page %d (keep %d-%d)", 7, 2, 5);
+        log.v("Not logged");
+
+        assertEquals(1, ShadowLog.getLogsForTag(TAG).size());
+        assertEquals("Removing page 7 (keep 2-5)", ShadowLog.getLogsForTag(TAG).get(0).msg);
+    }
+
+    @Test
+    public void infoLogsWithoutDebug() {
+        ShadowLog.setLoggable(TAG, Log.INFO);
+        ViewerLog log = new ViewerLog(TAG);
+
+        log.i("Setting up paged view for %d pages", 12);
+        log.d("onScale -> scale=%.3f span=%.1f focus=(%.1f,%.1f)", 1.5f, 200f, 10f, 20f);
+
+        assertTrue(log.isInfoEnabled());
+        assertEquals(1, ShadowLog.getLogsForTag(TAG).size());
+        assertEquals("Setting up paged view for 12 pages", ShadowLog.getLogsForTag(TAG).get(0).msg);
+    }
+
+    @Test
+    public void refreshPicksUpNewLevels() {
+        ShadowLog.setLoggable(TAG, Log.INFO);
+        ViewerLog log = new ViewerLog(TAG);
+
+        ShadowLog.setLoggable(TAG, Log.VERBOSE);
+        log.refresh();
+
+        assertTrue(log.isDebugEnabled());
+        assertTrue(log.isVerboseEnabled());
+    }
+}
@@ -0,0 +1,167 @@
+package org.ameelio.pdfviewer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ZoomCoordinatorTest {
+
+    private ManualFrameScheduler frames;
+    private ZoomCoordinator coordinator;
+    private RecordingListener listener;
+
+    @Before
+    public void setUp() {
+        frames = new ManualFrameScheduler();
+        coordinator = new ZoomCoordinator(frames);
+        listener = new RecordingListener();
+        coordinator.register(listener);
+        coordinator.registerPanListener(listener);
+        listener.events.clear();
+    }
+
+    @Test
+    public void scaleUpdatesAreCoalescedIntoOneDispatchPerFrame() {
+        coordinator.propagateScale(1.5f, Float.NaN, Float.NaN);
+        coordinator.propagateScale(1.8f, Float.NaN, Float.NaN);
+        coordinator.propagateScale(2.0f, Float.NaN, Float.NaN);
+
+        assertEquals("Current scale should be visible before the frame runs",
+                2.0f, coordinator.getCurrentScale(), 0.0001f);
+        assertTrue("Nothing should be dispatched until the frame", listener.events.isEmpty());
+        assertEquals("Only one frame callback should be scheduled", 1, frames.pendingCallbackCount());
+
+        frames.runFrame();
+
+        assertEquals(1, listener.events.size());
+        assertEquals("scale:2.0", listener.events.get(0));
+    }
+
+    @Test
+    public void panDeltasAreSummedWithinAFrame() {
+        coordinator.propagatePan(1f, 2f);
+        coordinator.propagatePan(3f, 4f);
+        coordinator.propagatePan(0f, 0f);
+
+        frames.runFrame();
+
+        assertEquals(1, listener.events.size());
+        assertEquals("pan:4.0,6.0", listener.events.get(0));
+    }
+
+    @Test
+    public void panRecordedBeforeScaleIsDeliveredFirst() {
+        coordinator.propagatePan(5f, 0f);
+        coordinator.propagateScale(2f, Float.NaN, Float.NaN);
+        coordinator.propagatePan(0f, 7f);
+        coordinator.propagateFling(100f, 200f);
+
+        frames.runFrame();
+
+        assertEquals(4, listener.events.size());
+        assertEquals("pan:5.0,0.0", listener.events.get(0));
+        assertEquals("scale:2.0", listener.events.get(1));
+        assertEquals("pan:0.0,7.0", listener.events.get(2));
+        assertEquals("fling:100.0,200.0", listener.events.get(3));
+    }
+
+    @Test
+    public void stopFlingIsDeliveredImmediatelyAndDropsPendingFling() {
+        coordinator.propagateFling(100f, 200f);
+        coordinator.stopFling();
+
+        assertEquals(1, listener.events.size());
+        assertEquals("stop", listener.events.get(0));
+
+        frames.runFrame();
+        assertEquals("Pending fling should be discarded once stopped", 1, listener.events.size());
+    }
+
+    @Test
+    public void idleFramesAreNotScheduled() {
+        frames.runFrame();
+        assertEquals(0, frames.pendingCallbackCount());
+
+        coordinator.propagatePan(1f, 1f);
+        frames.runFrame();
+        assertEquals("A frame should only be requested while updates are pending",
+                0, frames.pendingCallbackCount());
+    }
+
+    @Test
+    public void registrationIsExplicitAndIgnoresDuplicates() {
+        assertEquals(1, coordinator.getZoomListenerCount());
+        assertEquals(1, coordinator.getPanListenerCount());
+
+        coordinator.register(listener);
+        coordinator.registerPanListener(listener);
+        assertEquals("Registering twice should not add a second entry", 1, coordinator.getZoomListenerCount());
+        assertEquals(1, coordinator.getPanListenerCount());
+
+        coordinator.unregister(listener);
+        coordinator.unregisterPanListener(listener);
+        assertEquals(0, coordinator.getZoomListenerCount());
+        assertEquals(0, coordinator.getPanListenerCount());
+
+        listener.events.clear();
+        coordinator.propagateScale(2f, Float.NaN, Float.NaN);
+        coordinator.propagatePan(1f, 1f);
+        frames.runFrame();
+        assertTrue("Unregistered listeners should receive nothing", listener.events.isEmpty());
+    }
+
+    @Test
+    public void listenerMayUnregisterDuringDispatch() {
+        final RecordingListener second = new RecordingListener();
+        ZoomCoordinator.ZoomListener selfRemoving = new ZoomCoordinator.ZoomListener() {
+            @Override
+            public void onGlobalScaleChanged(float scale, float focusX, float focusY) {
+                coordinator.unregister(this);
+            }
+        };
+        coordinator.register(selfRemoving);
+        coordinator.register(second);
+        listener.events.clear();
+        second.events.clear();
+
+        coordinator.propagateScale(3f, Float.NaN, Float.NaN);
+        frames.runFrame();
+
+        assertEquals("Dispatch should complete over the registry snapshot", 1, listener.events.size());
+        assertEquals(1, second.events.size());
+        assertEquals(2, coordinator.getZoomListenerCount());
+    }
+
+    private static class RecordingListener implements ZoomCoordinator.ZoomListener, ZoomCoordinator.PanListener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onGlobalScaleChanged(float scale, float focusX, float focusY) {
+            events.add("scale:" + scale);
+        }
+
+        @Override
+        public void onGlobalPanChanged(float dx, float dy) {
+            events.add("pan:" + dx + "," + dy);
+        }
+
+        @Override
+        public void onGlobalFling(float velocityX, float velocityY) {
+            events.add("fling:" + velocityX + "," + velocityY);
+        }
+
+        @Override
+        public void onGlobalFlingStopped() {
+            events.add("stop");
+        }
+    }
+}
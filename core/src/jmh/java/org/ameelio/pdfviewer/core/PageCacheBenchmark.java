@@ -0,0 +1,66 @@
+package org.ameelio.pdfviewer.core;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The app's cache eviction and render prioritization, as run on every scroll event, render
+ * delivery and zoom change. The cache is modelled as the sorted key array the app's SparseArray
+ * keeps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PageCacheBenchmark {
+
+    @Param({"100", "2000"})
+    int pageCount;
+
+    @Param({"3", "12"})
+    int visiblePages;
+
+    private int[] cachedPages;
+    private int[] evictions;
+    private int[] order;
+    private int firstVisible;
+
+    @Setup
+    public void setUp() {
+        // A cache that has collected pages from a long scroll
+        int cached = Math.min(pageCount, 64);
+        cachedPages = new int[cached];
+        for (int i = 0; i < cached; i++) {
+            cachedPages[i] = i * (pageCount / cached);
+        }
+        evictions = new int[cached];
+        order = new int[visiblePages];
+    }
+
+    @Benchmark
+    public int selectEvictionsOutsideKeepRange() {
+        firstVisible = (firstVisible + 7) % (pageCount - visiblePages);
+        return PageCachePolicy.selectEvictions(cachedPages, cachedPages.length, firstVisible,
+                firstVisible + visiblePages - 1, pageCount, evictions);
+    }
+
+    @Benchmark
+    public int selectOverflowEviction() {
+        firstVisible = (firstVisible + 7) % (pageCount - visiblePages);
+        // Alternates between a cache within its limits and one past them
+        return PageCachePolicy.selectOverflowEviction(cachedPages, cachedPages.length,
+                cachedPages.length - (firstVisible & 1), false);
+    }
+
+    @Benchmark
+    public int centerOutRenderOrder() {
+        firstVisible = (firstVisible + 7) % (pageCount - visiblePages);
+        return RenderOrder.centerOut(firstVisible, firstVisible + visiblePages - 1, order);
+    }
+}
@@ -0,0 +1,59 @@
+package org.ameelio.pdfviewer.core;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Scroll-path cost of the document layout: hit-testing a scroll offset, and relaying out after
+ * a page's real size becomes known.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PageGeometryBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    int pageCount;
+
+    private PageGeometry geometry;
+    private float[] offsets;
+    private int next;
+    private int resizedPage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        geometry = new PageGeometry(pageCount, 16, 24);
+        geometry.setContentWidth(1080);
+        for (int i = 0; i < pageCount; i += 3) {
+            // Mix of portrait and landscape pages, as in scanned attachments
+            geometry.setPageSize(i, 612, i % 2 == 0 ? 792 : 500);
+        }
+        offsets = new float[1024];
+        float total = geometry.getTotalHeight();
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = total * i / offsets.length;
+        }
+    }
+
+    @Benchmark
+    public int findPageAt() {
+        next = (next + 1) & (offsets.length - 1);
+        return geometry.findPageAt(offsets[next]);
+    }
+
+    @Benchmark
+    public float relayoutAfterPageSizeChange() {
+        resizedPage = (resizedPage + 1) % pageCount;
+        // Alternate sizes so every call actually changes the layout
+        geometry.setPageSize(resizedPage, 612, (resizedPage & 1) == 0 ? 792 : 800);
+        return geometry.getTotalHeight();
+    }
+}
@@ -0,0 +1,96 @@
+package org.ameelio.pdfviewer.core;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-frame work of a pinch or pan: clamping the new scale, translation and surface viewport,
+ * then delivering the change to every registered listener through a copy-on-write snapshot, all
+ * through the same helpers the app's zoom code calls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ZoomBenchmark {
+
+    interface ScaleListener {
+        void onScaleChanged(float scale);
+    }
+
+    private static final ScaleListener[] NO_LISTENERS = new ScaleListener[0];
+
+    @Param({"1", "4", "16"})
+    int listenerCount;
+
+    private ScaleListener[] listeners = NO_LISTENERS;
+    private float scale = 1f;
+    private float translation = 0f;
+    private float step = 1.03f;
+    private float viewportTop = 0f;
+
+    private final ListenerArrays.Delivery<ScaleListener> scaleDelivery = new ListenerArrays.Delivery<ScaleListener>() {
+        @Override
+        public void deliver(ScaleListener listener) {
+            listener.onScaleChanged(scale);
+        }
+    };
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        for (int i = 0; i < listenerCount; i++) {
+            listeners = ListenerArrays.append(listeners, new ScaleListener() {
+                @Override
+                public void onScaleChanged(float newScale) {
+                    blackhole.consume(newScale);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public float clampPinchFrame() {
+        float next = ZoomMath.clampScale(scale * step);
+        if (next == scale) {
+            // Bounced off a limit: pinch the other way
+            step = 1f / step;
+        }
+        scale = next;
+        translation = ZoomMath.clampTranslation(translation + 37f, 1080, scale);
+        return translation;
+    }
+
+    @Benchmark
+    public float clampSurfaceViewport() {
+        // Scrolls down a 200-page document and wraps around past its end
+        viewportTop = ZoomMath.clampViewportOrigin(viewportTop + 53f, 1920f / scale, 200 * 1400f, false);
+        if (viewportTop >= 200 * 1400f - 1920f / scale) {
+            viewportTop = 0f;
+        }
+        return viewportTop;
+    }
+
+    @Benchmark
+    public void dispatchToListeners() {
+        ListenerArrays.dispatch(listeners, scaleDelivery);
+    }
+
+    @Benchmark
+    public int registerAndUnregister() {
+        ScaleListener extra = new ScaleListener() {
+            @Override
+            public void onScaleChanged(float newScale) {
+            }
+        };
+        listeners = ListenerArrays.append(listeners, extra);
+        listeners = ListenerArrays.remove(listeners, extra);
+        return listeners.length;
+    }
+}
@@ -0,0 +1,64 @@
+package org.ameelio.pdfviewer.core;
+
+import java.util.Arrays;
+
+/**
+ * Copy-on-write helpers for listener arrays. Registration replaces the array, so dispatch can
+ * iterate a snapshot without locking or allocating, however often it runs.
+ */
+public final class ListenerArrays {
+
+    /**
+     * Delivers one event to one listener. Kept as a field by the dispatching class, with the
+     * event's values in fields it reads, so dispatching does not allocate.
+     */
+    public interface Delivery<T> {
+        void deliver(T listener);
+    }
+
+    private ListenerArrays() {
+    }
+
+    /**
+     * Delivers an event to every listener in the snapshot, in registration order. Listeners
+     * registered or removed meanwhile take effect from the next dispatch.
+     */
+    public static <T> void dispatch(T[] listeners, Delivery<T> delivery) {
+        for (T listener : listeners) {
+            delivery.deliver(listener);
+        }
+    }
+
+    /**
+     * Returns an array with the listener appended, or the same array if it is already present.
+     */
+    public static <T> T[] append(T[] listeners, T listener) {
+        for (T existing : listeners) {
+            if (existing == listener) {
+                return listeners;
+            }
+        }
+        T[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        return updated;
+    }
+
+    /**
+     * Returns an array without the listener, or the same array if it was not present.
+     */
+    public static <T> T[] remove(T[] listeners, T listener) {
+        int index = -1;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            return listeners;
+        }
+        T[] updated = Arrays.copyOf(listeners, listeners.length - 1);
+        System.arraycopy(listeners, index + 1, updated, index, listeners.length - index - 1);
+        return updated;
+    }
+}
@@ -0,0 +1,64 @@
+package org.ameelio.pdfviewer.core;
+
+/**
+ * Which rendered pages stay cached: the visible range plus a margin of pages on each side, so a
+ * short scroll back does not render again, and never more pages than the cache may hold.
+ * Everything else is evicted.
+ *
+ * <p>Cached pages are passed as the ascending key array the app's SparseArray keeps.</p>
+ */
+public final class PageCachePolicy {
+
+    /** Pages kept on each side of the visible range. */
+    public static final int KEEP_MARGIN = 2;
+
+    private PageCachePolicy() {
+    }
+
+    public static int keepStart(int firstVisible) {
+        return Math.max(0, firstVisible - KEEP_MARGIN);
+    }
+
+    public static int keepEnd(int lastVisible, int pageCount) {
+        return Math.min(pageCount - 1, lastVisible + KEEP_MARGIN);
+    }
+
+    /**
+     * Writes the cached pages outside the keep range of {@code firstVisible..lastVisible} into
+     * {@code evictions}, in descending order so they can be removed from the key array by index
+     * without shifting the ones still to go.
+     *
+     * @param cachedPages ascending page indices; only the first {@code cachedCount} are read
+     * @param evictions receives the evicted page indices, at least {@code cachedCount} long
+     * @return the number of pages to evict
+     */
+    public static int selectEvictions(int[] cachedPages, int cachedCount, int firstVisible, int lastVisible,
+                                      int pageCount, int[] evictions) {
+        int keepStart = keepStart(firstVisible);
+        int keepEnd = keepEnd(lastVisible, pageCount);
+        int count = 0;
+        for (int i = cachedCount - 1; i >= 0; i--) {
+            int page = cachedPages[i];
+            if (page < keepStart || page > keepEnd) {
+                evictions[count++] = page;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Picks the page to evict after a page was added to the cache: the lowest one, once the
+     * cache holds more than {@code maxCached} pages or the memory budget is used up. The last
+     * page is never evicted for the budget, so something can always be shown.
+     *
+     * @param cachedPages ascending page indices; only the first {@code cachedCount} are read
+     * @return the page to evict, or -1 to keep them all
+     */
+    public static int selectOverflowEviction(int[] cachedPages, int cachedCount, int maxCached,
+                                             boolean overBudget) {
+        if (cachedCount > maxCached || (cachedCount > 1 && overBudget)) {
+            return cachedPages[0];
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,139 @@
+package org.ameelio.pdfviewer.core;
+
+import java.util.Arrays;
+
+/**
+ * Vertical layout of a document's pages at a given content width, computed from page aspect
+ * ratios alone. Pages whose size is not known yet borrow the aspect of the first known page, so
+ * a large document can be laid out without opening every page up front; sizes are refined as
+ * pages get rendered.
+ */
+public class PageGeometry {
+
+    private static final float DEFAULT_ASPECT = 1.4142f; // A4 portrait, height / width
+
+    private final int pageCount;
+    private final float[] aspects;
+    private final float[] pageTops;
+    private float defaultAspect = DEFAULT_ASPECT;
+    private boolean hasKnownAspect = false;
+    private int contentWidth = 0;
+    private final int horizontalMargin;
+    private final int pageGap;
+    private float totalHeight = 0f;
+    private boolean dirty = true;
+
+    public PageGeometry(int pageCount, int horizontalMargin, int pageGap) {
+        this.pageCount = pageCount;
+        this.horizontalMargin = horizontalMargin;
+        this.pageGap = pageGap;
+        this.aspects = new float[pageCount];
+        this.pageTops = new float[pageCount];
+        Arrays.fill(aspects, Float.NaN);
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Records a page's real size.
+     *
+     * @return true if the layout changed as a result
+     */
+    public boolean setPageSize(int pageIndex, int width, int height) {
+        if (pageIndex < 0 || pageIndex >= pageCount || width <= 0 || height <= 0) {
+            return false;
+        }
+        float aspect = (float) height / width;
+        if (aspects[pageIndex] == aspect) {
+            return false;
+        }
+        aspects[pageIndex] = aspect;
+        if (!hasKnownAspect) {
+            hasKnownAspect = true;
+            defaultAspect = aspect;
+        }
+        dirty = true;
+        return true;
+    }
+
+    public boolean hasPageSize(int pageIndex) {
+        return pageIndex >= 0 && pageIndex < pageCount && !Float.isNaN(aspects[pageIndex]);
+    }
+
+    public void setContentWidth(int width) {
+        if (width != contentWidth) {
+            contentWidth = width;
+            dirty = true;
+        }
+    }
+
+    public int getContentWidth() {
+        return contentWidth;
+    }
+
+    public float getPageWidth() {
+        return Math.max(0, contentWidth - 2 * horizontalMargin);
+    }
+
+    public float getPageLeft() {
+        return horizontalMargin;
+    }
+
+    public float getPageTop(int pageIndex) {
+        ensureLayout();
+        return pageTops[pageIndex];
+    }
+
+    public float getPageHeight(int pageIndex) {
+        float aspect = aspects[pageIndex];
+        return getPageWidth() * (Float.isNaN(aspect) ? defaultAspect : aspect);
+    }
+
+    public float getPageBottom(int pageIndex) {
+        return getPageTop(pageIndex) + getPageHeight(pageIndex);
+    }
+
+    public float getTotalHeight() {
+        ensureLayout();
+        return totalHeight;
+    }
+
+    /**
+     * Returns the page covering the given document y, or the nearest page when y falls in a gap
+     * or outside the document. Returns -1 for an empty document.
+     */
+    public int findPageAt(float y) {
+        if (pageCount == 0) {
+            return -1;
+        }
+        ensureLayout();
+        int low = 0;
+        int high = pageCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (pageTops[mid] <= y) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void ensureLayout() {
+        if (!dirty) {
+            return;
+        }
+        float pageWidth = getPageWidth();
+        float y = pageGap / 2f;
+        for (int i = 0; i < pageCount; i++) {
+            pageTops[i] = y;
+            float aspect = aspects[i];
+            y += pageWidth * (Float.isNaN(aspect) ? defaultAspect : aspect) + pageGap;
+        }
+        totalHeight = pageCount > 0 ? y - pageGap / 2f : 0f;
+        dirty = false;
+    }
+}
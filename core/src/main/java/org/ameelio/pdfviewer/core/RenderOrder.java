@@ -0,0 +1,34 @@
+package org.ameelio.pdfviewer.core;
+
+/**
+ * Order in which pages of a visible range are rendered: the page in the middle of the viewport
+ * first, where the reader is most likely looking, then alternately below and above it.
+ */
+public final class RenderOrder {
+
+    private RenderOrder() {
+    }
+
+    /**
+     * Writes the pages {@code first..last} into {@code out} centre first and outward.
+     *
+     * @return the number of pages written, 0 for an empty range
+     */
+    public static int centerOut(int first, int last, int[] out) {
+        if (first < 0 || last < first) {
+            return 0;
+        }
+        int count = 0;
+        int center = (first + last) / 2;
+        out[count++] = center;
+        for (int offset = 1; center - offset >= first || center + offset <= last; offset++) {
+            if (center + offset <= last) {
+                out[count++] = center + offset;
+            }
+            if (center - offset >= first) {
+                out[count++] = center - offset;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,71 @@
+package org.ameelio.pdfviewer.core;
+
+/**
+ * Scale and pan limits shared by the gesture handler, the zoom controls and the zoomed view.
+ */
+public final class ZoomMath {
+
+    public static final float MIN_SCALE = 0.5f;
+    public static final float MAX_SCALE = 5.0f;
+
+    private ZoomMath() {
+    }
+
+    public static float clampScale(float scale) {
+        if (scale < MIN_SCALE) {
+            return MIN_SCALE;
+        }
+        if (scale > MAX_SCALE) {
+            return MAX_SCALE;
+        }
+        return scale;
+    }
+
+    /**
+     * Returns how far a view scaled about its centre may be translated in either direction
+     * before its edge comes away from the viewport edge. Zero when it is not zoomed in.
+     */
+    public static float maxTranslation(int viewSize, float scale) {
+        if (scale <= 1f) {
+            return 0f;
+        }
+        return (viewSize * (scale - 1f)) / 2f;
+    }
+
+    /**
+     * Clamps a translation of a view scaled about its centre so no gap opens at either edge.
+     */
+    public static float clampTranslation(float value, int viewSize, float scale) {
+        return clamp(value, maxTranslation(viewSize, scale));
+    }
+
+    /**
+     * Clamps where a viewport starts along one axis of content it scrolls over, so it never
+     * shows past the content's ends. When the content fits inside the viewport it is centered
+     * if {@code centerWhenSmaller}, or kept at the start otherwise.
+     *
+     * @param visibleSize the viewport's size in content units, i.e. divided by the scale
+     */
+    public static float clampViewportOrigin(float origin, float visibleSize, float contentSize,
+                                            boolean centerWhenSmaller) {
+        if (visibleSize >= contentSize) {
+            return centerWhenSmaller ? (contentSize - visibleSize) / 2f : 0f;
+        }
+        float max = contentSize - visibleSize;
+        if (origin < 0f) return 0f;
+        if (origin > max) return max;
+        return origin;
+    }
+
+    /**
+     * Clamps a value to {@code [-limit, limit]}, or to zero when the limit is not positive.
+     */
+    public static float clamp(float value, float limit) {
+        if (limit <= 0f) {
+            return 0f;
+        }
+        if (value > limit) return limit;
+        if (value < -limit) return -limit;
+        return value;
+    }
+}
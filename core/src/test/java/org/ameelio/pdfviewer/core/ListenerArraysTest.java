@@ -0,0 +1,47 @@
+package org.ameelio.pdfviewer.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ListenerArraysTest {
+
+    @Test
+    public void appendIgnoresDuplicates() {
+        String[] listeners = ListenerArrays.append(new String[0], "a");
+        String[] again = ListenerArrays.append(listeners, listeners[0]);
+
+        assertSame("Adding the same listener twice should keep the array", listeners, again);
+        assertArrayEquals(new String[] {"a"}, again);
+    }
+
+    @Test
+    public void removeKeepsOrderOfRemainingListeners() {
+        String a = "a";
+        String b = "b";
+        String c = "c";
+        String[] listeners = ListenerArrays.append(ListenerArrays.append(ListenerArrays.append(
+                new String[0], a), b), c);
+
+        String[] updated = ListenerArrays.remove(listeners, b);
+
+        assertArrayEquals(new String[] {a, c}, updated);
+        assertArrayEquals("The old snapshot must not change", new String[] {a, b, c}, listeners);
+        assertSame(updated, ListenerArrays.remove(updated, b));
+    }
+
+    @Test
+    public void dispatchDeliversToEverySnapshotListenerInOrder() {
+        final StringBuilder delivered = new StringBuilder();
+        String[] listeners = ListenerArrays.append(ListenerArrays.append(new String[0], "a"), "b");
+
+        ListenerArrays.dispatch(listeners, new ListenerArrays.Delivery<String>() {
+            @Override
+            public void deliver(String listener) {
+                delivered.append(listener);
+            }
+        });
+
+        assertEquals("ab", delivered.toString());
+    }
+}
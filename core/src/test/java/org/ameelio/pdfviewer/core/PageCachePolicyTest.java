@@ -0,0 +1,52 @@
+package org.ameelio.pdfviewer.core;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PageCachePolicyTest {
+
+    @Test
+    public void keepRangeAddsMarginOnBothSides() {
+        assertEquals(8, PageCachePolicy.keepStart(10));
+        assertEquals(14, PageCachePolicy.keepEnd(12, 100));
+    }
+
+    @Test
+    public void keepRangeStopsAtDocumentEdges() {
+        assertEquals(0, PageCachePolicy.keepStart(1));
+        assertEquals(9, PageCachePolicy.keepEnd(9, 10));
+    }
+
+    @Test
+    public void evictsPagesOutsideTheKeepRangeHighestFirst() {
+        int[] cached = {0, 7, 8, 12, 14, 15, 40, -1};
+        int[] evictions = new int[cached.length];
+
+        int count = PageCachePolicy.selectEvictions(cached, 7, 10, 12, 100, evictions);
+
+        assertEquals(4, count);
+        assertArrayEquals(new int[] {40, 15, 7, 0}, Arrays.copyOf(evictions, count));
+    }
+
+    @Test
+    public void evictsNothingInsideTheKeepRange() {
+        int[] cached = {8, 9, 10};
+
+        assertEquals(0, PageCachePolicy.selectEvictions(cached, 3, 9, 9, 20, new int[3]));
+    }
+
+    @Test
+    public void overflowEvictsTheLowestPage() {
+        int[] cached = {3, 4, 5, 6};
+
+        assertEquals(3, PageCachePolicy.selectOverflowEviction(cached, 4, 3, false));
+        assertEquals(-1, PageCachePolicy.selectOverflowEviction(cached, 3, 3, false));
+        assertEquals("Over budget evicts below the count limit", 3,
+                PageCachePolicy.selectOverflowEviction(cached, 2, 3, true));
+        assertEquals("The last page stays even over budget", -1,
+                PageCachePolicy.selectOverflowEviction(cached, 1, 3, true));
+    }
+}
@@ -0,0 +1,49 @@
+package org.ameelio.pdfviewer.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PageGeometryTest {
+
+    @Test
+    public void unknownPagesBorrowFirstKnownAspect() {
+        PageGeometry geometry = new PageGeometry(3, 10, 20);
+        geometry.setContentWidth(220);
+        assertEquals(200f, geometry.getPageWidth(), 0.0001f);
+
+        geometry.setPageSize(0, 100, 150);
+
+        assertEquals(300f, geometry.getPageHeight(0), 0.0001f);
+        assertEquals("Unknown pages should use the known aspect", 300f, geometry.getPageHeight(2), 0.0001f);
+        assertEquals(10f, geometry.getPageTop(0), 0.0001f);
+        assertEquals(10f + 300f + 20f, geometry.getPageTop(1), 0.0001f);
+        assertEquals(3 * 300f + 3 * 20f, geometry.getTotalHeight(), 0.0001f);
+    }
+
+    @Test
+    public void refiningAPageSizeShiftsLaterPages() {
+        PageGeometry geometry = new PageGeometry(3, 0, 0);
+        geometry.setContentWidth(100);
+        geometry.setPageSize(0, 100, 100);
+        float topBefore = geometry.getPageTop(2);
+
+        assertTrue(geometry.setPageSize(1, 100, 300));
+        assertFalse("Same size should not change the layout", geometry.setPageSize(1, 100, 300));
+
+        assertEquals(topBefore + 200f, geometry.getPageTop(2), 0.0001f);
+    }
+
+    @Test
+    public void findPageAtUsesPageTops() {
+        PageGeometry geometry = new PageGeometry(4, 0, 10);
+        geometry.setContentWidth(100);
+        geometry.setPageSize(0, 100, 100);
+
+        assertEquals(0, geometry.findPageAt(-50f));
+        assertEquals(0, geometry.findPageAt(50f));
+        assertEquals(1, geometry.findPageAt(120f));
+        assertEquals(3, geometry.findPageAt(10_000f));
+        assertEquals(-1, new PageGeometry(0, 0, 0).findPageAt(0f));
+    }
+}
@@ -0,0 +1,40 @@
+package org.ameelio.pdfviewer.core;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RenderOrderTest {
+
+    @Test
+    public void centerPageComesFirstThenAlternatesOutward() {
+        int[] order = new int[5];
+
+        int count = RenderOrder.centerOut(3, 7, order);
+
+        assertEquals(5, count);
+        assertArrayEquals(new int[] {5, 6, 4, 7, 3}, order);
+    }
+
+    @Test
+    public void evenRangeCoversEveryPageOnce() {
+        int[] order = new int[4];
+
+        int count = RenderOrder.centerOut(0, 3, order);
+
+        assertEquals(4, count);
+        assertEquals(1, order[0]);
+        int[] sorted = order.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(new int[] {0, 1, 2, 3}, sorted);
+    }
+
+    @Test
+    public void emptyRangeWritesNothing() {
+        int[] order = new int[2];
+
+        assertEquals(0, RenderOrder.centerOut(-1, -1, order));
+        assertEquals(0, RenderOrder.centerOut(4, 2, order));
+    }
+}
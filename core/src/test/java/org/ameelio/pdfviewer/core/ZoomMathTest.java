@@ -0,0 +1,43 @@
+package org.ameelio.pdfviewer.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ZoomMathTest {
+
+    @Test
+    public void clampScaleStaysWithinLimits() {
+        assertEquals(ZoomMath.MIN_SCALE, ZoomMath.clampScale(0.1f), 0f);
+        assertEquals(ZoomMath.MAX_SCALE, ZoomMath.clampScale(50f), 0f);
+        assertEquals(2f, ZoomMath.clampScale(2f), 0f);
+    }
+
+    @Test
+    public void translationIsLimitedToTheZoomedOverhang() {
+        // A 1000 px view at 3x overhangs by 1000 px on each side
+        assertEquals(1000f, ZoomMath.maxTranslation(1000, 3f), 0.0001f);
+        assertEquals(1000f, ZoomMath.clampTranslation(1500f, 1000, 3f), 0.0001f);
+        assertEquals(-1000f, ZoomMath.clampTranslation(-1500f, 1000, 3f), 0.0001f);
+        assertEquals(-250f, ZoomMath.clampTranslation(-250f, 1000, 3f), 0.0001f);
+    }
+
+    @Test
+    public void noTranslationWhenNotZoomedIn() {
+        assertEquals(0f, ZoomMath.clampTranslation(300f, 1000, 1f), 0f);
+        assertEquals(0f, ZoomMath.clampTranslation(300f, 1000, 0.5f), 0f);
+    }
+
+    @Test
+    public void viewportStaysOverTheContent() {
+        assertEquals(0f, ZoomMath.clampViewportOrigin(-40f, 500f, 2000f, true), 0f);
+        assertEquals(1500f, ZoomMath.clampViewportOrigin(1800f, 500f, 2000f, true), 0f);
+        assertEquals(700f, ZoomMath.clampViewportOrigin(700f, 500f, 2000f, false), 0f);
+    }
+
+    @Test
+    public void contentSmallerThanTheViewportIsCenteredOrKeptAtTheStart() {
+        assertEquals(-100f, ZoomMath.clampViewportOrigin(30f, 1200f, 1000f, true), 0.0001f);
+        assertEquals(0f, ZoomMath.clampViewportOrigin(30f, 1200f, 1000f, false), 0f);
+    }
+}